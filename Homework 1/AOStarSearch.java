@@ -0,0 +1,277 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Heuristic best-first search of AND-OR graphs (AO*, Martelli and Montanari),
+ * an alternative to the depth-first AndOrSearch of AIMA3e Figure 4.11.<br>
+ * <br>
+ * The explicit graph holds one OR node per distinct state; every applicable
+ * action is an AND connector to the nodes of its possible outcomes. The cost
+ * of a connector is the worst case over its outcomes, c(s, a, s') + cost(s'),
+ * so the cost of the root is the worst-case cost of the best contingency plan.
+ * Step costs come from the problem's StepCostFunction and unexpanded nodes are
+ * estimated with an admissible HeuristicFunction. Each iteration:
+ * <ol>
+ * <li>follows the best connectors from the root to an unexpanded node of the
+ * best partial plan,</li>
+ * <li>expands it, and</li>
+ * <li>revises the costs, best connectors and solved labels of its ancestors.</li>
+ * </ol>
+ * The search stops when the root is solved.<br>
+ * <br>
+ * The plan returned has the same shape as the plans of AndOrSearch, so it can
+ * be executed by NondeterministicVacuumAgent.
+ */
+public class AOStarSearch {
+
+	protected int expandedNodes;
+	protected double planCost;
+	//
+	private HeuristicFunction hf;
+	private Map<Object, OrNode> graph;
+	private double maxStepCost;
+	private double maxHeuristic;
+
+	/**
+	 * Constructor
+	 *
+	 * @param hf
+	 *            an admissible heuristic estimating the worst-case cost of
+	 *            reaching a goal from a state.
+	 */
+	public AOStarSearch(HeuristicFunction hf) {
+		this.hf = hf;
+	}
+
+	/**
+	 * Searches the AND-OR graph of the problem best-first and returns the
+	 * conditional plan with the lowest worst-case cost.
+	 *
+	 * @param problem
+	 * @return a conditional plan or null on failure
+	 */
+	public Plan search(NondeterministicProblem problem) {
+		this.expandedNodes = 0;
+		this.planCost = Double.POSITIVE_INFINITY;
+		this.graph = new HashMap<Object, OrNode>();
+		this.maxStepCost = 0;
+		this.maxHeuristic = 0;
+
+		OrNode root = node(problem.getInitialState(), problem);
+		while (!root.solved && root.cost < Double.POSITIVE_INFINITY) {
+			OrNode tip = findTip(root, new HashSet<OrNode>());
+			if (tip == null) {
+				// the best partial plan only loops back on itself
+				break;
+			}
+			expand(tip, problem);
+			revise(tip);
+		}
+		if (!root.solved) {
+			return null;
+		}
+		this.planCost = root.cost;
+		return extractPlan(root);
+	}
+
+	/**
+	 * Returns all the metrics of the search.
+	 *
+	 * @return all the metrics of the search.
+	 */
+	public Metrics getMetrics() {
+		Metrics result = new Metrics();
+		result.set("expandedNodes", this.expandedNodes);
+		result.set("planCost", this.planCost);
+		return result;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private OrNode node(Object state, NondeterministicProblem problem) {
+		OrNode n = graph.get(state);
+		if (n == null) {
+			n = new OrNode(state);
+			if (problem.isGoalState(state)) {
+				n.goal = true;
+				n.solved = true;
+				n.cost = 0;
+			} else {
+				n.h = hf.h(state);
+				n.cost = n.h;
+				maxHeuristic = Math.max(maxHeuristic, n.h);
+			}
+			graph.put(state, n);
+		}
+		return n;
+	}
+
+	// The first unexpanded, non goal node of the best partial plan below n,
+	// looking first below the outcome that determines a connector's cost.
+	private OrNode findTip(OrNode n, Set<OrNode> visited) {
+		if (n.solved || !visited.add(n)) {
+			return null;
+		}
+		if (!n.expanded) {
+			return n;
+		}
+		if (n.best == null) {
+			return null;
+		}
+		List<OrNode> children = new ArrayList<OrNode>(n.best.children.length);
+		for (OrNode child : n.best.children) {
+			children.add(child);
+		}
+		while (!children.isEmpty()) {
+			OrNode worst = children.get(0);
+			for (OrNode child : children) {
+				if (child.cost > worst.cost) {
+					worst = child;
+				}
+			}
+			children.remove(worst);
+			OrNode tip = findTip(worst, visited);
+			if (tip != null) {
+				return tip;
+			}
+		}
+		return null;
+	}
+
+	private void expand(OrNode n, NondeterministicProblem problem) {
+		expandedNodes++;
+		n.expanded = true;
+		for (Action action : problem.getActionsFunction().actions(n.state)) {
+			Set<Object> results = problem.getResultsFunction().results(
+					n.state, action);
+			if (results.isEmpty()) {
+				continue;
+			}
+			AndNode connector = new AndNode(action, results.size());
+			int i = 0;
+			for (Object result : results) {
+				OrNode child = node(result, problem);
+				connector.children[i] = child;
+				connector.stepCosts[i] = problem.getStepCostFunction().c(
+						n.state, action, result);
+				maxStepCost = Math.max(maxStepCost, connector.stepCosts[i]);
+				if (!child.parents.contains(n)) {
+					child.parents.add(n);
+				}
+				i++;
+			}
+			n.connectors.add(connector);
+		}
+	}
+
+	// Propagate a change in cost or solved label of n up to its ancestors.
+	private void revise(OrNode n) {
+		LinkedList<OrNode> worklist = new LinkedList<OrNode>();
+		Set<OrNode> queued = new HashSet<OrNode>();
+		worklist.add(n);
+		queued.add(n);
+		boolean first = true;
+		while (!worklist.isEmpty()) {
+			OrNode m = worklist.removeFirst();
+			queued.remove(m);
+			// An acyclic plan in the explicit graph never costs more than
+			// this; anything above it can only come from going round a loop.
+			double limit = graph.size() * maxStepCost + maxHeuristic;
+			double oldCost = m.cost;
+			boolean oldSolved = m.solved;
+
+			AndNode best = null;
+			double bestCost = Double.POSITIVE_INFINITY;
+			for (AndNode connector : m.connectors) {
+				double c = connector.cost();
+				if (c < bestCost) {
+					best = connector;
+					bestCost = c;
+				}
+			}
+			m.best = best;
+			// never drop below the heuristic estimate (pathmax)
+			m.cost = bestCost > limit ? Double.POSITIVE_INFINITY : Math.max(
+					bestCost, m.h);
+			m.solved = best != null && m.cost < Double.POSITIVE_INFINITY
+					&& best.isSolved();
+
+			// the expanded node always has to tell its parents
+			if (first || m.cost != oldCost || m.solved != oldSolved) {
+				for (OrNode parent : m.parents) {
+					if (queued.add(parent)) {
+						worklist.add(parent);
+					}
+				}
+			}
+			first = false;
+		}
+	}
+
+	// Builds the plan in the same form as AndOrSearch: [action | [if s_1 then
+	// plan_1, ..., if s_n-1 then plan_n-1, plan_n]].
+	private Plan extractPlan(OrNode n) {
+		if (n.goal) {
+			return new Plan();
+		}
+		AndNode best = n.best;
+		Object[] steps = new Object[best.children.length];
+		for (int i = 0; i < best.children.length - 1; i++) {
+			steps[i] = new IfStateThenPlan(best.children[i].state,
+					extractPlan(best.children[i]));
+		}
+		steps[steps.length - 1] = extractPlan(best.children[best.children.length - 1]);
+		return new Plan(steps).prepend(best.action);
+	}
+
+	private static class OrNode {
+		Object state;
+		double h;
+		double cost;
+		boolean goal;
+		boolean expanded;
+		boolean solved;
+		List<AndNode> connectors = new ArrayList<AndNode>();
+		AndNode best;
+		List<OrNode> parents = new ArrayList<OrNode>();
+
+		OrNode(Object state) {
+			this.state = state;
+		}
+	}
+
+	private static class AndNode {
+		Action action;
+		OrNode[] children;
+		double[] stepCosts;
+
+		AndNode(Action action, int outcomes) {
+			this.action = action;
+			this.children = new OrNode[outcomes];
+			this.stepCosts = new double[outcomes];
+		}
+
+		double cost() {
+			double worst = 0;
+			for (int i = 0; i < children.length; i++) {
+				worst = Math.max(worst, stepCosts[i] + children[i].cost);
+			}
+			return worst;
+		}
+
+		boolean isSolved() {
+			for (OrNode child : children) {
+				if (!child.solved) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,59 @@
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Decides the order in which OR-SEARCH (see AndOrSearch) tries the actions of
+ * a state. OR-SEARCH returns the plan of the first action that has one, so
+ * trying the actions most likely to succeed first finds a plan sooner. An
+ * ordering is told the outcome of every action tried, so that it can learn
+ * from the search so far, and hands OR-SEARCH the outcomes of the actions it
+ * tries, so that an ordering that had to work them out already does not make
+ * the search work them out again.
+ */
+public interface ActionOrdering {
+
+	/**
+	 * Returns the actions of a state in the order in which they are to be
+	 * tried.
+	 *
+	 * @param state
+	 *            the state of the OR node.
+	 * @param actions
+	 *            the actions of the state, from the ActionsFunction.
+	 * @param problem
+	 *            the problem searched.
+	 * @return the same actions, reordered.
+	 */
+	List<Action> order(Object state, Set<Action> actions,
+			NondeterministicProblem problem);
+
+	/**
+	 * Returns the outcomes of an action, as the ResultsFunction of the
+	 * problem does. Called by OR-SEARCH for every action it tries, after
+	 * order(state, actions, problem).
+	 *
+	 * @param state
+	 *            the state of the OR node.
+	 * @param action
+	 *            the action to try.
+	 * @param problem
+	 *            the problem searched.
+	 * @return the outcomes of the action in the state.
+	 */
+	Set<Object> results(Object state, Action action,
+			NondeterministicProblem problem);
+
+	/**
+	 * Called after an action has been tried.
+	 *
+	 * @param state
+	 *            the state of the OR node.
+	 * @param action
+	 *            the action tried.
+	 * @param solved
+	 *            <code>true</code> if AND-SEARCH found a plan for the action.
+	 * @param depth
+	 *            the depth of the OR node.
+	 */
+	void update(Object state, Action action, boolean solved, int depth);
+}
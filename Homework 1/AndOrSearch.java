@@ -1,4 +1,10 @@
+import java.util.Arrays;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Artificial Intelligence A Modern Approach (3rd Edition): Figure 4.11, page
@@ -37,13 +43,37 @@ import java.util.Set;
  * <br>
  * Note: Unfortunately, this class cannot implement the interface Search
  * (core.search.framework.Search) because Search.search() returns a list of
- * Actions to perform, whereas a nondeterministic search must return a Plan.
+ * Actions to perform, whereas a nondeterministic search must return a Plan.<br>
+ * <br>
+ * A search can be given a deadline or cancelled from another thread (see
+ * search(NondeterministicProblem, CancellationToken)); it then returns the
+ * plan found so far, with the states it did not get to search left as
+ * UnresolvedPlan leaves.
  * 
  * @author Andrew Brown
  */
 public class AndOrSearch {
+	public static final int BRANCHING_BUCKETS = 16;
 
 	protected int expandedNodes;
+	// search statistics, see SearchStatistics
+	protected long orNodes;
+	protected long andNodes;
+	protected long goalNodes;
+	protected long cycleHits;
+	protected int maxDepth;
+	protected long depthSum;
+	protected long[] orBranching = new long[BRANCHING_BUCKETS];
+	protected long[] andBranching = new long[BRANCHING_BUCKETS];
+	protected long wallTimeNanos;
+	protected int planSize;
+	protected boolean solved;
+	protected long unresolvedLeaves;
+	//
+	private boolean eventsEnabled = false;
+	private CancellationToken cancellation = null;
+	private OutcomeOrdering outcomeOrdering = null;
+	private ActionOrdering actionOrdering = null;
 
 	/**
 	 * Searches through state space and returns a conditional plan for the given
@@ -65,8 +95,125 @@ public class AndOrSearch {
 	 */
 	public Plan search(NondeterministicProblem problem) {
 		this.expandedNodes = 0;
+		this.orNodes = 0;
+		this.andNodes = 0;
+		this.goalNodes = 0;
+		this.cycleHits = 0;
+		this.maxDepth = 0;
+		this.depthSum = 0;
+		this.unresolvedLeaves = 0;
+		Arrays.fill(this.orBranching, 0);
+		Arrays.fill(this.andBranching, 0);
+		AndOrSearchEvent event = null;
+		if (this.eventsEnabled) {
+			event = new AndOrSearchEvent();
+			event.begin();
+		}
+		long start = System.nanoTime();
 		// OR-SEARCH(problem.INITIAL-STATE, problem, [])
-		return this.orSearch(problem.getInitialState(), problem, new Path());
+		Plan plan = this.orSearch(problem.getInitialState(), problem,
+				new Path());
+		this.wallTimeNanos = System.nanoTime() - start;
+		// counted on the plan returned, not as the leaves are made, since an
+		// AND node that fails after one of them drops it with its branch
+		this.unresolvedLeaves = countUnresolved(plan);
+		// a partial plan does not solve the problem
+		this.solved = plan != null && this.unresolvedLeaves == 0;
+		this.planSize = countActions(plan);
+		if (event != null) {
+			event.end();
+			if (event.shouldCommit()) {
+				event.set(getStatistics());
+				event.commit();
+			}
+		}
+		return plan;
+	}
+
+	/**
+	 * Searches for a conditional plan for at most the given time. If the time
+	 * runs out the plan found so far is returned, see
+	 * search(NondeterministicProblem, CancellationToken).
+	 * 
+	 * @param problem
+	 * @param timeout
+	 *            the most time to search for.
+	 * @param unit
+	 *            the unit of timeout.
+	 * @return a conditional plan, possibly partial, or null on failure
+	 */
+	public Plan search(NondeterministicProblem problem, long timeout,
+			TimeUnit unit) {
+		return search(problem, new CancellationToken(timeout, unit));
+	}
+
+	/**
+	 * Searches for a conditional plan until the search is done or the token
+	 * is cancelled, which OR-SEARCH checks for at every OR node. Once it is
+	 * cancelled, every OR node not searched yet becomes an UnresolvedPlan
+	 * leaf, so the search unwinds quickly and returns the plan found so far:
+	 * complete where the search got to finish, and ending in UnresolvedPlans
+	 * elsewhere. The initial state is always expanded, so a plan that is not
+	 * null starts with an action. isComplete() tells whether the plan is
+	 * complete.
+	 * 
+	 * @param problem
+	 * @param cancellation
+	 *            the token that stops the search.
+	 * @return a conditional plan, possibly partial, or null on failure
+	 */
+	public Plan search(NondeterministicProblem problem,
+			CancellationToken cancellation) {
+		this.cancellation = cancellation;
+		try {
+			return search(problem);
+		} finally {
+			this.cancellation = null;
+		}
+	}
+
+	/**
+	 * Runs search(problem, cancellation) on an executor. Cancelling the token
+	 * makes the future complete with the plan found so far; this AndOrSearch
+	 * must not be used for another search until it has. Cancelling the
+	 * future cancels the token too, so the search stops at its next OR node
+	 * rather than running on unseen; get() then throws a
+	 * CancellationException, as for any cancelled future.
+	 * 
+	 * @param problem
+	 * @param cancellation
+	 *            the token that stops the search.
+	 * @param executor
+	 *            the executor to search on.
+	 * @return the future conditional plan, possibly partial, or null on
+	 *         failure
+	 */
+	public Future<Plan> submit(final NondeterministicProblem problem,
+			final CancellationToken cancellation, ExecutorService executor) {
+		FutureTask<Plan> task = new FutureTask<Plan>(new Callable<Plan>() {
+			public Plan call() {
+				return search(problem, cancellation);
+			}
+		}) {
+			@Override
+			public boolean cancel(boolean mayInterruptIfRunning) {
+				// the search polls the token, it is never interrupted
+				cancellation.cancel();
+				return super.cancel(mayInterruptIfRunning);
+			}
+		};
+		executor.execute(task);
+		return task;
+	}
+
+	/**
+	 * Returns <code>true</code> if the last search ran to the end, i.e. its
+	 * plan has no UnresolvedPlan leaves.
+	 * 
+	 * @return whether the last plan found is complete.
+	 */
+	public boolean isComplete() {
+		return this.unresolvedLeaves == 0;
 	}
 
 	/**
@@ -94,25 +241,54 @@ public class AndOrSearch {
 			Path path) {
 		// do metrics
 		this.expandedNodes++;
+		this.orNodes++;
+		int depth = path.size();
+		this.depthSum += depth;
+		if (depth > this.maxDepth) {
+			this.maxDepth = depth;
+		}
 		// if problem.GOAL-TEST(state) then return the empty plan
 		if (problem.isGoalState(state)) {
+			this.goalNodes++;
 			return new Plan();
 		}
 		// if state is on path then return failure
 		if (path.contains(state)) {
+			this.cycleHits++;
 			return null;
 		}
+		// out of time: leave the state to be searched again later
+		if (depth > 0 && isCancelled()) {
+			return new UnresolvedPlan(state);
+		}
 		// for each action in problem.ACTIONS(state) do
-		for (Action action : problem.getActionsFunction().actions(state)) {
+		Set<Action> applicable = problem.getActionsFunction().actions(state);
+		Iterable<Action> actions = applicable;
+		if (this.actionOrdering != null) {
+			actions = this.actionOrdering.order(state, applicable, problem);
+		}
+		int tried = 0;
+		for (Action action : actions) {
+			tried++;
 			// plan <- AND-SEARCH(RESULTS(state, action), problem, [state|path])
-			Plan plan = this.andSearch(
-					problem.getResultsFunction().results(state, action),
-					problem, path.prepend(state));
+			Set<Object> results;
+			if (this.actionOrdering != null) {
+				// the ordering may have worked them out already
+				results = this.actionOrdering.results(state, action, problem);
+			} else {
+				results = problem.getResultsFunction().results(state, action);
+			}
+			Plan plan = this.andSearch(results, problem, path.prepend(state));
+			if (this.actionOrdering != null) {
+				this.actionOrdering.update(state, action, plan != null, depth);
+			}
 			// if plan != failure then return [action|plan]
 			if (plan != null) {
+				this.orBranching[Math.min(tried, BRANCHING_BUCKETS - 1)]++;
 				return plan.prepend(action);
 			}
 		}
+		this.orBranching[Math.min(tried, BRANCHING_BUCKETS - 1)]++;
 		// return failure
 		return null;
 	}
@@ -140,7 +316,13 @@ public class AndOrSearch {
 			Path path) {
 		// do metrics, setup
 		this.expandedNodes++;
+		this.andNodes++;
+		this.andBranching[Math.min(states.size(), BRANCHING_BUCKETS - 1)]++;
 		Object[] _states = states.toArray();
+		if (this.outcomeOrdering != null) {
+			// any order gives a valid if-then-else chain
+			this.outcomeOrdering.order(_states, problem, path);
+		}
 		Plan[] plans = new Plan[_states.length];
 		// for each s_i in states do
 		for (int i = 0; i < _states.length; i++) {
@@ -170,8 +352,105 @@ public class AndOrSearch {
 	 * @return all the metrics of the node expander.
 	 */
 	public Metrics getMetrics() {
-		Metrics result = new Metrics();
+		Metrics result = getStatistics().toMetrics();
 		result.set("expandedNodes", this.expandedNodes);
+		result.set("unresolvedLeaves", this.unresolvedLeaves);
 		return result;
 	}
+
+	/**
+	 * Returns a snapshot of the statistics of the last search: OR and AND
+	 * node counts, cycle check hits, depths, branching histograms, wall time
+	 * and plan size.
+	 * 
+	 * @return the statistics of the last search.
+	 */
+	public SearchStatistics getStatistics() {
+		return new SearchStatistics(this.orNodes, this.andNodes,
+				this.goalNodes, this.cycleHits, this.maxDepth, this.depthSum,
+				this.orBranching, this.andBranching, this.wallTimeNanos,
+				this.planSize, this.solved);
+	}
+
+	/**
+	 * Enables or disables Java Flight Recorder events (AndOrSearchEvent) for
+	 * searches that take longer than the event threshold. Disabled by
+	 * default.
+	 * 
+	 * @param eventsEnabled
+	 */
+	public void setEventsEnabled(boolean eventsEnabled) {
+		this.eventsEnabled = eventsEnabled;
+	}
+
+	/**
+	 * Sets the order in which AND-SEARCH searches the outcomes of an action;
+	 * <code>null</code> (the default) keeps the order of the set of
+	 * outcomes.
+	 * 
+	 * @param outcomeOrdering
+	 */
+	public void setOutcomeOrdering(OutcomeOrdering outcomeOrdering) {
+		this.outcomeOrdering = outcomeOrdering;
+	}
+
+	public OutcomeOrdering getOutcomeOrdering() {
+		return this.outcomeOrdering;
+	}
+
+	/**
+	 * Sets the order in which OR-SEARCH tries the actions of a state;
+	 * <code>null</code> (the default) keeps the order of the ActionsFunction.
+	 * 
+	 * @param actionOrdering
+	 */
+	public void setActionOrdering(ActionOrdering actionOrdering) {
+		this.actionOrdering = actionOrdering;
+	}
+
+	public ActionOrdering getActionOrdering() {
+		return this.actionOrdering;
+	}
+
+	/**
+	 * Returns <code>true</code> if the current search has been cancelled.
+	 * 
+	 * @return whether the current search has been cancelled.
+	 */
+	protected boolean isCancelled() {
+		return this.cancellation != null && this.cancellation.isCancelled();
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private static int countActions(Object step) {
+		if (step instanceof Plan) {
+			int n = 0;
+			for (Object s : (Plan) step) {
+				n += countActions(s);
+			}
+			return n;
+		} else if (step instanceof IfStateThenPlan) {
+			return countActions(((IfStateThenPlan) step).getPlan());
+		} else if (step instanceof Action) {
+			return 1;
+		}
+		return 0;
+	}
+
+	private static long countUnresolved(Object step) {
+		if (step instanceof UnresolvedPlan) {
+			return 1;
+		} else if (step instanceof Plan) {
+			long n = 0;
+			for (Object s : (Plan) step) {
+				n += countUnresolved(s);
+			}
+			return n;
+		} else if (step instanceof IfStateThenPlan) {
+			return countUnresolved(((IfStateThenPlan) step).getPlan());
+		}
+		return 0;
+	}
 }
@@ -0,0 +1,49 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Java Flight Recorder event for one AND-OR search, committed by AndOrSearch
+ * when events are enabled and the search took longer than the threshold (20
+ * ms unless the recording's settings say otherwise).
+ */
+@Name("vacuum.AndOrSearch")
+@Label("AND-OR Search")
+@Category("Vacuum World")
+@Description("An AND-OR search that took long")
+@Threshold("20 ms")
+class AndOrSearchEvent extends jdk.jfr.Event {
+
+	@Label("OR Nodes")
+	long orNodes;
+
+	@Label("AND Nodes")
+	long andNodes;
+
+	@Label("Cycle Hits")
+	long cycleHits;
+
+	@Label("Max Depth")
+	int maxDepth;
+
+	@Label("Mean Depth")
+	double meanDepth;
+
+	@Label("Plan Size")
+	int planSize;
+
+	@Label("Solved")
+	boolean solved;
+
+	void set(SearchStatistics statistics) {
+		orNodes = statistics.getOrNodes();
+		andNodes = statistics.getAndNodes();
+		cycleHits = statistics.getCycleHits();
+		maxDepth = statistics.getMaxDepth();
+		meanDepth = statistics.getMeanDepth();
+		planSize = statistics.getPlanSize();
+		solved = statistics.isSolved();
+	}
+}
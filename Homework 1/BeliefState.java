@@ -0,0 +1,185 @@
+import java.util.Arrays;
+
+/**
+ * Artificial Intelligence A Modern Approach (3rd Edition): page 138.<br>
+ * <br>
+ * A belief state, the set of physical states the agent might be in. The
+ * physical states of a problem are enumerated 0..size-1 and a belief state is
+ * stored as a bitset over them, so that PREDICT and UPDATE can be computed a
+ * machine word at a time (see BeliefStateSearch). Belief states are immutable.
+ */
+public class BeliefState {
+
+	private final int size;
+	private final long[] words;
+	//
+	private int cachedHashCode = -1;
+
+	/**
+	 * Returns the belief state containing none of the given number of physical
+	 * states.
+	 *
+	 * @param size
+	 *            the number of physical states.
+	 * @return the empty belief state.
+	 */
+	public static BeliefState empty(int size) {
+		return new BeliefState(size, new long[wordsFor(size)]);
+	}
+
+	/**
+	 * Returns the belief state containing all of the given number of physical
+	 * states, i.e. the initial belief state of a sensorless agent.
+	 *
+	 * @param size
+	 *            the number of physical states.
+	 * @return the belief state containing every physical state.
+	 */
+	public static BeliefState all(int size) {
+		long[] words = new long[wordsFor(size)];
+		Arrays.fill(words, -1L);
+		if ((size & 63) != 0) {
+			words[words.length - 1] = (1L << (size & 63)) - 1;
+		}
+		return new BeliefState(size, words);
+	}
+
+	/**
+	 * Wraps the given words without copying them; the caller must not modify
+	 * them afterwards.
+	 */
+	BeliefState(int size, long[] words) {
+		this.size = size;
+		this.words = words;
+	}
+
+	/**
+	 * Returns the number of physical states of the underlying problem.
+	 *
+	 * @return the number of physical states of the underlying problem.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of physical states in this belief state.
+	 *
+	 * @return the number of physical states in this belief state.
+	 */
+	public int cardinality() {
+		int n = 0;
+		for (long w : words) {
+			n += Long.bitCount(w);
+		}
+		return n;
+	}
+
+	public boolean isEmpty() {
+		for (long w : words) {
+			if (w != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns <code>true</code> if the given physical state is in this belief
+	 * state.
+	 *
+	 * @param state
+	 *            the index of a physical state.
+	 * @return <code>true</code> if the physical state is in this belief state.
+	 */
+	public boolean contains(int state) {
+		return (words[state >>> 6] & (1L << state)) != 0;
+	}
+
+	/**
+	 * Returns the index of the first physical state in this belief state at or
+	 * after the given index, or -1 if there is none.
+	 *
+	 * @param from
+	 *            the index to start looking from.
+	 * @return the next physical state in this belief state, or -1.
+	 */
+	public int nextState(int from) {
+		if (from >= size) {
+			return -1;
+		}
+		int i = from >>> 6;
+		long w = words[i] & (-1L << from);
+		while (true) {
+			if (w != 0) {
+				return (i << 6) + Long.numberOfTrailingZeros(w);
+			}
+			if (++i == words.length) {
+				return -1;
+			}
+			w = words[i];
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if every physical state of this belief state is
+	 * also in the other.
+	 *
+	 * @param other
+	 * @return <code>true</code> if this belief state is a subset of the other.
+	 */
+	public boolean isSubsetOf(BeliefState other) {
+		for (int i = 0; i < words.length; i++) {
+			if ((words[i] & ~other.words[i]) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof BeliefState)) {
+			return false;
+		}
+		BeliefState b = (BeliefState) o;
+		return size == b.size && hashCode() == b.hashCode()
+				&& Arrays.equals(words, b.words);
+	}
+
+	@Override
+	public int hashCode() {
+		if (cachedHashCode == -1) {
+			cachedHashCode = Arrays.hashCode(words) & 0x7fffffff;
+		}
+		return cachedHashCode;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{");
+		for (int s = nextState(0); s >= 0; s = nextState(s + 1)) {
+			if (sb.length() > 1) {
+				sb.append(", ");
+			}
+			sb.append(s);
+		}
+		sb.append("}");
+		return sb.toString();
+	}
+
+	//
+	// PACKAGE METHODS
+	//
+	long[] words() {
+		return words;
+	}
+
+	static int wordsFor(int size) {
+		return (size + 63) >>> 6;
+	}
+}
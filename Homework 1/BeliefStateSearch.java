@@ -0,0 +1,487 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Artificial Intelligence A Modern Approach (3rd Edition): section 4.4, pages
+ * 138-146.<br>
+ * <br>
+ * Searching with partial observations in a width x height vacuum world with a
+ * single agent. Every physical state (agent location, dirt at every location)
+ * is enumerated and a belief state is a bitset over them (see BeliefState).
+ * Locations are numbered loc = x * height + y and the physical state index is
+ * (loc &lt;&lt; cells) | dirt, where bit l of dirt is set if location l is
+ * dirty. With this layout all states sharing an agent location form one
+ * contiguous block, so:
+ * <ul>
+ * <li>PREDICT for a move shifts whole blocks,</li>
+ * <li>PREDICT for Suck at location l moves the states with bit l set down by
+ * 2<sup>l</sup> within block l, and</li>
+ * <li>UPDATE for a local percept [l, status] masks block l,</li>
+ * </ul>
+ * each of which is done a word (64 states) at a time.<br>
+ * <br>
+ * Actions behave as in VacuumEnvironment (moves stop at the edge of the grid,
+ * Suck always cleans). Two drivers are provided: an A* search for sensorless
+ * (conformant) plans, and an AND-OR search over belief states for agents
+ * with the local percept of LocalVacuumEnvironmentPercept, where the outcomes
+ * of an action are the belief states for each percept that could follow it.
+ */
+public class BeliefStateSearch {
+	public static final int MAX_CELLS = 16;
+	public static final Action[] ACTIONS = new Action[] {
+			VacuumEnvironment.ACTION_MOVE_LEFT,
+			VacuumEnvironment.ACTION_MOVE_RIGHT,
+			VacuumEnvironment.ACTION_MOVE_UP,
+			VacuumEnvironment.ACTION_MOVE_DOWN, VacuumEnvironment.ACTION_SUCK };
+
+	// Bits of a word whose offset has bit l set, for l = 0..5
+	private static final long[] DIRT_BIT_PATTERNS = new long[] {
+			0xAAAAAAAAAAAAAAAAL, 0xCCCCCCCCCCCCCCCCL, 0xF0F0F0F0F0F0F0F0L,
+			0xFF00FF00FF00FF00L, 0xFFFF0000FFFF0000L, 0xFFFFFFFF00000000L };
+
+	private int width;
+	private int height;
+	private int cells;
+	private int blockSize;
+	private int size;
+	private int[][] moveTargets;
+	private int[][] distances;
+	private long[] goalWords;
+	//
+	private int expandedNodes;
+
+	/**
+	 * Constructor
+	 *
+	 * @param width
+	 *            the width of the grid.
+	 * @param height
+	 *            the height of the grid.
+	 */
+	public BeliefStateSearch(int width, int height) {
+		if (width < 1 || height < 1 || width * height > MAX_CELLS) {
+			throw new IllegalArgumentException("Belief state search supports at most "
+					+ MAX_CELLS + " locations.");
+		}
+		this.width = width;
+		this.height = height;
+		this.cells = width * height;
+		this.blockSize = 1 << cells;
+		this.size = cells << cells;
+
+		// Target location of each move from each location
+		moveTargets = new int[4][cells];
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				int loc = location(x, y);
+				moveTargets[0][loc] = location(Math.max(x - 1, 0), y);
+				moveTargets[1][loc] = location(Math.min(x + 1, width - 1), y);
+				moveTargets[2][loc] = location(x, Math.min(y + 1, height - 1));
+				moveTargets[3][loc] = location(x, Math.max(y - 1, 0));
+			}
+		}
+		distances = new int[cells][cells];
+		for (int from = 0; from < cells; from++) {
+			for (int to = 0; to < cells; to++) {
+				distances[from][to] = Math.abs(from / height - to / height)
+						+ Math.abs(from % height - to % height);
+			}
+		}
+
+		// Goal states have no dirt, i.e. the first state of every block
+		goalWords = new long[BeliefState.wordsFor(size)];
+		for (int loc = 0; loc < cells; loc++) {
+			int s = loc << cells;
+			goalWords[s >>> 6] |= 1L << s;
+		}
+	}
+
+	/**
+	 * Returns the number of physical states.
+	 *
+	 * @return the number of physical states.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the index of a physical state
+	 *
+	 * @param x
+	 *            the agent's x coordinate.
+	 * @param y
+	 *            the agent's y coordinate.
+	 * @param dirt
+	 *            bit (x' * height + y') set if location x',y' is dirty.
+	 * @return the index of the physical state.
+	 */
+	public int stateIndex(int x, int y, int dirt) {
+		return (location(x, y) << cells) | (dirt & (blockSize - 1));
+	}
+
+	/**
+	 * Returns the index of the physical state equivalent to a
+	 * VacuumEnvironmentState with a single agent
+	 *
+	 * @param state
+	 * @param agent
+	 * @return the index of the physical state.
+	 */
+	public int stateIndex(VacuumEnvironmentState state, Agent agent) {
+		int dirt = 0;
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				if (VacuumEnvironment.LocationState.Dirty == state
+						.getLocationState(String.format(
+								VacuumEnvironment.LOCATION_FORMAT, x, y))) {
+					dirt |= 1 << location(x, y);
+				}
+			}
+		}
+		return (parseLocation(state.getAgentLocation(agent)) << cells) | dirt;
+	}
+
+	/**
+	 * Returns the belief state of a sensorless agent, i.e. every physical
+	 * state.
+	 *
+	 * @return the belief state containing every physical state.
+	 */
+	public BeliefState initialBelief() {
+		return BeliefState.all(size);
+	}
+
+	/**
+	 * Returns the belief state of an agent that has received the given local
+	 * percept and knows nothing else.
+	 *
+	 * @param percept
+	 * @return the belief state consistent with the percept.
+	 */
+	public BeliefState initialBelief(LocalVacuumEnvironmentPercept percept) {
+		return update(initialBelief(), percept);
+	}
+
+	/**
+	 * PREDICT(b, a): the belief state that results from doing action a in
+	 * belief state b.
+	 *
+	 * @param b
+	 * @param a
+	 * @return the predicted belief state.
+	 */
+	public BeliefState predict(BeliefState b, Action a) {
+		long[] src = b.words();
+		if (VacuumEnvironment.ACTION_SUCK == a) {
+			long[] dst = src.clone();
+			for (int loc = 0; loc < cells; loc++) {
+				suck(dst, loc);
+			}
+			return new BeliefState(size, dst);
+		}
+		for (int m = 0; m < moveTargets.length; m++) {
+			if (ACTIONS[m] == a) {
+				long[] dst = new long[src.length];
+				for (int loc = 0; loc < cells; loc++) {
+					orBits(src, loc << cells, dst, moveTargets[m][loc] << cells,
+							blockSize);
+				}
+				return new BeliefState(size, dst);
+			}
+		}
+		// e.g. NoOp
+		return b;
+	}
+
+	/**
+	 * UPDATE(b, o): the subset of belief state b in which the local percept o
+	 * would be received.
+	 *
+	 * @param b
+	 * @param percept
+	 * @return the updated belief state.
+	 */
+	public BeliefState update(BeliefState b,
+			LocalVacuumEnvironmentPercept percept) {
+		return update(b, parseLocation(percept.getAgentLocation()),
+				VacuumEnvironment.LocationState.Dirty == percept
+						.getLocationState());
+	}
+
+	/**
+	 * The belief states that may follow doing action a in belief state b, one
+	 * for each percept that could be received afterwards.
+	 *
+	 * @param b
+	 * @param a
+	 * @return the possible next belief states.
+	 */
+	public Set<Object> results(BeliefState b, Action a) {
+		BeliefState predicted = predict(b, a);
+		Set<Object> results = new LinkedHashSet<Object>();
+		for (int loc = 0; loc < cells; loc++) {
+			for (int dirty = 0; dirty < 2; dirty++) {
+				BeliefState updated = update(predicted, loc, dirty == 1);
+				if (!updated.isEmpty()) {
+					results.add(updated);
+				}
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Returns <code>true</code> if every physical state in the belief state is
+	 * clean.
+	 *
+	 * @param b
+	 * @return <code>true</code> if the belief state is a goal.
+	 */
+	public boolean isGoal(BeliefState b) {
+		long[] words = b.words();
+		for (int i = 0; i < words.length; i++) {
+			if ((words[i] & ~goalWords[i]) != 0) {
+				return false;
+			}
+		}
+		return !b.isEmpty();
+	}
+
+	/**
+	 * A* search for an action sequence that cleans every physical state of
+	 * the initial belief state without using percepts. The heuristic is the
+	 * largest cost of cleaning any single physical state in the belief state
+	 * (one Suck per dirty location plus the distance to the furthest one),
+	 * which is admissible as the plan must clean all of them.
+	 *
+	 * @param initial
+	 *            the initial belief state.
+	 * @return a conformant action sequence, or null on failure.
+	 */
+	public List<Action> conformantSearch(BeliefState initial) {
+		expandedNodes = 0;
+		PriorityQueue<SearchNode> frontier = new PriorityQueue<SearchNode>();
+		Set<BeliefState> explored = new HashSet<BeliefState>();
+		frontier.add(new SearchNode(initial, null, null, 0, h(initial)));
+		while (!frontier.isEmpty()) {
+			SearchNode node = frontier.poll();
+			if (isGoal(node.belief)) {
+				LinkedList<Action> actions = new LinkedList<Action>();
+				for (SearchNode n = node; n.parent != null; n = n.parent) {
+					actions.addFirst(n.action);
+				}
+				return actions;
+			}
+			if (!explored.add(node.belief)) {
+				continue;
+			}
+			expandedNodes++;
+			for (Action a : ACTIONS) {
+				BeliefState next = predict(node.belief, a);
+				if (!explored.contains(next)) {
+					frontier.add(new SearchNode(next, node, a, node.g + 1,
+							h(next)));
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the problem of searching belief states with local percepts,
+	 * suitable for AndOrSearch.
+	 *
+	 * @param initial
+	 *            the initial belief state.
+	 * @return the nondeterministic problem over belief states.
+	 */
+	public NondeterministicProblem getProblem(BeliefState initial) {
+		final Set<Action> actions = Collections
+				.unmodifiableSet(new LinkedHashSet<Action>(Arrays
+						.asList(ACTIONS)));
+		return new NondeterministicProblem(initial, new ActionsFunction() {
+			@Override
+			public Set<Action> actions(Object s) {
+				return actions;
+			}
+		}, new ResultsFunction() {
+			@Override
+			public Set<Object> results(Object s, Action a) {
+				return BeliefStateSearch.this.results((BeliefState) s, a);
+			}
+		}, new GoalTest() {
+			@Override
+			public boolean isGoalState(Object state) {
+				return isGoal((BeliefState) state);
+			}
+		});
+	}
+
+	/**
+	 * AND-OR search over belief states for a contingency plan whose
+	 * if-then-else steps test the belief state reached after each percept.
+	 *
+	 * @param initial
+	 *            the initial belief state.
+	 * @return a conditional plan, or null on failure.
+	 */
+	public Plan contingencySearch(BeliefState initial) {
+		AndOrSearch search = new AndOrSearch();
+		Plan plan = search.search(getProblem(initial));
+		expandedNodes = search.getMetrics().getInt("expandedNodes");
+		return plan;
+	}
+
+	/**
+	 * Returns all the metrics of the last search.
+	 *
+	 * @return all the metrics of the last search.
+	 */
+	public Metrics getMetrics() {
+		Metrics result = new Metrics();
+		result.set("expandedNodes", this.expandedNodes);
+		return result;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private int location(int x, int y) {
+		return x * height + y;
+	}
+
+	private int parseLocation(String location) {
+		int comma = location.indexOf(',');
+		if (comma < 0) {
+			throw new IllegalArgumentException("Not a grid location: "
+					+ location);
+		}
+		return location(
+				Integer.parseInt(location.substring(0, comma)),
+				Integer.parseInt(location.substring(comma + 1)));
+	}
+
+	private BeliefState update(BeliefState b, int loc, boolean dirty) {
+		long[] src = b.words();
+		long[] dst = new long[src.length];
+		int start = loc << cells;
+		int end = start + blockSize;
+		if (loc < 6) {
+			long pattern = dirty ? DIRT_BIT_PATTERNS[loc]
+					: ~DIRT_BIT_PATTERNS[loc];
+			for (int i = start >>> 6; i <= (end - 1) >>> 6; i++) {
+				dst[i] = src[i] & pattern & rangeMask(i, start, end);
+			}
+		} else {
+			int stride = 1 << (loc - 6);
+			for (int i = start >>> 6, k = 0; i < end >>> 6; i++, k++) {
+				if (((k / stride) & 1) == (dirty ? 1 : 0)) {
+					dst[i] = src[i];
+				}
+			}
+		}
+		return new BeliefState(size, dst);
+	}
+
+	// Suck with the agent at loc: within block loc every state with dirt bit
+	// loc set joins the state with that bit cleared, 2^loc positions below.
+	private void suck(long[] words, int loc) {
+		int start = loc << cells;
+		int end = start + blockSize;
+		if (loc < 6) {
+			for (int i = start >>> 6; i <= (end - 1) >>> 6; i++) {
+				long dirty = words[i] & DIRT_BIT_PATTERNS[loc]
+						& rangeMask(i, start, end);
+				words[i] = (words[i] & ~dirty) | (dirty >>> (1 << loc));
+			}
+		} else {
+			int stride = 1 << (loc - 6);
+			for (int i = start >>> 6, k = 0; i < end >>> 6; i++, k++) {
+				if (((k / stride) & 1) == 1) {
+					words[i - stride] |= words[i];
+					words[i] = 0;
+				}
+			}
+		}
+	}
+
+	// Bits of word i that lie in [start, end)
+	private static long rangeMask(int i, int start, int end) {
+		int lo = Math.max(start - (i << 6), 0);
+		int hi = Math.min(end - (i << 6), 64);
+		long mask = hi == 64 ? -1L : (1L << hi) - 1;
+		return mask & (-1L << lo);
+	}
+
+	// dst[to .. to+len) |= src[from .. from+len), up to 64 bits at a time
+	private static void orBits(long[] src, int from, long[] dst, int to,
+			int len) {
+		while (len > 0) {
+			int n = Math.min(64, len);
+			int off = from & 63;
+			long w = src[from >>> 6] >>> off;
+			if (off != 0 && off + n > 64) {
+				w |= src[(from >>> 6) + 1] << (64 - off);
+			}
+			if (n < 64) {
+				w &= (1L << n) - 1;
+			}
+			off = to & 63;
+			dst[to >>> 6] |= w << off;
+			if (off != 0 && off + n > 64) {
+				dst[(to >>> 6) + 1] |= w >>> (64 - off);
+			}
+			from += n;
+			to += n;
+			len -= n;
+		}
+	}
+
+	// The largest lower bound on the cost of cleaning any single physical
+	// state in b: a Suck for each dirty location plus the moves needed to reach
+	// the dirty location furthest from the agent.
+	private int h(BeliefState b) {
+		int worst = 0;
+		for (int s = b.nextState(0); s >= 0; s = b.nextState(s + 1)) {
+			int loc = s >>> cells;
+			int dirt = s & (blockSize - 1);
+			int furthest = 0;
+			for (int d = dirt; d != 0; d &= d - 1) {
+				furthest = Math.max(furthest,
+						distances[loc][Integer.numberOfTrailingZeros(d)]);
+			}
+			worst = Math.max(worst, Integer.bitCount(dirt) + furthest);
+		}
+		return worst;
+	}
+
+	private static class SearchNode implements Comparable<SearchNode> {
+		BeliefState belief;
+		SearchNode parent;
+		Action action;
+		int g;
+		int h;
+
+		SearchNode(BeliefState belief, SearchNode parent, Action action, int g,
+				int h) {
+			this.belief = belief;
+			this.parent = parent;
+			this.action = action;
+			this.g = g;
+			this.h = h;
+		}
+
+		@Override
+		public int compareTo(SearchNode o) {
+			int c = (g + h) - (o.g + o.h);
+			return c != 0 ? c : h - o.h;
+		}
+	}
+}
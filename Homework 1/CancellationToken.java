@@ -0,0 +1,52 @@
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tells a search when to stop: once cancel() has been called, from any
+ * thread, or once its deadline has passed. The search polls isCancelled()
+ * and stops cooperatively, so it is never interrupted halfway through
+ * updating its state.
+ */
+public class CancellationToken {
+
+	private volatile boolean cancelled = false;
+	private final boolean hasDeadline;
+	// System.nanoTime() at the deadline
+	private final long deadline;
+
+	/**
+	 * Constructs a token without a deadline, cancelled only by cancel().
+	 */
+	public CancellationToken() {
+		this.hasDeadline = false;
+		this.deadline = 0;
+	}
+
+	/**
+	 * Constructs a token that cancels itself once the given time has passed.
+	 *
+	 * @param timeout
+	 *            the time until the deadline.
+	 * @param unit
+	 *            the unit of timeout.
+	 */
+	public CancellationToken(long timeout, TimeUnit unit) {
+		this.hasDeadline = true;
+		this.deadline = System.nanoTime() + unit.toNanos(timeout);
+	}
+
+	/**
+	 * Cancels the search using this token.
+	 */
+	public void cancel() {
+		this.cancelled = true;
+	}
+
+	/**
+	 * Returns <code>true</code> if cancel() has been called or the deadline
+	 * has passed.
+	 */
+	public boolean isCancelled() {
+		return this.cancelled
+				|| (this.hasDeadline && System.nanoTime() - this.deadline >= 0);
+	}
+}
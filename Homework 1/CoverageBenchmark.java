@@ -0,0 +1,108 @@
+import java.util.Random;
+
+/**
+ * Runs the grid coverage agents (SweepVacuumAgent, ModelBasedCoverageAgent
+ * and, for comparison, LRTAStarVacuumAgent) on square grids of growing size
+ * up to VacuumEnvironment.MAX_DIMENSION, and reports for each the steps it
+ * took to clean the grid and the number of decisions it made per second.<br>
+ * <br>
+ * The world is simulated by a bitset of dirty locations with the movement
+ * rules of VacuumEnvironment, rather than a VacuumEnvironment, whose steps
+ * would cost far more than the decisions timed. Only the calls to the agent
+ * are timed. Every agent gets the same grid and starting location.<br>
+ * <br>
+ * Usage: java CoverageBenchmark [probability of dirt [seed]]
+ */
+public class CoverageBenchmark {
+	public static final int[] SIZES = new int[] { 16, 64, 256,
+			VacuumEnvironment.MAX_DIMENSION };
+	public static final int LRTA_BUDGET = 64;
+	// a run is given up after this many steps per location
+	public static final int MAX_STEPS_PER_LOCATION = 20;
+
+	public static void main(String[] args) {
+		double probability = args.length > 0 ? Double.parseDouble(args[0])
+				: 0.5;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 4701;
+		System.out.printf("%-10s %-24s %12s %10s %8s %14s%n", "grid", "agent",
+				"steps", "per cell", "clean", "decisions/s");
+		for (int size : SIZES) {
+			Random r = new Random(seed + size);
+			long[] dirt = new long[(size * size + 63) >>> 6];
+			for (int i = 0; i < size * size; i++) {
+				if (r.nextDouble() < probability) {
+					dirt[i >>> 6] |= 1L << i;
+				}
+			}
+			int x = r.nextInt(size);
+			int y = r.nextInt(size);
+			CoverageVacuumAgent[] coverage = new CoverageVacuumAgent[] {
+					new SweepVacuumAgent(size, size),
+					new ModelBasedCoverageAgent(size, size) };
+			for (CoverageVacuumAgent agent : coverage) {
+				report(size, agent.getClass().getName(), run(agent, size,
+						dirt.clone(), x, y));
+			}
+			report(size, "LRTAStarVacuumAgent(" + LRTA_BUDGET + ")", run(
+					new LRTAStarVacuumAgent(size, size, LRTA_BUDGET), size,
+					dirt.clone(), x, y));
+		}
+	}
+
+	/**
+	 * Runs an agent from (x, y) on a size x size grid until the grid is clean,
+	 * the agent does a NoOp or the run is given up.
+	 *
+	 * @return { steps to clean (all steps run if it was not cleaned), dirt
+	 *         left, decisions, nanoseconds spent deciding }.
+	 */
+	public static long[] run(Agent agent, int size, long[] dirt, int x, int y) {
+		long dirtLeft = 0;
+		for (long word : dirt) {
+			dirtLeft += Long.bitCount(word);
+		}
+		long maxSteps = (long) MAX_STEPS_PER_LOCATION * size * size;
+		long steps = 0;
+		long decisions = 0;
+		long nanos = 0;
+		while (dirtLeft > 0 && steps < maxSteps) {
+			int cell = x * size + y;
+			boolean dirty = (dirt[cell >>> 6] & (1L << cell)) != 0;
+			Percept percept = new LocalVacuumEnvironmentPercept(x + "," + y,
+					dirty ? VacuumEnvironment.LocationState.Dirty
+							: VacuumEnvironment.LocationState.Clean);
+			long start = System.nanoTime();
+			Action action = agent.execute(percept);
+			nanos += System.nanoTime() - start;
+			decisions++;
+			steps++;
+			if (VacuumEnvironment.ACTION_MOVE_LEFT == action) {
+				x = x - 1 >= 0 ? x - 1 : x;
+			} else if (VacuumEnvironment.ACTION_MOVE_RIGHT == action) {
+				x = x + 1 < size ? x + 1 : x;
+			} else if (VacuumEnvironment.ACTION_MOVE_UP == action) {
+				y = y + 1 < size ? y + 1 : y;
+			} else if (VacuumEnvironment.ACTION_MOVE_DOWN == action) {
+				y = y - 1 >= 0 ? y - 1 : y;
+			} else if (VacuumEnvironment.ACTION_SUCK == action) {
+				if (dirty) {
+					dirt[cell >>> 6] &= ~(1L << cell);
+					dirtLeft--;
+				}
+			} else if (action.isNoOp()) {
+				break;
+			}
+		}
+		return new long[] { steps, dirtLeft, decisions, nanos };
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private static void report(int size, String agent, long[] result) {
+		System.out.printf("%-10s %-24s %12d %10.2f %8s %14.0f%n", size + "x"
+				+ size, agent, result[0], (double) result[0] / size / size,
+				result[1] == 0 ? "yes" : "no", result[3] == 0 ? 0.0
+						: result[2] * 1e9 / result[3]);
+	}
+}
@@ -0,0 +1,99 @@
+/**
+ * Base class of agents that clean a width x height grid by covering it, i.e.
+ * visiting every location, while seeing only the location they are at
+ * (LocalVacuumEnvironmentPercept). A coverage agent sucks up dirt where it
+ * finds it and otherwise leaves the choice of move to its subclass, which
+ * gets the agent's location as coordinates.<br>
+ * <br>
+ * The location is parsed from the percept without allocating, and all moves
+ * are the actions of VacuumEnvironment, so a decision allocates nothing.
+ */
+public abstract class CoverageVacuumAgent extends AbstractAgent {
+	// indices into MOVES
+	protected static final int LEFT = 0;
+	protected static final int RIGHT = 1;
+	protected static final int UP = 2;
+	protected static final int DOWN = 3;
+	protected static final Action[] MOVES = new Action[] {
+			VacuumEnvironment.ACTION_MOVE_LEFT,
+			VacuumEnvironment.ACTION_MOVE_RIGHT,
+			VacuumEnvironment.ACTION_MOVE_UP,
+			VacuumEnvironment.ACTION_MOVE_DOWN };
+	protected static final int[] DX = new int[] { -1, 1, 0, 0 };
+	protected static final int[] DY = new int[] { 0, 0, 1, -1 };
+
+	protected final int width;
+	protected final int height;
+	//
+	private long decisions = 0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param width
+	 *            the width of the grid.
+	 * @param height
+	 *            the height of the grid.
+	 */
+	protected CoverageVacuumAgent(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.program = new AgentProgram() {
+			public Action execute(Percept percept) {
+				decisions++;
+				LocalVacuumEnvironmentPercept vep = (LocalVacuumEnvironmentPercept) percept;
+				if (VacuumEnvironment.LocationState.Dirty == vep
+						.getLocationState()) {
+					return VacuumEnvironment.ACTION_SUCK;
+				}
+				String location = vep.getAgentLocation();
+				int comma = location.indexOf(',');
+				return move(parse(location, 0, comma),
+						parse(location, comma + 1, location.length()));
+			}
+		};
+	}
+
+	/**
+	 * Returns the number of decisions made so far.
+	 */
+	public long getDecisions() {
+		return decisions;
+	}
+
+	public Metrics getMetrics() {
+		Metrics result = new Metrics();
+		result.set("decisions", decisions);
+		return result;
+	}
+
+	/**
+	 * Returns the move to make from a clean location, or NoOp once the agent
+	 * has covered the grid.
+	 *
+	 * @param x
+	 *            the x coordinate of the agent's location.
+	 * @param y
+	 *            the y coordinate of the agent's location.
+	 * @return the action to take.
+	 */
+	protected abstract Action move(int x, int y);
+
+	/**
+	 * Returns <code>true</code> if (x, y) is on the grid.
+	 */
+	protected boolean isOnGrid(int x, int y) {
+		return x >= 0 && x < width && y >= 0 && y < height;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private static int parse(String s, int from, int to) {
+		int n = 0;
+		for (int i = from; i < to; i++) {
+			n = 10 * n + (s.charAt(i) - '0');
+		}
+		return n;
+	}
+}
@@ -8,4 +8,9 @@ public class DefaultStepCostFunction implements StepCostFunction {
 	public double c(Object stateFrom, Action action, Object stateTo) {
 		return 1;
 	}
+
+	@Override
+	public String toString() {
+		return "DefaultStepCostFunction";
+	}
 }
@@ -0,0 +1,17 @@
+/**
+ * An EnvironmentView that also wants to know about the dirt that arrives in a
+ * VacuumEnvironment with dynamic dirt enabled (see
+ * VacuumEnvironment.enableDynamicDirt), a change of the environment that no
+ * agent's action accounts for.
+ */
+public interface DirtArrivalView extends EnvironmentView {
+	/**
+	 * Indicates dirt has arrived at a location that was clean.
+	 *
+	 * @param location
+	 *            the LOCATION_FORMAT'd location that is now dirty.
+	 * @param resultingState
+	 *            the EnvironmentState that resulted from the dirt arriving.
+	 */
+	void dirtArrived(String location, EnvironmentState resultingState);
+}
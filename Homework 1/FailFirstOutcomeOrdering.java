@@ -0,0 +1,52 @@
+/**
+ * Fail-first ordering of the outcomes of an action (see OutcomeOrdering),
+ * by a cheap estimate of how likely each is to fail: an outcome already on
+ * the path fails for certain (OR-SEARCH rejects it as a cycle) and goes
+ * first, goal states cannot fail and go last, and the others are searched
+ * hardest first, i.e. in decreasing order of a heuristic estimate of their
+ * distance to a goal. Outcomes that tie keep their order.
+ */
+public class FailFirstOutcomeOrdering implements OutcomeOrdering {
+
+	private HeuristicFunction heuristic;
+
+	/**
+	 * Constructor
+	 *
+	 * @param heuristic
+	 *            an estimate of the distance from a state to a goal.
+	 */
+	public FailFirstOutcomeOrdering(HeuristicFunction heuristic) {
+		this.heuristic = heuristic;
+	}
+
+	public void order(Object[] states, NondeterministicProblem problem,
+			Path path) {
+		if (states.length < 2) {
+			return;
+		}
+		double[] score = new double[states.length];
+		for (int i = 0; i < states.length; i++) {
+			if (problem.isGoalState(states[i])) {
+				score[i] = Double.NEGATIVE_INFINITY;
+			} else if (path.contains(states[i])) {
+				score[i] = Double.POSITIVE_INFINITY;
+			} else {
+				score[i] = heuristic.h(states[i]);
+			}
+		}
+		// insertion sort by decreasing score; there are only a few outcomes
+		for (int i = 1; i < states.length; i++) {
+			Object state = states[i];
+			double s = score[i];
+			int j = i - 1;
+			while (j >= 0 && score[j] < s) {
+				states[j + 1] = states[j];
+				score[j + 1] = score[j];
+				j--;
+			}
+			states[j + 1] = state;
+			score[j + 1] = s;
+		}
+	}
+}
@@ -0,0 +1,128 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Orders the actions of a state (see ActionOrdering) by a one-step look-ahead
+ * at their outcomes: an action with an outcome that is the state itself
+ * leads OR-SEARCH into a cycle, so it fails for certain and is tried last,
+ * and the others are tried in increasing order of the
+ * largest heuristic estimate over their outcomes, i.e. the action whose worst
+ * outcome looks closest to a goal first. Actions that tie keep the order of
+ * the ActionsFunction.<br>
+ * <br>
+ * The outcomes worked out for the look-ahead are kept and handed to OR-SEARCH
+ * by results(Object, Action, NondeterministicProblem), so the ResultsFunction
+ * is called only once for every action scored, not again when it is tried.
+ * They are kept for the OR nodes on the current path only: an OR node's
+ * outcomes are dropped once its last action's have been handed over or one
+ * of its actions is solved. The path is not passed to an ActionOrdering, so
+ * of the states on the path only the state itself is checked for.
+ */
+public class HeuristicActionOrdering implements ActionOrdering {
+
+	private HeuristicFunction heuristic;
+	// the outcomes of the actions of the OR nodes on the current path that
+	// have not been handed to the search yet, innermost node last
+	private List<Frame> frames = new ArrayList<Frame>();
+
+	/**
+	 * Constructor
+	 *
+	 * @param heuristic
+	 *            an estimate of the distance from a state to a goal.
+	 */
+	public HeuristicActionOrdering(HeuristicFunction heuristic) {
+		this.heuristic = heuristic;
+	}
+
+	public List<Action> order(Object state, Set<Action> actions,
+			NondeterministicProblem problem) {
+		List<Action> ordered = new ArrayList<Action>(actions.size());
+		List<Double> scores = new ArrayList<Double>(actions.size());
+		Map<Action, Set<Object>> outcomes = new HashMap<Action, Set<Object>>();
+		for (Action action : actions) {
+			Set<Object> results = problem.getResultsFunction().results(state,
+					action);
+			outcomes.put(action, results);
+			double score = Double.NEGATIVE_INFINITY;
+			for (Object outcome : results) {
+				if (outcome.equals(state)) {
+					score = Double.POSITIVE_INFINITY;
+					break;
+				}
+				score = Math.max(score, heuristic.h(outcome));
+			}
+			int i = ordered.size();
+			while (i > 0 && scores.get(i - 1) > score) {
+				i--;
+			}
+			ordered.add(i, action);
+			scores.add(i, score);
+		}
+		if (!outcomes.isEmpty()) {
+			frames.add(new Frame(state, outcomes));
+		}
+		return ordered;
+	}
+
+	public Set<Object> results(Object state, Action action,
+			NondeterministicProblem problem) {
+		int f = find(state);
+		if (f >= 0) {
+			Frame frame = frames.get(f);
+			Set<Object> results = frame.outcomes.remove(action);
+			if (frame.outcomes.isEmpty()) {
+				// no other action of the node is left to try
+				drop(f);
+			}
+			if (results != null) {
+				return results;
+			}
+		}
+		return problem.getResultsFunction().results(state, action);
+	}
+
+	public void update(Object state, Action action, boolean solved, int depth) {
+		if (solved) {
+			// OR-SEARCH returns the plan of the action, the node is done
+			int f = find(state);
+			if (f >= 0) {
+				drop(f);
+			}
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	// The frame of the innermost OR node of the state, or -1.
+	private int find(Object state) {
+		for (int f = frames.size() - 1; f >= 0; f--) {
+			if (frames.get(f).state == state) {
+				return f;
+			}
+		}
+		return -1;
+	}
+
+	// Drops frame f and the frames of the nodes below it, which are done.
+	private void drop(int f) {
+		while (frames.size() > f) {
+			frames.remove(frames.size() - 1);
+		}
+	}
+
+	private static class Frame {
+		Object state;
+		Map<Action, Set<Object>> outcomes;
+
+		Frame(Object state, Map<Action, Set<Object>> outcomes) {
+			this.state = state;
+			this.outcomes = outcomes;
+		}
+	}
+}
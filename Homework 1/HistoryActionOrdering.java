@@ -0,0 +1,75 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Orders the actions of a state (see ActionOrdering) by how often they have
+ * led to a plan so far, in the spirit of the history heuristic of game tree
+ * search: for each action it counts the times it was tried and the times
+ * AND-SEARCH found a plan for it, and tries actions in decreasing order of
+ * their estimated success rate (solved + 1) / (tried + 2). Actions that tie,
+ * such as all actions before anything has been learned, keep the order of
+ * the ActionsFunction.<br>
+ * <br>
+ * What has been learned is kept from one search to the next, until reset()
+ * is called.
+ */
+public class HistoryActionOrdering implements ActionOrdering {
+
+	// { tried, solved } for each action
+	private Map<Action, long[]> history = new HashMap<Action, long[]>();
+
+	public List<Action> order(Object state, Set<Action> actions,
+			NondeterministicProblem problem) {
+		List<Action> ordered = new ArrayList<Action>(actions.size());
+		List<Double> rates = new ArrayList<Double>(actions.size());
+		for (Action action : actions) {
+			double rate = getSuccessRate(action);
+			int i = ordered.size();
+			while (i > 0 && rates.get(i - 1) < rate) {
+				i--;
+			}
+			ordered.add(i, action);
+			rates.add(i, rate);
+		}
+		return ordered;
+	}
+
+	public Set<Object> results(Object state, Action action,
+			NondeterministicProblem problem) {
+		return problem.getResultsFunction().results(state, action);
+	}
+
+	public void update(Object state, Action action, boolean solved, int depth) {
+		long[] counts = history.get(action);
+		if (counts == null) {
+			counts = new long[2];
+			history.put(action, counts);
+		}
+		counts[0]++;
+		if (solved) {
+			counts[1]++;
+		}
+	}
+
+	/**
+	 * Returns the estimated probability that trying an action leads to a
+	 * plan: 1/2 for an action never tried.
+	 */
+	public double getSuccessRate(Action action) {
+		long[] counts = history.get(action);
+		if (counts == null) {
+			return 0.5;
+		}
+		return (counts[1] + 1.0) / (counts[0] + 2.0);
+	}
+
+	/**
+	 * Forgets everything learned.
+	 */
+	public void reset() {
+		history.clear();
+	}
+}
@@ -20,6 +20,24 @@ public class IfStateThenPlan {
 		this.plan = plan;
 	}
 
+	/**
+	 * Returns the state this if-state-then-plan tests for
+	 * 
+	 * @return the state this if-state-then-plan tests for.
+	 */
+	public Object getState() {
+		return this.state;
+	}
+
+	/**
+	 * Returns the plan to follow if the state matches
+	 * 
+	 * @return the plan to follow if the state matches.
+	 */
+	public Plan getPlan() {
+		return this.plan;
+	}
+
 	/**
 	 * Uses this if-state-then-plan return a result based on the given state
 	 * 
@@ -0,0 +1,310 @@
+import java.util.Arrays;
+
+/**
+ * Artificial Intelligence A Modern Approach (3rd Edition): Figure 4.24, page
+ * 152.<br>
+ * <br>
+ *
+ * <pre>
+ * function LRTA*-AGENT(s') returns an action
+ *   inputs: s', a percept that identifies the current state
+ *   persistent: result, a table, indexed by state and action, initially empty
+ *               H, a table of cost estimates indexed by state, initially empty
+ *               s, a, the previous state and action, initially null
+ *
+ *   if GOAL-TEST(s') then return stop
+ *   if s' is a new state (not in H) then H[s'] <- h(s')
+ *   if s is not null
+ *     result[s, a] <- s'
+ *     H[s] <-        min LRTA*-COST(s, b, result[s, b], H)
+ *             b (element of) ACTIONS(s)
+ *   a <- an action b in ACTIONS(s') that minimizes LRTA*-COST(s', b, result[s', b], H)
+ *   s <- s'
+ *   return a
+ * </pre>
+ *
+ * An online agent that cleans a width x height grid it can only see one
+ * location of at a time (LocalVacuumEnvironmentPercept). The agent sucks up
+ * dirt where it finds it and otherwise heads for the locations it has not
+ * visited yet, which are its goals: H[s] estimates the distance from location
+ * s to the nearest unvisited location, starts at 0 everywhere and is learned
+ * as in LRTA*. Since the grid is known, result[s, a] is computed rather than
+ * remembered.<br>
+ * <br>
+ * Instead of looking one move ahead, each decision searches breadth first
+ * around the agent's location, expanding at most <em>budget</em> visited
+ * locations (the local search space of LSS-LRTA*, Koenig and Sun 2009). H of
+ * every expanded location is raised to its distance through the local search
+ * space to a frontier location plus H of that location (an unvisited location
+ * counts H = 0), by a Dijkstra search back from the frontier, and the agent
+ * then takes the move minimizing 1 + H as in Figure 4.24. A budget of 1 gives
+ * the LRTA* of Figure 4.24. All tables are primitive arrays indexed by the
+ * packed location x * height + y and allocated up front, so a decision takes
+ * O(budget log budget) time and allocates nothing, whatever the size of the
+ * grid. Dirt is assumed not to reappear
+ * once the agent has visited a location; the agent stops (NoOp) after it has
+ * visited every location.
+ */
+public class LRTAStarVacuumAgent extends AbstractAgent {
+	// Left, Right, Up, Down
+	private static final Action[] MOVES = new Action[] {
+			VacuumEnvironment.ACTION_MOVE_LEFT,
+			VacuumEnvironment.ACTION_MOVE_RIGHT,
+			VacuumEnvironment.ACTION_MOVE_UP,
+			VacuumEnvironment.ACTION_MOVE_DOWN };
+	private static final int[] DX = new int[] { -1, 1, 0, 0 };
+	private static final int[] DY = new int[] { 0, 0, 1, -1 };
+
+	private final int width;
+	private final int height;
+	private final int budget;
+	// learned cost estimates
+	private final int[] h;
+	private final long[] visited;
+	private int unvisited;
+	// the search of one decision: a location has been reached in this
+	// decision if its stamp is the current one, and expanded if its expanded
+	// stamp is
+	private final int[] stamp;
+	private final int[] expandedStamp;
+	private final int[] queue;
+	private int currentStamp = 0;
+	// binary heap of (key, location) for the Dijkstra search
+	private final int[] heapKey;
+	private final int[] heapCell;
+	//
+	private long decisions = 0;
+	private long expansions = 0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param width
+	 *            the width of the grid.
+	 * @param height
+	 *            the height of the grid.
+	 * @param budget
+	 *            the most locations expanded in one decision, at least 1.
+	 */
+	public LRTAStarVacuumAgent(int width, int height, int budget) {
+		this.width = width;
+		this.height = height;
+		this.budget = Math.max(1, budget);
+		int cells = width * height;
+		h = new int[cells];
+		visited = new long[(cells + 63) >>> 6];
+		unvisited = cells;
+		stamp = new int[cells];
+		expandedStamp = new int[cells];
+		// every location is queued at most once per decision
+		queue = new int[Math.min(cells, 1 + 4 * this.budget)];
+		// every frontier location is pushed once, and every location popped
+		// pushes at most its four neighbours
+		heapKey = new int[5 * queue.length + 4 * this.budget];
+		heapCell = new int[heapKey.length];
+		this.program = new AgentProgram() {
+			public Action execute(Percept percept) {
+				return decide((LocalVacuumEnvironmentPercept) percept);
+			}
+		};
+	}
+
+	/**
+	 * Returns the learned estimate of the distance from a location to the
+	 * nearest unvisited location.
+	 */
+	public int getH(int x, int y) {
+		return h[x * height + y];
+	}
+
+	public boolean isVisited(int x, int y) {
+		return isVisited(x * height + y);
+	}
+
+	/**
+	 * Returns the number of decisions made and locations expanded so far.
+	 */
+	public Metrics getMetrics() {
+		Metrics result = new Metrics();
+		result.set("decisions", decisions);
+		result.set("expansions", expansions);
+		result.set("unvisited", unvisited);
+		return result;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private Action decide(LocalVacuumEnvironmentPercept percept) {
+		decisions++;
+		if (VacuumEnvironment.LocationState.Dirty == percept.getLocationState()) {
+			return VacuumEnvironment.ACTION_SUCK;
+		}
+		int current = parseCell(percept.getAgentLocation());
+		if (!isVisited(current)) {
+			visited[current >>> 6] |= 1L << current;
+			unvisited--;
+		}
+		if (unvisited == 0) {
+			return NoOpAction.NO_OP;
+		}
+
+		if (++currentStamp == 0) {
+			// the stamps wrapped round; forget them all
+			Arrays.fill(stamp, 0);
+			Arrays.fill(expandedStamp, 0);
+			currentStamp = 1;
+		}
+
+		// expand the local search space breadth first
+		int head = 0;
+		int tail = 0;
+		int expanded = 0;
+		stamp[current] = currentStamp;
+		queue[tail++] = current;
+		while (head < tail && expanded < budget) {
+			int cell = queue[head++];
+			if (cell != current && !isVisited(cell)) {
+				// a goal; left on the frontier
+				continue;
+			}
+			expandedStamp[cell] = currentStamp;
+			expanded++;
+			int x = cell / height;
+			int y = cell % height;
+			for (int m = 0; m < MOVES.length; m++) {
+				int next = neighbour(x, y, m);
+				if (next >= 0 && stamp[next] != currentStamp) {
+					stamp[next] = currentStamp;
+					queue[tail++] = next;
+				}
+			}
+		}
+		expansions += expanded;
+
+		// H of the expanded locations from the frontier back
+		int heapSize = 0;
+		for (int i = 0; i < tail; i++) {
+			int cell = queue[i];
+			if (expandedStamp[cell] != currentStamp) {
+				heapSize = push(heapSize, value(cell), cell);
+			}
+		}
+		int done = 0;
+		while (heapSize > 0 && done < expanded) {
+			int key = heapKey[0];
+			int cell = heapCell[0];
+			heapSize = pop(heapSize);
+			if (expandedStamp[cell] == currentStamp) {
+				if (stamp[cell] == -currentStamp) {
+					// already settled with a lower key
+					continue;
+				}
+				h[cell] = Math.max(h[cell], key);
+				// settled: mark with the negative stamp
+				stamp[cell] = -currentStamp;
+				done++;
+			}
+			int x = cell / height;
+			int y = cell % height;
+			for (int m = 0; m < MOVES.length; m++) {
+				int next = neighbour(x, y, m);
+				if (next >= 0 && expandedStamp[next] == currentStamp
+						&& stamp[next] != -currentStamp) {
+					heapSize = push(heapSize, key + 1, next);
+				}
+			}
+		}
+
+		// a <- the action minimizing 1 + H[result[s', a]]
+		int x = current / height;
+		int y = current % height;
+		int best = -1;
+		int bestValue = Integer.MAX_VALUE;
+		for (int m = 0; m < MOVES.length; m++) {
+			int next = neighbour(x, y, m);
+			if (next >= 0 && value(next) < bestValue) {
+				best = m;
+				bestValue = value(next);
+			}
+		}
+		if (best < 0) {
+			// there is nowhere to go, e.g. a grid of one location
+			return NoOpAction.NO_OP;
+		}
+		return MOVES[best];
+	}
+
+	private boolean isVisited(int cell) {
+		return (visited[cell >>> 6] & (1L << cell)) != 0;
+	}
+
+	// H of a location, 0 for an unvisited one
+	private int value(int cell) {
+		return isVisited(cell) ? h[cell] : 0;
+	}
+
+	private int neighbour(int x, int y, int move) {
+		int nx = x + DX[move];
+		int ny = y + DY[move];
+		if (nx < 0 || nx >= width || ny < 0 || ny >= height) {
+			return -1;
+		}
+		return nx * height + ny;
+	}
+
+	private int push(int size, int key, int cell) {
+		int i = size;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (heapKey[parent] <= key) {
+				break;
+			}
+			heapKey[i] = heapKey[parent];
+			heapCell[i] = heapCell[parent];
+			i = parent;
+		}
+		heapKey[i] = key;
+		heapCell[i] = cell;
+		return size + 1;
+	}
+
+	private int pop(int size) {
+		size--;
+		int key = heapKey[size];
+		int cell = heapCell[size];
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && heapKey[child + 1] < heapKey[child]) {
+				child++;
+			}
+			if (heapKey[child] >= key) {
+				break;
+			}
+			heapKey[i] = heapKey[child];
+			heapCell[i] = heapCell[child];
+			i = child;
+		}
+		heapKey[i] = key;
+		heapCell[i] = cell;
+		return size;
+	}
+
+	// x * height + y of a location "x,y", without allocating
+	private int parseCell(String location) {
+		int x = 0;
+		int i = 0;
+		for (; location.charAt(i) != ','; i++) {
+			x = 10 * x + (location.charAt(i) - '0');
+		}
+		int y = 0;
+		for (i++; i < location.length(); i++) {
+			y = 10 * y + (location.charAt(i) - '0');
+		}
+		return x * height + y;
+	}
+}
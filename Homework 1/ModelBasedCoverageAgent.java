@@ -0,0 +1,95 @@
+/**
+ * A model-based coverage agent (see CoverageVacuumAgent) that remembers which
+ * locations it has visited, one bit per location. From a clean location it
+ * keeps going in the direction it is heading while that leads to an unvisited
+ * location, otherwise turns to any unvisited neighbour, and when all its
+ * neighbours have been visited heads straight for the first unvisited
+ * location in the order x * height + y. It stops (NoOp) once it has visited
+ * every location.<br>
+ * <br>
+ * Unlike SweepVacuumAgent it starts covering where it stands. A decision
+ * looks at the four neighbours and takes O(1) time, except for moving the
+ * pointer to the first unvisited location past the visited ones; since that
+ * pointer only moves forward, a word of 64 locations at a time, it costs
+ * O(width * height / 64) over the whole run. Dirt is assumed not to reappear
+ * at a location the agent has visited.
+ */
+public class ModelBasedCoverageAgent extends CoverageVacuumAgent {
+
+	private final long[] visited;
+	private int unvisited;
+	// no location before it is unvisited
+	private int scan = 0;
+	private int heading = UP;
+
+	/**
+	 * Constructor
+	 *
+	 * @param width
+	 *            the width of the grid.
+	 * @param height
+	 *            the height of the grid.
+	 */
+	public ModelBasedCoverageAgent(int width, int height) {
+		super(width, height);
+		visited = new long[(width * height + 63) >>> 6];
+		unvisited = width * height;
+	}
+
+	public boolean isVisited(int x, int y) {
+		return isVisited(x * height + y);
+	}
+
+	@Override
+	public Metrics getMetrics() {
+		Metrics result = super.getMetrics();
+		result.set("unvisited", unvisited);
+		return result;
+	}
+
+	@Override
+	protected Action move(int x, int y) {
+		int cell = x * height + y;
+		if (!isVisited(cell)) {
+			visited[cell >>> 6] |= 1L << cell;
+			unvisited--;
+		}
+		if (unvisited == 0) {
+			return NoOpAction.NO_OP;
+		}
+
+		if (isUnvisited(x + DX[heading], y + DY[heading])) {
+			return MOVES[heading];
+		}
+		for (int m = 0; m < MOVES.length; m++) {
+			if (isUnvisited(x + DX[m], y + DY[m])) {
+				heading = m;
+				return MOVES[m];
+			}
+		}
+
+		// a dead end: head for the first unvisited location
+		while (isVisited(scan)) {
+			long free = ~visited[scan >>> 6] & (-1L << scan);
+			scan = free != 0 ? (scan & ~63) + Long.numberOfTrailingZeros(free)
+					: (scan | 63) + 1;
+		}
+		int tx = scan / height;
+		int ty = scan % height;
+		if (tx != x) {
+			return MOVES[tx < x ? LEFT : RIGHT];
+		}
+		return MOVES[ty < y ? DOWN : UP];
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private boolean isVisited(int cell) {
+		return (visited[cell >>> 6] & (1L << cell)) != 0;
+	}
+
+	private boolean isUnvisited(int x, int y) {
+		return isOnGrid(x, y) && !isVisited(x * height + y);
+	}
+}
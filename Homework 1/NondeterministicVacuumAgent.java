@@ -1,15 +1,28 @@
+import java.io.IOException;
 import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This agent traverses the NondeterministicVacuumEnvironment using a
- * contingency plan. See page 135, AIMA3e.
+ * contingency plan. See page 135, AIMA3e.<br>
+ * <br>
+ * With a search timeout the agent starts acting on the partial plan found in
+ * time, and searches again from the state it is in whenever it reaches an
+ * UnresolvedPlan leaf of that plan. The search then tries the actions in the
+ * order of HeuristicActionOrdering, so that even a plan cut short early
+ * starts with the action that looks best.
  * 
  * @author Andrew Brown
  */
 public class NondeterministicVacuumAgent extends AbstractAgent {
+	private static final String PLAN_CACHE_SIGNATURE = "AndOrSearch";
+
 	private NondeterministicProblem problem;
 	private PerceptToStateFunction ptsFunction;
 	private Plan contingencyPlan;
+	private PlanCache planCache;
+	// 0 for no timeout
+	private long searchTimeoutNanos = 0;
 	private LinkedList<Object> stack = new LinkedList<Object>();
 
 	public NondeterministicVacuumAgent(PerceptToStateFunction ptsFunction) {
@@ -56,6 +69,53 @@ public class NondeterministicVacuumAgent extends AbstractAgent {
 		this.ptsFunction = ptsFunction;
 	}
 
+	/**
+	 * Returns the cache contingency plans are loaded from, or null.
+	 * 
+	 * @return the plan cache of this agent, or null.
+	 */
+	public PlanCache getPlanCache() {
+		return planCache;
+	}
+
+	/**
+	 * Sets the cache to load contingency plans from instead of searching for
+	 * them. Plans that are not in the cache yet are searched for and stored
+	 * in it. Must be set before the problem.
+	 * 
+	 * @param planCache
+	 *            the plan cache to use, or null to always search.
+	 */
+	public void setPlanCache(PlanCache planCache) {
+		this.planCache = planCache;
+	}
+
+	/**
+	 * Returns the most time one search for a plan may take.
+	 * 
+	 * @param unit
+	 *            the unit to return the timeout in.
+	 * @return the search timeout, or 0 if there is none.
+	 */
+	public long getSearchTimeout(TimeUnit unit) {
+		return unit.convert(searchTimeoutNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Sets the most time one search for a plan may take; the agent then acts
+	 * on the partial plan found in time and searches again where it is
+	 * unresolved. Partial plans are not stored in the plan cache. Must be set
+	 * before the problem.
+	 * 
+	 * @param timeout
+	 *            the search timeout, or 0 for none.
+	 * @param unit
+	 *            the unit of timeout.
+	 */
+	public void setSearchTimeout(long timeout, TimeUnit unit) {
+		this.searchTimeoutNanos = unit.toNanos(timeout);
+	}
+
 	/**
 	 * Return the agent contingency plan
 	 * 
@@ -77,7 +137,7 @@ public class NondeterministicVacuumAgent extends AbstractAgent {
 	@Override
 	public Action execute(Percept percept) {
 		// check if goal state
-		VacuumEnvironmentState state = (VacuumEnvironmentState) this
+		FullyObservableVacuumEnvironmentPercept state = (FullyObservableVacuumEnvironmentPercept) this
 				.getPerceptToStateFunction().getState(percept);
 		if (state.getLocationState(VacuumEnvironment.LOCATION_A) == VacuumEnvironment.LocationState.Clean
 				&& state.getLocationState(VacuumEnvironment.LOCATION_B) == VacuumEnvironment.LocationState.Clean) {
@@ -96,6 +156,17 @@ public class NondeterministicVacuumAgent extends AbstractAgent {
 		// push...
 		if (currentStep instanceof Action) {
 			return (Action) this.stack.pop();
+		} // case: the search did not get this far; search again from here
+		else if (currentStep instanceof UnresolvedPlan) {
+			this.stack.clear();
+			Plan plan = search(new NondeterministicProblem(state,
+					this.problem.getActionsFunction(),
+					this.problem.getResultsFunction(),
+					this.problem.getGoalTest(),
+					this.problem.getStepCostFunction()), false);
+			// no plan from here: stop
+			this.contingencyPlan = plan != null ? plan : new Plan();
+			return this.execute(percept);
 		} // case: next step is a plan
 		else if (currentStep instanceof Plan) {
 			Plan newPlan = (Plan) currentStep;
@@ -108,7 +179,7 @@ public class NondeterministicVacuumAgent extends AbstractAgent {
 		} // case: next step is an if-then
 		else if (currentStep instanceof IfStateThenPlan) {
 			IfStateThenPlan conditional = (IfStateThenPlan) this.stack.pop();
-			this.stack.push(conditional.ifStateMatches(percept));
+			this.stack.push(conditional.ifStateMatches(state));
 			return this.execute(percept);
 		} // case: ignore next step if null
 		else if (currentStep == null) {
@@ -125,7 +196,49 @@ public class NondeterministicVacuumAgent extends AbstractAgent {
 	private void init() {
 		setAlive(true);
 		stack.clear();
+		if (this.planCache != null) {
+			try {
+				this.contingencyPlan = this.planCache.load(this.problem, this,
+						PLAN_CACHE_SIGNATURE);
+			} catch (IOException e) {
+				// an unreadable plan is searched for again and replaced
+				this.contingencyPlan = null;
+			} catch (IllegalArgumentException e) {
+				// states the cache cannot encode are a miss; the plan found
+				// is not stored either
+				this.contingencyPlan = null;
+			}
+			if (this.contingencyPlan != null) {
+				return;
+			}
+		}
+		this.contingencyPlan = search(this.problem, this.planCache != null);
+	}
+
+	// Searches for a plan, within the search timeout if there is one, and
+	// stores it in the plan cache if asked to and it is complete.
+	private Plan search(NondeterministicProblem problem, boolean store) {
 		AndOrSearch andOrSearch = new AndOrSearch();
-		this.contingencyPlan = andOrSearch.search(this.problem);
+		Plan plan;
+		if (this.searchTimeoutNanos > 0) {
+			andOrSearch.setActionOrdering(new HeuristicActionOrdering(
+					VacuumFunctionFactory.getHeuristicFunction(this)));
+			plan = andOrSearch.search(problem, this.searchTimeoutNanos,
+					TimeUnit.NANOSECONDS);
+		} else {
+			plan = andOrSearch.search(problem);
+		}
+		if (store && plan != null && andOrSearch.isComplete()) {
+			try {
+				this.planCache.store(problem, this, PLAN_CACHE_SIGNATURE, plan);
+			} catch (IOException e) {
+				// the plan found is still used; it is just searched for again
+				// next time
+			} catch (IllegalArgumentException e) {
+				// nor can a plan whose states the cache cannot encode be
+				// stored
+			}
+		}
+		return plan;
 	}
 }
@@ -0,0 +1,73 @@
+import java.util.Random;
+
+/**
+ * Compares the outcome and action orderings of AndOrSearch (see
+ * OutcomeOrdering and ActionOrdering) on vacuum grids with the erratic
+ * results function, reporting for each ordering the nodes expanded, the size
+ * of the plan found and the time taken. Every plan is checked with
+ * PlanVerifier.<br>
+ * <br>
+ * Usage: java -Xss64m OrderingBenchmark [instances per grid [seed]]
+ */
+public class OrderingBenchmark {
+	public static final int[][] GRIDS = new int[][] { { 2, 2 }, { 1, 6 },
+			{ 2, 3 }, { 3, 3 } };
+
+	public static void main(String[] args) {
+		int instances = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 4701;
+		String[] names = new String[] { "default", "fail-first",
+				"history", "heuristic", "fail-first+heuristic" };
+		long[][] totals = new long[names.length][3];
+		System.out.printf("%-6s %-4s %-20s %12s %8s %8s %6s%n", "grid", "#",
+				"ordering", "expanded", "actions", "ms", "valid");
+		for (int[] grid : GRIDS) {
+			int width = grid[0];
+			int height = grid[1];
+			Random r = new Random(seed + 31 * width + height);
+			for (int n = 0; n < instances; n++) {
+				Boolean[][] dirt = new Boolean[width][height];
+				for (int x = 0; x < width; x++) {
+					for (int y = 0; y < height; y++) {
+						dirt[x][y] = r.nextBoolean();
+					}
+				}
+				VacuumEnvironment env = new VacuumEnvironment(dirt);
+				Agent agent = new ReflexVacuumAgent();
+				env.addAgent(agent, r.nextInt(width), r.nextInt(height));
+				NondeterministicProblem problem = VacuumFunctionFactory
+						.createProblem(env, agent, true);
+				HeuristicFunction h = VacuumFunctionFactory
+						.getHeuristicFunction(agent);
+				for (int k = 0; k < names.length; k++) {
+					AndOrSearch search = new AndOrSearch();
+					if (k == 1 || k == 4) {
+						search.setOutcomeOrdering(new FailFirstOutcomeOrdering(h));
+					}
+					if (k == 2) {
+						search.setActionOrdering(new HistoryActionOrdering());
+					} else if (k == 3 || k == 4) {
+						search.setActionOrdering(new HeuristicActionOrdering(h));
+					}
+					Plan plan = search.search(problem);
+					SearchStatistics stats = search.getStatistics();
+					boolean valid = plan != null
+							&& new PlanVerifier(problem).verify(plan).isValid();
+					long expanded = search.getMetrics().getInt("expandedNodes");
+					totals[k][0] += expanded;
+					totals[k][1] += stats.getPlanSize();
+					totals[k][2] += stats.getWallTimeNanos();
+					System.out.printf("%-6s %-4d %-20s %12d %8d %8.1f %6s%n",
+							width + "x" + height, n, names[k], expanded,
+							stats.getPlanSize(),
+							stats.getWallTimeNanos() / 1e6, valid);
+				}
+			}
+		}
+		System.out.println();
+		for (int k = 0; k < names.length; k++) {
+			System.out.printf("%-20s expanded=%d actions=%d ms=%.1f%n",
+					names[k], totals[k][0], totals[k][1], totals[k][2] / 1e6);
+		}
+	}
+}
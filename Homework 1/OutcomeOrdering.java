@@ -0,0 +1,22 @@
+/**
+ * Decides the order in which AND-SEARCH (see AndOrSearch) searches the
+ * outcome states of an action. Since AND-SEARCH fails as soon as one outcome
+ * fails, searching the outcomes most likely to fail first ("fail first")
+ * avoids solving siblings of a failing outcome for nothing.
+ */
+public interface OutcomeOrdering {
+
+	/**
+	 * Puts the outcomes of an action into the order in which they are to be
+	 * searched.
+	 *
+	 * @param states
+	 *            the outcome states, reordered in place.
+	 * @param problem
+	 *            the problem searched.
+	 * @param path
+	 *            the states from the state the action is taken in back to the
+	 *            initial state.
+	 */
+	void order(Object[] states, NondeterministicProblem problem, Path path);
+}
@@ -0,0 +1,602 @@
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs a large vacuum world on several threads. The grid is cut into strips of
+ * whole columns (regions), one per worker thread. Each region keeps its own
+ * bitset of dirty locations and its own list of agents, so a worker only ever
+ * touches memory it owns while stepping. An agent that moves out of its region
+ * is handed off to the region it moved into at the end of the step, when all
+ * workers wait at a barrier.<br>
+ * <br>
+ * A step has the same effect as VacuumEnvironment.step() for agents that
+ * perceive a LocalVacuumEnvironmentPercept: each live agent perceives its
+ * location, acts and has its performance measure updated (-1 for a move, +10
+ * for sucking up dirt), and a NoOp ends the run. Agents of a region act in the
+ * order they arrived in it. Since the world is not held in a
+ * VacuumEnvironmentState it is not limited to MAX_DIMENSION.<br>
+ * <br>
+ * The column boundaries are chosen so that every region holds about the same
+ * amount of dirt and agents. Every region keeps count of its weight, so the
+ * start of a call to step(int) can tell in time proportional to the number of
+ * regions whether the load has become uneven; only then are the boundaries
+ * recomputed from the current world. The worker threads are started once and
+ * reused by every call to step(int) until close().<br>
+ * <br>
+ * The runner is a standalone simulator: a copy made of a VacuumEnvironment
+ * (see PartitionedVacuumRunner(VacuumEnvironment, int)) never writes back to
+ * it. No EnvironmentView, and so no VacuumTraceRecorder, is told of its
+ * steps, and dynamic dirt does not arrive in it.
+ */
+public class PartitionedVacuumRunner implements Closeable {
+	public static final double DEFAULT_REBALANCE_THRESHOLD = 1.25;
+
+	private int width;
+	private int height;
+	private Region[] regions;
+	private List<AgentRecord> agents = new ArrayList<AgentRecord>();
+	private boolean noOp = false;
+	private double rebalanceThreshold = DEFAULT_REBALANCE_THRESHOLD;
+	// the heaviest region over the mean right after the last partition, the
+	// best the column boundaries could do then
+	private double partitionImbalance = 1;
+	private ExecutorService workers = null;
+	//
+	private long steps = 0;
+	private long handoffs = 0;
+	private long dirtCleaned = 0;
+	private long rebalances = 0;
+
+	/**
+	 * Constructs a width x height world in which each location is dirty with
+	 * the given probability.
+	 *
+	 * @param width
+	 *            the width of the grid.
+	 * @param height
+	 *            the height of the grid.
+	 * @param probability
+	 *            the probability that a location is dirty.
+	 * @param regionCount
+	 *            the number of regions (and worker threads) to use.
+	 */
+	public PartitionedVacuumRunner(int width, int height, double probability,
+			int regionCount) {
+		this.width = width;
+		this.height = height;
+		long[] dirt = new long[bitsetSize((long) width * height)];
+		Random r = new Random();
+		for (long i = 0; i < (long) width * height; i++) {
+			if (r.nextDouble() < probability) {
+				dirt[(int) (i >>> 6)] |= 1L << i;
+			}
+		}
+		partition(dirt, regionCount);
+	}
+
+	/**
+	 * Constructs a copy of the current world of a VacuumEnvironment, including
+	 * its agents, their locations and their performance measures so far. The
+	 * environment itself is not changed by running the copy, nor are its
+	 * views told of it, and its dynamic dirt is not copied.
+	 *
+	 * @param env
+	 *            the environment to copy.
+	 * @param regionCount
+	 *            the number of regions (and worker threads) to use.
+	 */
+	public PartitionedVacuumRunner(VacuumEnvironment env, int regionCount) {
+		this.width = env.getGridWidth();
+		this.height = env.getGridHeight();
+		long[] dirt = new long[bitsetSize((long) width * height)];
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				if (VacuumEnvironment.LocationState.Dirty == env
+						.getLocationState(location(x, y))) {
+					int i = x * height + y;
+					dirt[i >>> 6] |= 1L << i;
+				}
+			}
+		}
+		for (Agent a : env.getAgents()) {
+			String location = env.getAgentLocation(a);
+			int comma = location.indexOf(',');
+			agents.add(new AgentRecord(a, Integer.parseInt(location.substring(
+					0, comma)), Integer.parseInt(location.substring(comma + 1)),
+					env.getPerformanceMeasure(a)));
+		}
+		partition(dirt, regionCount);
+	}
+
+	/**
+	 * Adds an agent at the given location.
+	 */
+	public void addAgent(Agent a, int x, int y) {
+		AgentRecord record = new AgentRecord(a, x, y, 0);
+		agents.add(record);
+		regions[regionOf(x)].agents.add(record);
+	}
+
+	/**
+	 * Sets how uneven the load may become before step(int) recomputes the
+	 * region boundaries: the boundaries are recomputed once the heaviest
+	 * region outweighs the mean by more than threshold times what it did
+	 * right after they were last computed. Defaults to
+	 * DEFAULT_REBALANCE_THRESHOLD.
+	 *
+	 * @param threshold
+	 *            at least 1; 1 recomputes the boundaries whenever the load
+	 *            has become any less even.
+	 */
+	public void setRebalanceThreshold(double threshold) {
+		if (threshold < 1) {
+			throw new IllegalArgumentException(
+					"Rebalance threshold must be at least 1.");
+		}
+		this.rebalanceThreshold = threshold;
+	}
+
+	/**
+	 * Runs at most n steps, fewer if an agent does a NoOp or no agent is
+	 * alive any more. If an agent throws a RuntimeException, the other
+	 * regions finish the step, which is not counted, and it is thrown from
+	 * here; the agents after it in its region do not act in that step.
+	 *
+	 * @param n
+	 *            the maximum number of steps to run.
+	 * @return the number of steps run.
+	 */
+	public long step(final int n) {
+		if (isDone() || n <= 0) {
+			return 0;
+		}
+		if (imbalance() > partitionImbalance * rebalanceThreshold) {
+			rebalance();
+		}
+		if (workers == null) {
+			workers = Executors.newFixedThreadPool(regions.length,
+					new ThreadFactory() {
+						private int count = 0;
+
+						public Thread newThread(Runnable r) {
+							Thread t = new Thread(r, "PartitionedVacuumRunner-"
+									+ count++);
+							// an unclosed runner does not keep the VM alive
+							t.setDaemon(true);
+							return t;
+						}
+					});
+		}
+		final long start = steps;
+		final RuntimeException[] failure = new RuntimeException[1];
+		final CyclicBarrier barrier = new CyclicBarrier(regions.length,
+				new Runnable() {
+					// runs in one thread once all workers have finished a step
+					public void run() {
+						handOff();
+						synchronized (failure) {
+							if (failure[0] != null) {
+								// an agent failed, the step is not counted
+								for (Region region : regions) {
+									region.stop = true;
+								}
+								return;
+							}
+						}
+						steps++;
+						for (Region region : regions) {
+							noOp |= region.noOp;
+						}
+						if (steps - start >= n || isDone()) {
+							for (Region region : regions) {
+								region.stop = true;
+							}
+						}
+					}
+				});
+		// one task per region, all running at once on the pool of as many
+		// threads
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int i = 0; i < regions.length; i++) {
+			final Region region = regions[i];
+			region.stop = false;
+			tasks.add(new Callable<Void>() {
+				public Void call() {
+					try {
+						while (!region.stop) {
+							try {
+								region.step();
+							} catch (RuntimeException e) {
+								synchronized (failure) {
+									failure[0] = e;
+								}
+							}
+							// a failed worker still ends the step, so the
+							// others do not wait for it, and the barrier
+							// action stops them all
+							barrier.await();
+						}
+					} catch (InterruptedException e) {
+						// the barrier stays broken: the others waiting, and
+						// those that get to it later, give up
+					} catch (BrokenBarrierException e) {
+						// another worker was interrupted
+					}
+					return null;
+				}
+			});
+		}
+		try {
+			// interrupts the tasks still running if interrupted itself
+			workers.invokeAll(tasks);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		for (Region region : regions) {
+			dirtCleaned += region.dirtCleaned;
+			region.dirtCleaned = 0;
+		}
+		synchronized (failure) {
+			if (failure[0] != null) {
+				throw failure[0];
+			}
+		}
+		return steps - start;
+	}
+
+	/**
+	 * Returns <code>true</code> if an agent did a NoOp or no agent is alive.
+	 */
+	public boolean isDone() {
+		if (noOp) {
+			return true;
+		}
+		for (AgentRecord record : agents) {
+			if (record.agent.isAlive()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Recomputes the region boundaries from the current dirt and agent
+	 * locations, moving columns and agents between regions as needed.
+	 */
+	public void rebalance() {
+		long[] dirt = new long[bitsetSize((long) width * height)];
+		for (Region region : regions) {
+			region.copyDirtTo(dirt);
+		}
+		partition(dirt, regions.length);
+		rebalances++;
+	}
+
+	/**
+	 * Stops the worker threads. The runner can still be queried, and starts
+	 * new workers if it is stepped again.
+	 */
+	@Override
+	public void close() {
+		if (workers != null) {
+			workers.shutdownNow();
+			workers = null;
+		}
+	}
+
+	public double getPerformanceMeasure(Agent forAgent) {
+		for (AgentRecord record : agents) {
+			if (record.agent == forAgent) {
+				return record.performance;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the performance measures of all agents, merged from all regions,
+	 * in the order the agents were added.
+	 */
+	public Map<Agent, Double> getPerformanceMeasures() {
+		Map<Agent, Double> result = new LinkedHashMap<Agent, Double>();
+		for (AgentRecord record : agents) {
+			result.put(record.agent, record.performance);
+		}
+		return result;
+	}
+
+	public VacuumEnvironment.LocationState getLocationState(int x, int y) {
+		return regions[regionOf(x)].isDirty(x, y) ? VacuumEnvironment.LocationState.Dirty
+				: VacuumEnvironment.LocationState.Clean;
+	}
+
+	public String getAgentLocation(Agent a) {
+		for (AgentRecord record : agents) {
+			if (record.agent == a) {
+				return location(record.x, record.y);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the number of dirty locations left in the world.
+	 */
+	public long getDirtCount() {
+		long n = 0;
+		for (Region region : regions) {
+			n += region.dirtCount;
+		}
+		return n;
+	}
+
+	/**
+	 * Returns the first column of every region followed by the width of the
+	 * grid.
+	 */
+	public int[] getRegionBounds() {
+		int[] bounds = new int[regions.length + 1];
+		for (int i = 0; i < regions.length; i++) {
+			bounds[i] = regions[i].x0;
+		}
+		bounds[regions.length] = width;
+		return bounds;
+	}
+
+	/**
+	 * Returns the steps run, agents handed off between regions, dirt cleaned
+	 * and times the region boundaries were recomputed so far.
+	 */
+	public Metrics getMetrics() {
+		Metrics result = new Metrics();
+		result.set("regions", regions.length);
+		result.set("steps", steps);
+		result.set("handoffs", handoffs);
+		result.set("dirtCleaned", dirtCleaned);
+		result.set("rebalances", rebalances);
+		return result;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private static int bitsetSize(long bits) {
+		return (int) ((bits + 63) >>> 6);
+	}
+
+	private static String location(int x, int y) {
+		// same as String.format(VacuumEnvironment.LOCATION_FORMAT, x, y)
+		return x + "," + y;
+	}
+
+	// Cut the columns into regionCount strips of about equal weight, where a
+	// column weighs its dirt plus its agents (every agent costs a percept and
+	// an action per step). Every region gets at least one column.
+	private void partition(long[] dirt, int regionCount) {
+		regionCount = Math.max(1, Math.min(regionCount, width));
+		long[] prefix = new long[width + 1];
+		for (AgentRecord record : agents) {
+			prefix[record.x + 1]++;
+		}
+		for (int x = 0; x < width; x++) {
+			prefix[x + 1] += prefix[x]
+					+ countBits(dirt, (long) x * height, (long) (x + 1) * height);
+		}
+		long total = prefix[width];
+
+		int[] bounds = new int[regionCount + 1];
+		bounds[regionCount] = width;
+		int x = 0;
+		for (int i = 1; i < regionCount; i++) {
+			if (total == 0) {
+				x = (int) ((long) width * i / regionCount);
+			} else {
+				long target = total * i / regionCount;
+				while (x < width && prefix[x] < target) {
+					x++;
+				}
+			}
+			// leave at least one column for this region and each one after it
+			x = Math.max(x, bounds[i - 1] + 1);
+			x = Math.min(x, width - (regionCount - i));
+			bounds[i] = x;
+		}
+
+		regions = new Region[regionCount];
+		for (int i = 0; i < regionCount; i++) {
+			regions[i] = new Region(bounds[i], bounds[i + 1], dirt);
+		}
+		for (AgentRecord record : agents) {
+			regions[regionOf(record.x)].agents.add(record);
+		}
+		partitionImbalance = Math.max(1, imbalance());
+	}
+
+	// The weight of the heaviest region over the mean weight, where a region
+	// weighs its dirt plus its agents as in partition.
+	private double imbalance() {
+		long total = 0;
+		long heaviest = 0;
+		for (Region region : regions) {
+			long weight = region.dirtCount + region.agents.size();
+			total += weight;
+			heaviest = Math.max(heaviest, weight);
+		}
+		return total == 0 ? 1 : (double) heaviest * regions.length / total;
+	}
+
+	private static long countBits(long[] bits, long from, long to) {
+		long n = 0;
+		for (long i = from; i < to;) {
+			int word = (int) (i >>> 6);
+			int offset = (int) (i & 63);
+			int len = (int) Math.min(64 - offset, to - i);
+			long mask = len == 64 ? -1L : ((1L << len) - 1) << offset;
+			n += Long.bitCount(bits[word] & mask);
+			i += len;
+		}
+		return n;
+	}
+
+	private int regionOf(int x) {
+		int lo = 0;
+		int hi = regions.length - 1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (regions[mid].x0 <= x) {
+				lo = mid;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		return lo;
+	}
+
+	// Move the agents that left their region during the last step.
+	private void handOff() {
+		for (Region region : regions) {
+			for (AgentRecord record : region.outgoing) {
+				regions[regionOf(record.x)].agents.add(record);
+				handoffs++;
+			}
+			region.outgoing.clear();
+		}
+	}
+
+	private static class AgentRecord {
+		Agent agent;
+		int x;
+		int y;
+		double performance;
+
+		AgentRecord(Agent agent, int x, int y, double performance) {
+			this.agent = agent;
+			this.x = x;
+			this.y = y;
+			this.performance = performance;
+		}
+	}
+
+	/**
+	 * The columns x0 (inclusive) to x1 (exclusive), with the dirt bit of
+	 * location (x, y) at index (x - x0) * height + y.
+	 */
+	private class Region {
+		int x0;
+		int x1;
+		long[] dirt;
+		List<AgentRecord> agents = new ArrayList<AgentRecord>();
+		List<AgentRecord> outgoing = new ArrayList<AgentRecord>();
+		// the number of dirty locations, kept up to date as dirt is cleaned
+		long dirtCount = 0;
+		long dirtCleaned = 0;
+		boolean noOp = false;
+		volatile boolean stop = false;
+
+		Region(int x0, int x1, long[] allDirt) {
+			this.x0 = x0;
+			this.x1 = x1;
+			long offset = (long) x0 * height;
+			long bits = (long) (x1 - x0) * height;
+			dirt = new long[bitsetSize(bits)];
+			for (long i = 0; i < bits; i++) {
+				long j = offset + i;
+				if ((allDirt[(int) (j >>> 6)] & (1L << j)) != 0) {
+					dirt[(int) (i >>> 6)] |= 1L << i;
+					dirtCount++;
+				}
+			}
+		}
+
+		void step() {
+			int kept = 0;
+			int i = 0;
+			try {
+				for (; i < agents.size(); i++) {
+					AgentRecord record = agents.get(i);
+					if (record.agent.isAlive()) {
+						act(record);
+					}
+					kept = keep(record, kept);
+				}
+			} finally {
+				// if an agent failed, it and the agents after it stay where
+				// they are without acting
+				for (; i < agents.size(); i++) {
+					kept = keep(agents.get(i), kept);
+				}
+				while (agents.size() > kept) {
+					agents.remove(agents.size() - 1);
+				}
+			}
+		}
+
+		// Keeps an agent that is still in the region as agent number kept,
+		// or hands it off; returns the number of agents kept.
+		int keep(AgentRecord record, int kept) {
+			if (record.x >= x0 && record.x < x1) {
+				agents.set(kept++, record);
+			} else {
+				outgoing.add(record);
+			}
+			return kept;
+		}
+
+		void act(AgentRecord record) {
+			int i = (record.x - x0) * height + record.y;
+			boolean dirty = (dirt[i >>> 6] & (1L << i)) != 0;
+			Action action = record.agent.execute(new LocalVacuumEnvironmentPercept(
+					location(record.x, record.y),
+					dirty ? VacuumEnvironment.LocationState.Dirty
+							: VacuumEnvironment.LocationState.Clean));
+			if (VacuumEnvironment.ACTION_MOVE_RIGHT == action) {
+				record.x = (record.x + 1 < width ? record.x + 1 : record.x);
+				record.performance -= 1;
+			} else if (VacuumEnvironment.ACTION_MOVE_LEFT == action) {
+				record.x = (record.x - 1 >= 0 ? record.x - 1 : record.x);
+				record.performance -= 1;
+			} else if (VacuumEnvironment.ACTION_MOVE_UP == action) {
+				record.y = (record.y + 1 < height ? record.y + 1 : record.y);
+				record.performance -= 1;
+			} else if (VacuumEnvironment.ACTION_MOVE_DOWN == action) {
+				record.y = (record.y - 1 >= 0 ? record.y - 1 : record.y);
+				record.performance -= 1;
+			} else if (VacuumEnvironment.ACTION_SUCK == action) {
+				if (dirty) {
+					dirt[i >>> 6] &= ~(1L << i);
+					record.performance += 10;
+					dirtCount--;
+					dirtCleaned++;
+				}
+			} else if (action.isNoOp()) {
+				noOp = true;
+			}
+		}
+
+		boolean isDirty(int x, int y) {
+			int i = (x - x0) * height + y;
+			return (dirt[i >>> 6] & (1L << i)) != 0;
+		}
+
+		void copyDirtTo(long[] allDirt) {
+			long offset = (long) x0 * height;
+			long bits = (long) (x1 - x0) * height;
+			for (long i = 0; i < bits; i++) {
+				if ((dirt[(int) (i >>> 6)] & (1L << i)) != 0) {
+					long j = offset + i;
+					allDirt[(int) (j >>> 6)] |= 1L << j;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,332 @@
+import java.util.Arrays;
+
+/**
+ * An immutable state of a width x height vacuum world with one agent, in which
+ * a successor shares all unchanged structure with the state it was made from.
+ * <br>
+ * <br>
+ * The dirt of location (x, y) is bit x * height + y of a bitset. The words of
+ * the bitset are the leaves of a trie with up to 32 children per node, so
+ * changing one location copies one leaf and the nodes on the path to it,
+ * O(log32(cells)) words, instead of the whole map as the copy constructor of
+ * VacuumEnvironmentState does. The hash code is kept up to date with every
+ * change (the XOR of a fixed random key per dirty location and per agent
+ * location), and equals skips subtrees that two states share.
+ */
+public class PersistentVacuumState implements EnvironmentState,
+		FullyObservableVacuumEnvironmentPercept {
+	private static final int BITS = 5;
+	private static final int BRANCH = 1 << BITS;
+	private static final int MASK = BRANCH - 1;
+
+	private final Shape shape;
+	// a long[] leaf of up to BRANCH words, or an Object[] node
+	private final Object root;
+	private final int agentCell;
+	private final int dirtCount;
+	private final long hash;
+
+	/**
+	 * Returns the state of a VacuumEnvironmentState over a width x height
+	 * grid, of which only the location of the given agent is kept.
+	 */
+	public static PersistentVacuumState fromState(VacuumEnvironmentState state,
+			Agent agent, int width, int height) {
+		Shape shape = new Shape(agent, width, height);
+		long[] words = new long[(shape.cells + 63) >>> 6];
+		int dirt = 0;
+		long hash = 0;
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				if (VacuumEnvironment.LocationState.Dirty == state
+						.getLocationState(VacuumFunctionFactory.location(x, y))) {
+					int cell = x * height + y;
+					words[cell >>> 6] |= 1L << cell;
+					dirt++;
+					hash ^= dirtKey(cell);
+				}
+			}
+		}
+		String location = state.getAgentLocation(agent);
+		int agentCell = location == null ? -1 : VacuumFunctionFactory
+				.getX(location) * height + VacuumFunctionFactory.getY(location);
+		return new PersistentVacuumState(shape, build(words, 0, shape.levels),
+				agentCell, dirt, hash ^ agentKey(agentCell));
+	}
+
+	private PersistentVacuumState(Shape shape, Object root, int agentCell,
+			int dirtCount, long hash) {
+		this.shape = shape;
+		this.root = root;
+		this.agentCell = agentCell;
+		this.dirtCount = dirtCount;
+		this.hash = hash;
+	}
+
+	/**
+	 * Returns a copy of this state as a VacuumEnvironmentState.
+	 */
+	public VacuumEnvironmentState toVacuumEnvironmentState() {
+		VacuumEnvironmentState state = new VacuumEnvironmentState();
+		for (int x = 0; x < shape.width; x++) {
+			for (int y = 0; y < shape.height; y++) {
+				state.setLocationState(VacuumFunctionFactory.location(x, y),
+						isDirty(x, y) ? VacuumEnvironment.LocationState.Dirty
+								: VacuumEnvironment.LocationState.Clean);
+			}
+		}
+		if (agentCell >= 0) {
+			state.setAgentLocation(shape.agent, getAgentLocation(shape.agent));
+		}
+		return state;
+	}
+
+	/**
+	 * Returns the state that differs from this one only in the state of
+	 * location (x, y); this state itself if it is already in that state.
+	 */
+	public PersistentVacuumState withLocationState(int x, int y,
+			VacuumEnvironment.LocationState s) {
+		int cell = x * shape.height + y;
+		boolean dirty = VacuumEnvironment.LocationState.Dirty == s;
+		if (isDirty(cell) == dirty) {
+			return this;
+		}
+		return new PersistentVacuumState(shape, flip(root, cell, shape.levels),
+				agentCell, dirtCount + (dirty ? 1 : -1), hash ^ dirtKey(cell));
+	}
+
+	/**
+	 * Returns the state that differs from this one only in the location of the
+	 * agent.
+	 */
+	public PersistentVacuumState withAgentLocation(int x, int y) {
+		int cell = x * shape.height + y;
+		if (cell == agentCell) {
+			return this;
+		}
+		return new PersistentVacuumState(shape, root, cell, dirtCount, hash
+				^ agentKey(agentCell) ^ agentKey(cell));
+	}
+
+	public Agent getAgent() {
+		return shape.agent;
+	}
+
+	public int getWidth() {
+		return shape.width;
+	}
+
+	public int getHeight() {
+		return shape.height;
+	}
+
+	public int getAgentX() {
+		return agentCell / shape.height;
+	}
+
+	public int getAgentY() {
+		return agentCell % shape.height;
+	}
+
+	/**
+	 * Returns the number of dirty locations.
+	 */
+	public int getDirtCount() {
+		return dirtCount;
+	}
+
+	public boolean isDirty(int x, int y) {
+		return isDirty(x * shape.height + y);
+	}
+
+	/**
+	 * Returns the first dirty cell (x * height + y) at or after the given one,
+	 * or -1 if there is none.
+	 */
+	public int nextDirtyCell(int from) {
+		for (int word = from >>> 6; word < (shape.cells + 63) >>> 6; word++) {
+			long w = word(word);
+			if (word == from >>> 6) {
+				w &= -1L << from;
+			}
+			if (w != 0) {
+				return (word << 6) + Long.numberOfTrailingZeros(w);
+			}
+		}
+		return -1;
+	}
+
+	//
+	// START-FullyObservableVacuumEnvironmentPercept
+	@Override
+	public String getAgentLocation(Agent a) {
+		if (a != shape.agent || agentCell < 0) {
+			return null;
+		}
+		return VacuumFunctionFactory.location(getAgentX(), getAgentY());
+	}
+
+	@Override
+	public VacuumEnvironment.LocationState getLocationState(String location) {
+		int comma = location.indexOf(',');
+		if (comma < 0) {
+			return null;
+		}
+		int x = VacuumFunctionFactory.getX(location);
+		int y = VacuumFunctionFactory.getY(location);
+		if (x < 0 || x >= shape.width || y < 0 || y >= shape.height) {
+			return null;
+		}
+		return isDirty(x, y) ? VacuumEnvironment.LocationState.Dirty
+				: VacuumEnvironment.LocationState.Clean;
+	}
+
+	// END-FullyObservableVacuumEnvironmentPercept
+	//
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof PersistentVacuumState)) {
+			return false;
+		}
+		PersistentVacuumState s = (PersistentVacuumState) o;
+		return hash == s.hash && agentCell == s.agentCell
+				&& dirtCount == s.dirtCount && shape.equals(s.shape)
+				&& sameBits(root, s.root);
+	}
+
+	@Override
+	public int hashCode() {
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	@Override
+	public String toString() {
+		return toVacuumEnvironmentState().toString();
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private boolean isDirty(int cell) {
+		return (word(cell >>> 6) & (1L << cell)) != 0;
+	}
+
+	private long word(int index) {
+		Object node = root;
+		for (int level = shape.levels; level > 0; level--) {
+			node = ((Object[]) node)[(index >>> (BITS * level)) & MASK];
+		}
+		return ((long[]) node)[index & MASK];
+	}
+
+	// Copy of the path to the word holding cell, with the cell's bit flipped.
+	private static Object flip(Object node, int cell, int level) {
+		int index = cell >>> 6;
+		if (level == 0) {
+			long[] leaf = ((long[]) node).clone();
+			leaf[index & MASK] ^= 1L << cell;
+			return leaf;
+		}
+		Object[] copy = ((Object[]) node).clone();
+		int child = (index >>> (BITS * level)) & MASK;
+		copy[child] = flip(copy[child], cell, level - 1);
+		return copy;
+	}
+
+	// The subtree at the given level holding the words from index first on.
+	private static Object build(long[] words, int first, int level) {
+		if (level == 0) {
+			long[] leaf = new long[Math.min(BRANCH, words.length - first)];
+			System.arraycopy(words, first, leaf, 0, leaf.length);
+			return leaf;
+		}
+		int span = 1 << (BITS * level);
+		int children = Math.min(BRANCH, (words.length - first + span - 1)
+				/ span);
+		Object[] node = new Object[children];
+		for (int i = 0; i < children; i++) {
+			node[i] = build(words, first + i * span, level - 1);
+		}
+		return node;
+	}
+
+	private static boolean sameBits(Object a, Object b) {
+		if (a == b) {
+			return true;
+		}
+		if (a instanceof long[]) {
+			return Arrays.equals((long[]) a, (long[]) b);
+		}
+		Object[] na = (Object[]) a;
+		Object[] nb = (Object[]) b;
+		for (int i = 0; i < na.length; i++) {
+			if (!sameBits(na[i], nb[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static long dirtKey(int cell) {
+		return mix(2L * cell);
+	}
+
+	private static long agentKey(int cell) {
+		return cell < 0 ? 0 : mix(2L * cell + 1);
+	}
+
+	// SplitMix64 finalizer
+	private static long mix(long z) {
+		z = (z + 0x9E3779B97F4A7C15L);
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * What all states of one search have in common.
+	 */
+	private static class Shape {
+		final Agent agent;
+		final int width;
+		final int height;
+		final int cells;
+		// levels of Object[] nodes above the leaves
+		final int levels;
+
+		Shape(Agent agent, int width, int height) {
+			this.agent = agent;
+			this.width = width;
+			this.height = height;
+			this.cells = width * height;
+			int words = Math.max(1, (cells + 63) >>> 6);
+			int levels = 0;
+			while ((long) 1 << (BITS * (levels + 1)) < words) {
+				levels++;
+			}
+			this.levels = levels;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Shape)) {
+				return false;
+			}
+			Shape s = (Shape) o;
+			return agent == s.agent && width == s.width && height == s.height;
+		}
+
+		@Override
+		public int hashCode() {
+			return width * 31 + height;
+		}
+	}
+}
@@ -0,0 +1,486 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An on-disk cache of contingency plans for vacuum world problems, so that an
+ * agent facing a problem it has already solved can load the plan instead of
+ * searching for it again.<br>
+ * <br>
+ * Plans are stored in a compact binary form, one file per problem named after
+ * the problem's key: a SHA-256 hash of the encoded initial state, the
+ * descriptions (toString()) of the problem's actions, results, goal test and
+ * step cost functions, and a signature naming the search that produced the
+ * plan. A function without a toString() of its own is described by its
+ * identity, so problems built from it are never matched across runs.<br>
+ * <br>
+ * States must be VacuumEnvironmentStates in which at most one agent, the one
+ * the plan is for, has a location, or PersistentVacuumStates, which are
+ * written as the VacuumEnvironmentState they stand for and read back as
+ * PersistentVacuumStates of the shape of the problem's initial state; any
+ * other state is rejected with an IllegalArgumentException. Locations are written once to a string
+ * table and the states then refer to them by index; a state over the same
+ * locations as the initial state is written as a bitmap of its dirty
+ * locations. Actions must be DynamicActions or NoOpAction.NO_OP and are read
+ * back as the instances returned by the problem's actions function, because
+ * VacuumEnvironment compares actions by identity.
+ */
+public class PlanCache {
+	public static final int MAGIC = 0x56504C4E; // "VPLN"
+	public static final int VERSION = 1;
+	public static final String SUFFIX = ".plan";
+
+	// Tags of the nodes of an encoded plan tree
+	static final byte TAG_NULL = 0;
+	static final byte TAG_PLAN = 1;
+	static final byte TAG_ACTION = 2;
+	static final byte TAG_IF_STATE_THEN_PLAN = 3;
+	static final byte TAG_NO_OP = 4;
+
+	// Encodings of a state
+	static final byte STATE_BITMAP = 0;
+	static final byte STATE_LIST = 1;
+
+	private File directory;
+	private int hits = 0;
+	private int misses = 0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param directory
+	 *            the directory to keep the plan files in; it is created if it
+	 *            does not exist.
+	 */
+	public PlanCache(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Returns the key of a problem: the hex encoded SHA-256 hash of its
+	 * definition.
+	 *
+	 * @param problem
+	 *            the problem.
+	 * @param agent
+	 *            the agent whose location is part of the states.
+	 * @param signature
+	 *            a name for how plans are found, e.g. the search class.
+	 * @return the key of the problem.
+	 * @throws IllegalArgumentException
+	 *             if the initial state cannot be encoded.
+	 */
+	public String key(NondeterministicProblem problem, Agent agent,
+			String signature) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			Encoder encoder = new Encoder(problem, agent, out);
+			encoder.collectState(problem.getInitialState());
+			encoder.writeTables();
+			encoder.writeState(problem.getInitialState());
+			out.writeUTF(String.valueOf(problem.getActionsFunction()));
+			out.writeUTF(String.valueOf(problem.getResultsFunction()));
+			out.writeUTF(String.valueOf(problem.getGoalTest()));
+			out.writeUTF(String.valueOf(problem.getStepCostFunction()));
+			out.writeUTF(signature);
+			out.flush();
+
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(
+					bytes.toByteArray());
+			StringBuilder sb = new StringBuilder();
+			for (byte b : digest) {
+				sb.append(String.format("%02x", b & 0xff));
+			}
+			return sb.toString();
+		} catch (IOException e) {
+			// cannot happen writing to memory
+			throw new RuntimeException(e);
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Returns the cached plan for a problem.
+	 *
+	 * @return the cached plan, or null if there is none.
+	 * @throws IOException
+	 *             if the plan file exists but cannot be read.
+	 * @throws IllegalArgumentException
+	 *             if the states of the problem cannot be encoded.
+	 */
+	public Plan load(NondeterministicProblem problem, Agent agent,
+			String signature) throws IOException {
+		String key = key(problem, agent, signature);
+		File file = new File(directory, key + SUFFIX);
+		if (!file.isFile()) {
+			misses++;
+			return null;
+		}
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)));
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION
+					|| !key.equals(in.readUTF())) {
+				throw new IOException("Not a plan file for this problem: "
+						+ file);
+			}
+			Plan plan = readPlan(problem, agent, in);
+			hits++;
+			return plan;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Stores the plan for a problem, replacing any plan cached for it before.
+	 *
+	 * @throws IOException
+	 *             if the plan cannot be written.
+	 * @throws IllegalArgumentException
+	 *             if the plan or the states of the problem cannot be encoded.
+	 */
+	public void store(NondeterministicProblem problem, Agent agent,
+			String signature, Plan plan) throws IOException {
+		String key = key(problem, agent, signature);
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create cache directory " + directory);
+		}
+		File file = new File(directory, key + SUFFIX);
+		// write to a temporary file first so that a reader never sees half a
+		// plan
+		File tmp = File.createTempFile(key, ".tmp", directory);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(tmp)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(key);
+			writePlan(problem, agent, plan, out);
+		} finally {
+			out.close();
+		}
+		if (!tmp.renameTo(file)) {
+			file.delete();
+			if (!tmp.renameTo(file)) {
+				tmp.delete();
+				throw new IOException("Cannot write " + file);
+			}
+		}
+	}
+
+	/**
+	 * Writes a plan in the binary form used by the cache.
+	 */
+	public static void writePlan(NondeterministicProblem problem, Agent agent,
+			Plan plan, DataOutputStream out) throws IOException {
+		Encoder encoder = new Encoder(problem, agent, out);
+		encoder.collect(plan);
+		encoder.writeTables();
+		encoder.writeStep(plan);
+	}
+
+	/**
+	 * Reads a plan written by writePlan.
+	 */
+	public static Plan readPlan(NondeterministicProblem problem, Agent agent,
+			DataInputStream in) throws IOException {
+		Decoder decoder = new Decoder(problem, agent, in);
+		decoder.readTables();
+		Object plan = decoder.readStep();
+		if (!(plan instanceof Plan)) {
+			throw new IOException("Corrupt plan");
+		}
+		return (Plan) plan;
+	}
+
+	/**
+	 * Returns the number of plans loaded from and missing in the cache.
+	 */
+	public Metrics getMetrics() {
+		Metrics result = new Metrics();
+		result.set("hits", hits);
+		result.set("misses", misses);
+		return result;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private static class Encoder {
+		private Agent agent;
+		private DataOutputStream out;
+		private Map<String, Integer> locations = new LinkedHashMap<String, Integer>();
+		private Map<String, Integer> actions = new LinkedHashMap<String, Integer>();
+		// locations of the initial state, in table order
+		private int baseLocations;
+
+		Encoder(NondeterministicProblem problem, Agent agent,
+				DataOutputStream out) {
+			this.agent = agent;
+			this.out = out;
+			VacuumEnvironmentState initial = vacuumState(problem
+					.getInitialState());
+			for (String location : initial.getLocationStates().keySet()) {
+				index(locations, location);
+			}
+			baseLocations = locations.size();
+		}
+
+		// Adds the locations and action names used by the plan to the tables.
+		void collect(Object step) {
+			if (step instanceof Plan) {
+				for (Object s : (Plan) step) {
+					collect(s);
+				}
+			} else if (step instanceof IfStateThenPlan) {
+				IfStateThenPlan conditional = (IfStateThenPlan) step;
+				collectState(conditional.getState());
+				collect(conditional.getPlan());
+			} else if (step instanceof DynamicAction) {
+				index(actions, ((DynamicAction) step).getName());
+			}
+		}
+
+		void collectState(Object s) {
+			VacuumEnvironmentState state = vacuumState(s);
+			for (String location : state.getLocationStates().keySet()) {
+				index(locations, location);
+			}
+			String location = state.getAgentLocation(agent);
+			if (location != null) {
+				index(locations, location);
+			}
+		}
+
+		void writeTables() throws IOException {
+			out.writeInt(baseLocations);
+			out.writeInt(locations.size());
+			for (String location : locations.keySet()) {
+				out.writeUTF(location);
+			}
+			out.writeInt(actions.size());
+			for (String name : actions.keySet()) {
+				out.writeUTF(name);
+			}
+		}
+
+		void writeStep(Object step) throws IOException {
+			if (step == null) {
+				out.writeByte(TAG_NULL);
+			} else if (step instanceof UnresolvedPlan) {
+				throw new IllegalArgumentException(
+						"Cannot store a partial plan");
+			} else if (step instanceof Plan) {
+				Plan plan = (Plan) step;
+				out.writeByte(TAG_PLAN);
+				out.writeInt(plan.size());
+				for (Object s : plan) {
+					writeStep(s);
+				}
+			} else if (step instanceof IfStateThenPlan) {
+				IfStateThenPlan conditional = (IfStateThenPlan) step;
+				out.writeByte(TAG_IF_STATE_THEN_PLAN);
+				writeState(conditional.getState());
+				writeStep(conditional.getPlan());
+			} else if (step == NoOpAction.NO_OP) {
+				out.writeByte(TAG_NO_OP);
+			} else if (step instanceof DynamicAction) {
+				out.writeByte(TAG_ACTION);
+				out.writeInt(actions.get(((DynamicAction) step).getName()));
+			} else {
+				throw new IllegalArgumentException(
+						"Cannot store plan step " + step);
+			}
+		}
+
+		void writeState(Object s) throws IOException {
+			VacuumEnvironmentState state = vacuumState(s);
+			Map<String, VacuumEnvironment.LocationState> locationStates = state
+					.getLocationStates();
+			String agentLocation = state.getAgentLocation(agent);
+			if (!state.equals(withAgentOnly(state, agent, agentLocation))) {
+				throw new IllegalArgumentException(
+						"Only the location of one agent can be stored: "
+								+ state);
+			}
+			out.writeInt(agentLocation == null ? -1 : locations
+					.get(agentLocation));
+
+			boolean bitmap = locationStates.size() == baseLocations;
+			for (String location : locationStates.keySet()) {
+				bitmap = bitmap && locations.get(location) < baseLocations;
+			}
+			if (bitmap) {
+				out.writeByte(STATE_BITMAP);
+				byte[] bits = new byte[(baseLocations + 7) / 8];
+				for (Map.Entry<String, VacuumEnvironment.LocationState> e : locationStates
+						.entrySet()) {
+					if (VacuumEnvironment.LocationState.Dirty == e.getValue()) {
+						int i = locations.get(e.getKey());
+						bits[i >>> 3] |= 1 << (i & 7);
+					}
+				}
+				out.write(bits);
+			} else {
+				out.writeByte(STATE_LIST);
+				out.writeInt(locationStates.size());
+				for (Map.Entry<String, VacuumEnvironment.LocationState> e : locationStates
+						.entrySet()) {
+					out.writeInt(locations.get(e.getKey()));
+					out.writeBoolean(VacuumEnvironment.LocationState.Dirty == e
+							.getValue());
+				}
+			}
+		}
+	}
+
+	private static class Decoder {
+		private Agent agent;
+		private DataInputStream in;
+		private Map<String, Action> problemActions = new HashMap<String, Action>();
+		private List<String> locations = new ArrayList<String>();
+		private List<Action> actions = new ArrayList<Action>();
+		private int baseLocations;
+		// the shape states are read back in, if they are persistent
+		private PersistentVacuumState persistent = null;
+
+		Decoder(NondeterministicProblem problem, Agent agent, DataInputStream in) {
+			this.agent = agent;
+			this.in = in;
+			if (problem.getInitialState() instanceof PersistentVacuumState) {
+				persistent = (PersistentVacuumState) problem.getInitialState();
+			}
+			for (Action a : problem.getActionsFunction().actions(
+					problem.getInitialState())) {
+				if (a instanceof DynamicAction) {
+					problemActions.put(((DynamicAction) a).getName(), a);
+				}
+			}
+		}
+
+		void readTables() throws IOException {
+			baseLocations = in.readInt();
+			int n = in.readInt();
+			for (int i = 0; i < n; i++) {
+				locations.add(in.readUTF());
+			}
+			n = in.readInt();
+			for (int i = 0; i < n; i++) {
+				String name = in.readUTF();
+				Action action = problemActions.get(name);
+				if (action == null) {
+					throw new IOException("Unknown action " + name);
+				}
+				actions.add(action);
+			}
+		}
+
+		Object readStep() throws IOException {
+			byte tag = in.readByte();
+			switch (tag) {
+			case TAG_NULL:
+				return null;
+			case TAG_PLAN:
+				int n = in.readInt();
+				Plan plan = new Plan();
+				for (int i = 0; i < n; i++) {
+					plan.add(readStep());
+				}
+				return plan;
+			case TAG_IF_STATE_THEN_PLAN:
+				Object state = readState();
+				Object then = readStep();
+				if (then != null && !(then instanceof Plan)) {
+					throw new IOException("Corrupt plan");
+				}
+				return new IfStateThenPlan(state, (Plan) then);
+			case TAG_ACTION:
+				return actions.get(in.readInt());
+			case TAG_NO_OP:
+				return NoOpAction.NO_OP;
+			default:
+				throw new IOException("Corrupt plan: unknown tag " + tag);
+			}
+		}
+
+		Object readState() throws IOException {
+			VacuumEnvironmentState state = new VacuumEnvironmentState();
+			int agentLocation = in.readInt();
+			if (in.readByte() == STATE_BITMAP) {
+				byte[] bits = new byte[(baseLocations + 7) / 8];
+				in.readFully(bits);
+				for (int i = 0; i < baseLocations; i++) {
+					state.setLocationState(locations.get(i),
+							(bits[i >>> 3] & (1 << (i & 7))) != 0 ? VacuumEnvironment.LocationState.Dirty
+									: VacuumEnvironment.LocationState.Clean);
+				}
+			} else {
+				int n = in.readInt();
+				for (int i = 0; i < n; i++) {
+					String location = locations.get(in.readInt());
+					state.setLocationState(location,
+							in.readBoolean() ? VacuumEnvironment.LocationState.Dirty
+									: VacuumEnvironment.LocationState.Clean);
+				}
+			}
+			if (agentLocation >= 0) {
+				state.setAgentLocation(agent, locations.get(agentLocation));
+			}
+			if (persistent != null) {
+				return PersistentVacuumState.fromState(state, agent,
+						persistent.getWidth(), persistent.getHeight());
+			}
+			return state;
+		}
+	}
+
+	// The VacuumEnvironmentState a state of a problem stands for.
+	private static VacuumEnvironmentState vacuumState(Object s) {
+		if (s instanceof VacuumEnvironmentState) {
+			return (VacuumEnvironmentState) s;
+		} else if (s instanceof PersistentVacuumState) {
+			return ((PersistentVacuumState) s).toVacuumEnvironmentState();
+		}
+		throw new IllegalArgumentException("Cannot store state " + s);
+	}
+
+	private static int index(Map<String, Integer> table, String s) {
+		Integer i = table.get(s);
+		if (i == null) {
+			i = table.size();
+			table.put(s, i);
+		}
+		return i;
+	}
+
+	// A copy of the state with only the given agent's location, to check
+	// that no other agent's location would be lost.
+	private static VacuumEnvironmentState withAgentOnly(
+			VacuumEnvironmentState state, Agent agent, String location) {
+		VacuumEnvironmentState copy = new VacuumEnvironmentState();
+		for (Map.Entry<String, VacuumEnvironment.LocationState> e : state
+				.getLocationStates().entrySet()) {
+			copy.setLocationState(e.getKey(), e.getValue());
+		}
+		if (location != null) {
+			copy.setAgentLocation(agent, location);
+		}
+		return copy;
+	}
+}
@@ -0,0 +1,332 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks that a conditional plan reaches a goal state under every outcome of
+ * a nondeterministic problem, by executing it against the problem's
+ * ResultsFunction on all branches. The branches of an action with several
+ * outcomes are verified in parallel as fork/join tasks.<br>
+ * <br>
+ * A plan is read as on page 135 of AIMA3e: its steps are executed in order,
+ * an action leads to each of its outcomes, and [if s<sub>1</sub> then
+ * plan<sub>1</sub>, ..., if s<sub>n-1</sub> then plan<sub>n-1</sub>,
+ * plan<sub>n</sub>] is an if-then-else chain, so the first matching plan is
+ * executed and ends the enclosing plan. A branch fails if it ends in a state
+ * that is not a goal, reaches an UnresolvedPlan (the plan is partial), or
+ * meets a step that is not an Action, Plan or IfStateThenPlan.<br>
+ * <br>
+ * The same state often reaches the same point of a plan on several branches;
+ * every (state, point of the plan) pair is verified only once, by the first
+ * task to claim it, and its result shared: a task that reaches a pair claimed
+ * by another waits for that task rather than verifying it again, so no
+ * failure is reported twice.
+ */
+public class PlanVerifier {
+	public static final int DEFAULT_MAX_FAILURES = 100;
+
+	private NondeterministicProblem problem;
+	private ForkJoinPool pool;
+	private int maxFailures = DEFAULT_MAX_FAILURES;
+
+	/**
+	 * Constructs a verifier that runs in the common fork/join pool.
+	 */
+	public PlanVerifier(NondeterministicProblem problem) {
+		this(problem, ForkJoinPool.commonPool());
+	}
+
+	public PlanVerifier(NondeterministicProblem problem, ForkJoinPool pool) {
+		this.problem = problem;
+		this.pool = pool;
+	}
+
+	/**
+	 * Sets the most failures recorded by one verification; verification goes
+	 * on after that, but further failures are only counted.
+	 */
+	public void setMaxFailures(int maxFailures) {
+		this.maxFailures = maxFailures;
+	}
+
+	/**
+	 * Verifies a plan from the initial state of the problem.
+	 *
+	 * @param plan
+	 *            the plan to verify, e.g. from AndOrSearch.
+	 * @return the result of the verification.
+	 */
+	public Result verify(Plan plan) {
+		return verify(plan, problem.getInitialState());
+	}
+
+	/**
+	 * Verifies a plan from the given state.
+	 */
+	public Result verify(Plan plan, Object state) {
+		Verification v = new Verification();
+		Step root = new Step(v, plan, 0, state);
+		v.claim(root);
+		int depth = pool.invoke(root);
+		return new Result(v.failures, v.failureCount.get(), depth,
+				v.states.size(), v.memo.size());
+	}
+
+	/**
+	 * A branch of the plan that does not reach a goal.
+	 */
+	public static class Failure {
+		private final Object state;
+		private final String reason;
+
+		Failure(Object state, String reason) {
+			this.state = state;
+			this.reason = reason;
+		}
+
+		/**
+		 * Returns the state the branch ended in.
+		 */
+		public Object getState() {
+			return state;
+		}
+
+		public String getReason() {
+			return reason;
+		}
+
+		@Override
+		public String toString() {
+			return reason + ": " + state;
+		}
+	}
+
+	/**
+	 * The result of verifying a plan.
+	 */
+	public static class Result {
+		private final List<Failure> failures;
+		private final int failureCount;
+		private final int worstCaseDepth;
+		private final int distinctStates;
+		private final int verifiedPoints;
+
+		Result(ConcurrentLinkedQueue<Failure> failures, int failureCount,
+				int worstCaseDepth, int distinctStates, int verifiedPoints) {
+			this.failures = Collections.unmodifiableList(new ArrayList<Failure>(
+					failures));
+			this.failureCount = failureCount;
+			this.worstCaseDepth = worstCaseDepth;
+			this.distinctStates = distinctStates;
+			this.verifiedPoints = verifiedPoints;
+		}
+
+		/**
+		 * Returns <code>true</code> if every branch reaches a goal.
+		 */
+		public boolean isValid() {
+			return failureCount == 0;
+		}
+
+		/**
+		 * Returns the failing branches recorded, at most the verifier's
+		 * maximum.
+		 */
+		public List<Failure> getFailures() {
+			return failures;
+		}
+
+		public int getFailureCount() {
+			return failureCount;
+		}
+
+		/**
+		 * Returns the largest number of actions executed on any branch.
+		 */
+		public int getWorstCaseDepth() {
+			return worstCaseDepth;
+		}
+
+		/**
+		 * Returns the number of distinct states met on all branches.
+		 */
+		public int getDistinctStates() {
+			return distinctStates;
+		}
+
+		public Metrics getMetrics() {
+			Metrics result = new Metrics();
+			result.set("valid", isValid() ? 1 : 0);
+			result.set("failures", failureCount);
+			result.set("worstCaseDepth", worstCaseDepth);
+			result.set("distinctStates", distinctStates);
+			result.set("verifiedPoints", verifiedPoints);
+			return result;
+		}
+
+		@Override
+		public String toString() {
+			return "valid=" + isValid() + ", failures=" + failureCount
+					+ ", worstCaseDepth=" + worstCaseDepth
+					+ ", distinctStates=" + distinctStates;
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	// The state shared by the tasks of one verification
+	private class Verification {
+		// the task that claimed each point
+		ConcurrentHashMap<Point, Step> memo = new ConcurrentHashMap<Point, Step>();
+		Set<Object> states = Collections
+				.newSetFromMap(new ConcurrentHashMap<Object, Boolean>());
+		ConcurrentLinkedQueue<Failure> failures = new ConcurrentLinkedQueue<Failure>();
+		AtomicInteger failureCount = new AtomicInteger();
+
+		// Returns the task that claimed the point of the given task before it,
+		// or null if the given task has claimed it and is to verify it.
+		Step claim(Step task) {
+			Step known = memo.putIfAbsent(new Point(task.steps, task.index,
+					task.state), task);
+			if (known == null) {
+				states.add(task.state);
+			}
+			return known;
+		}
+
+		void fail(Object state, String reason) {
+			if (failureCount.incrementAndGet() <= maxFailures) {
+				failures.add(new Failure(state, reason));
+			}
+		}
+	}
+
+	// A state at step index of the list steps; lists are compared by identity
+	private static class Point {
+		final List<Object> steps;
+		final int index;
+		final Object state;
+		final int hash;
+
+		Point(List<Object> steps, int index, Object state) {
+			this.steps = steps;
+			this.index = index;
+			this.state = state;
+			this.hash = (System.identityHashCode(steps) * 31 + index) * 31
+					+ state.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Point)) {
+				return false;
+			}
+			Point p = (Point) o;
+			return steps == p.steps && index == p.index
+					&& state.equals(p.state);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	// Returns the most actions executed on a branch from the state at the
+	// given step; failing branches count as far as they got. A task is only
+	// run once it has claimed its point, see Verification.claim.
+	private class Step extends RecursiveTask<Integer> {
+		private static final long serialVersionUID = 1L;
+
+		private Verification v;
+		private List<Object> steps;
+		private int index;
+		private Object state;
+
+		Step(Verification v, List<Object> steps, int index, Object state) {
+			this.v = v;
+			this.steps = steps;
+			this.index = index;
+			this.state = state;
+		}
+
+		@Override
+		protected Integer compute() {
+			return execute(steps, index, state);
+		}
+
+		private int verify(List<Object> steps, int index, Object state) {
+			Step task = new Step(v, steps, index, state);
+			Step known = v.claim(task);
+			// known has verified the point or is verifying it
+			return known != null ? known.join() : task.invoke();
+		}
+
+		private int execute(List<Object> steps, int index, Object state) {
+			if (steps instanceof UnresolvedPlan) {
+				v.fail(state, "unresolved");
+				return 0;
+			}
+			// skip the steps that do not apply to this state
+			while (index < steps.size()) {
+				Object step = steps.get(index);
+				if (step == null) {
+					index++;
+				} else if (step instanceof IfStateThenPlan) {
+					Plan then = ((IfStateThenPlan) step).ifStateMatches(state);
+					if (then != null) {
+						return verify(then, 0, state);
+					}
+					index++;
+				} else if (step instanceof Plan) {
+					return verify((Plan) step, 0, state);
+				} else {
+					break;
+				}
+			}
+			if (index == steps.size()) {
+				if (!problem.isGoalState(state)) {
+					v.fail(state, "not a goal");
+				}
+				return 0;
+			}
+			Object step = steps.get(index);
+			if (!(step instanceof Action)) {
+				v.fail(state, "unknown step " + step);
+				return 0;
+			}
+
+			Set<Object> outcomes = problem.getResultsFunction().results(state,
+					(Action) step);
+			if (outcomes.isEmpty()) {
+				v.fail(state, "no outcome of " + step);
+				return 1;
+			}
+			Object[] results = outcomes.toArray();
+			List<Step> forked = new ArrayList<Step>(results.length - 1);
+			for (int i = 0; i < results.length - 1; i++) {
+				Step task = new Step(v, steps, index + 1, results[i]);
+				Step known = v.claim(task);
+				if (known == null) {
+					task.fork();
+					forked.add(task);
+				} else {
+					forked.add(known);
+				}
+			}
+			int depth = verify(steps, index + 1, results[results.length - 1]);
+			for (Step task : forked) {
+				depth = Math.max(depth, task.join());
+			}
+			return 1 + depth;
+		}
+	}
+}
@@ -0,0 +1,131 @@
+import java.util.Arrays;
+
+/**
+ * An immutable snapshot of the counters of one AND-OR search, as returned by
+ * AndOrSearch.getStatistics().<br>
+ * <br>
+ * Depths are the number of states on the path above an OR node. The branching
+ * histograms count the OR nodes by the number of actions tried and the AND
+ * nodes by the number of outcomes; the last bucket holds every count at or
+ * above it.
+ */
+public class SearchStatistics {
+
+	private final long orNodes;
+	private final long andNodes;
+	private final long goalNodes;
+	private final long cycleHits;
+	private final int maxDepth;
+	private final long depthSum;
+	private final long[] orBranching;
+	private final long[] andBranching;
+	private final long wallTimeNanos;
+	private final int planSize;
+	private final boolean solved;
+
+	public SearchStatistics(long orNodes, long andNodes, long goalNodes,
+			long cycleHits, int maxDepth, long depthSum, long[] orBranching,
+			long[] andBranching, long wallTimeNanos, int planSize,
+			boolean solved) {
+		this.orNodes = orNodes;
+		this.andNodes = andNodes;
+		this.goalNodes = goalNodes;
+		this.cycleHits = cycleHits;
+		this.maxDepth = maxDepth;
+		this.depthSum = depthSum;
+		this.orBranching = orBranching.clone();
+		this.andBranching = andBranching.clone();
+		this.wallTimeNanos = wallTimeNanos;
+		this.planSize = planSize;
+		this.solved = solved;
+	}
+
+	public long getOrNodes() {
+		return orNodes;
+	}
+
+	public long getAndNodes() {
+		return andNodes;
+	}
+
+	/**
+	 * Returns the number of OR nodes that were goal states.
+	 */
+	public long getGoalNodes() {
+		return goalNodes;
+	}
+
+	/**
+	 * Returns the number of OR nodes that failed because their state was
+	 * already on the path.
+	 */
+	public long getCycleHits() {
+		return cycleHits;
+	}
+
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	public double getMeanDepth() {
+		return orNodes == 0 ? 0 : (double) depthSum / orNodes;
+	}
+
+	/**
+	 * Returns the number of OR nodes that tried i actions at index i.
+	 */
+	public long[] getOrBranching() {
+		return orBranching.clone();
+	}
+
+	/**
+	 * Returns the number of AND nodes with i outcomes at index i.
+	 */
+	public long[] getAndBranching() {
+		return andBranching.clone();
+	}
+
+	public long getWallTimeNanos() {
+		return wallTimeNanos;
+	}
+
+	/**
+	 * Returns the number of actions in the plan found, 0 if none was found.
+	 */
+	public int getPlanSize() {
+		return planSize;
+	}
+
+	public boolean isSolved() {
+		return solved;
+	}
+
+	/**
+	 * Returns the snapshot as flat metrics; the histograms are left out.
+	 */
+	public Metrics toMetrics() {
+		Metrics result = new Metrics();
+		result.set("expandedNodes", orNodes + andNodes);
+		result.set("orNodes", orNodes);
+		result.set("andNodes", andNodes);
+		result.set("goalNodes", goalNodes);
+		result.set("cycleHits", cycleHits);
+		result.set("maxDepth", maxDepth);
+		result.set("meanDepth", getMeanDepth());
+		result.set("wallTimeNanos", wallTimeNanos);
+		result.set("planSize", planSize);
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "SearchStatistics[orNodes=" + orNodes + ", andNodes="
+				+ andNodes + ", goalNodes=" + goalNodes + ", cycleHits="
+				+ cycleHits + ", maxDepth=" + maxDepth + ", meanDepth="
+				+ getMeanDepth() + ", orBranching="
+				+ Arrays.toString(orBranching) + ", andBranching="
+				+ Arrays.toString(andBranching) + ", wallTimeNanos="
+				+ wallTimeNanos + ", planSize=" + planSize + ", solved="
+				+ solved + "]";
+	}
+}
@@ -0,0 +1,62 @@
+/**
+ * A coverage agent (see CoverageVacuumAgent) that sweeps the grid in a
+ * boustrophedon ("as the ox ploughs") pattern: it first goes to the corner of
+ * the grid nearest to where it starts, then runs the length of each column in
+ * turn, reversing its vertical direction from one column to the next, and
+ * stops (NoOp) at the end of the last column.<br>
+ * <br>
+ * The move is a function of the location and the corner swept from, so a
+ * decision takes O(1) time and the agent keeps no map of the grid. A sweep
+ * takes width * height - 1 moves, plus at most width / 2 + height / 2 to reach
+ * the corner.
+ */
+public class SweepVacuumAgent extends CoverageVacuumAgent {
+
+	private boolean started = false;
+	private boolean homing = true;
+	// the corner swept from and the directions swept in
+	private int x0;
+	private int y0;
+	private int dx;
+	private int dy;
+
+	/**
+	 * Constructor
+	 *
+	 * @param width
+	 *            the width of the grid.
+	 * @param height
+	 *            the height of the grid.
+	 */
+	public SweepVacuumAgent(int width, int height) {
+		super(width, height);
+	}
+
+	@Override
+	protected Action move(int x, int y) {
+		if (!started) {
+			started = true;
+			x0 = x <= width - 1 - x ? 0 : width - 1;
+			y0 = y <= height - 1 - y ? 0 : height - 1;
+			dx = x0 == 0 ? 1 : -1;
+			dy = y0 == 0 ? 1 : -1;
+		}
+		if (homing) {
+			if (x != x0) {
+				return MOVES[x < x0 ? RIGHT : LEFT];
+			} else if (y != y0) {
+				return MOVES[y < y0 ? UP : DOWN];
+			}
+			homing = false;
+		}
+		// even columns (counted from the corner) are swept in direction dy,
+		// odd ones back
+		int columnDy = ((x - x0) & 1) == 0 ? dy : -dy;
+		if (isOnGrid(x, y + columnDy)) {
+			return MOVES[columnDy > 0 ? UP : DOWN];
+		} else if (isOnGrid(x + dx, y)) {
+			return MOVES[dx > 0 ? RIGHT : LEFT];
+		}
+		return NoOpAction.NO_OP;
+	}
+}
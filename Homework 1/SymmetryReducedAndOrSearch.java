@@ -0,0 +1,103 @@
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * AND-OR search (see AndOrSearch) that treats the states of a vacuum grid
+ * that are mirror images or rotations of each other as one state.<br>
+ * <br>
+ * OR-SEARCH works on canonical keys (see VacuumSymmetry):
+ * <ul>
+ * <li>a state that is an image of a state already on the path fails, just like
+ * a repeated state; a plan through it could be mapped back onto its ancestor
+ * and made shorter, and</li>
+ * <li>once a plan is found for a state it is remembered under the state's
+ * key, so that an image of the state met later gets the same plan mapped onto
+ * it instead of being searched again.</li>
+ * </ul>
+ * On a square grid a state has up to eight images, so up to eight times fewer
+ * nodes are expanded. States are VacuumEnvironmentStates of one agent.
+ */
+public class SymmetryReducedAndOrSearch extends AndOrSearch {
+
+	protected int symmetryHits;
+	//
+	private VacuumSymmetry symmetry;
+	private Set<VacuumSymmetry.Key> onPath = new HashSet<VacuumSymmetry.Key>();
+	private Map<VacuumSymmetry.Key, Solved> solved = new HashMap<VacuumSymmetry.Key, Solved>();
+
+	/**
+	 * Constructor
+	 *
+	 * @param symmetry
+	 *            the symmetries of the grid searched.
+	 */
+	public SymmetryReducedAndOrSearch(VacuumSymmetry symmetry) {
+		this.symmetry = symmetry;
+	}
+
+	@Override
+	public Plan search(NondeterministicProblem problem) {
+		this.symmetryHits = 0;
+		this.onPath.clear();
+		this.solved.clear();
+		try {
+			return super.search(problem);
+		} finally {
+			this.onPath.clear();
+			this.solved.clear();
+		}
+	}
+
+	@Override
+	public Plan orSearch(Object state, NondeterministicProblem problem,
+			Path path) {
+		if (problem.isGoalState(state)) {
+			return super.orSearch(state, problem, path);
+		}
+		VacuumSymmetry.Canonical canonical = symmetry.canonicalize(state);
+		Solved s = solved.get(canonical.key);
+		if (s != null) {
+			this.symmetryHits++;
+			// map the plan from the state it was found for to this one: onto
+			// the canonical state and back from it
+			return symmetry.transform(s.plan, symmetry.compose(
+					symmetry.inverse(canonical.symmetry), s.symmetry));
+		}
+		if (onPath.contains(canonical.key)) {
+			// an image of a state on the path
+			this.expandedNodes++;
+			this.orNodes++;
+			this.cycleHits++;
+			return null;
+		}
+		onPath.add(canonical.key);
+		Plan plan = super.orSearch(state, problem, path);
+		onPath.remove(canonical.key);
+		if (plan != null && !isCancelled()) {
+			// keep a copy, as the callers prepend to the plan returned; a
+			// plan found after cancellation may be partial and is not kept
+			solved.put(canonical.key, new Solved(symmetry.transform(plan,
+					VacuumSymmetry.IDENTITY), canonical.symmetry));
+		}
+		return plan;
+	}
+
+	@Override
+	public Metrics getMetrics() {
+		Metrics result = super.getMetrics();
+		result.set("symmetryHits", this.symmetryHits);
+		return result;
+	}
+
+	private static class Solved {
+		Plan plan;
+		int symmetry;
+
+		Solved(Plan plan, int symmetry) {
+			this.plan = plan;
+			this.symmetry = symmetry;
+		}
+	}
+}
@@ -0,0 +1,37 @@
+/**
+ * Marks a leaf of a partial plan: a state that an AND-OR search reached but
+ * did not get to search before it was cancelled or ran out of time (see
+ * AndOrSearch.search(NondeterministicProblem, CancellationToken)). The plan
+ * itself is empty; an agent that reaches it has to search again from the
+ * state it is in.
+ */
+public class UnresolvedPlan extends Plan {
+
+	private static final long serialVersionUID = 1L;
+
+	private Object state;
+
+	/**
+	 * Constructor
+	 *
+	 * @param state
+	 *            the state left unsearched.
+	 */
+	public UnresolvedPlan(Object state) {
+		this.state = state;
+	}
+
+	/**
+	 * Returns the state left unsearched.
+	 *
+	 * @return the state left unsearched.
+	 */
+	public Object getState() {
+		return this.state;
+	}
+
+	@Override
+	public String toString() {
+		return "[unresolved]";
+	}
+}
@@ -1,5 +1,7 @@
 import java.util.Random;
 import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Artificial Intelligence A Modern Approach (3rd Edition): pg 58.<br>
@@ -31,12 +33,24 @@ public class VacuumEnvironment extends AbstractEnvironment {
 		Clean, Dirty
 	};
 
+    /**
+      * How new dirt arrives at each location when dynamic dirt is enabled
+      */
+    public enum DirtArrival {
+        Bernoulli, Poisson
+    };
+
 	//
 	protected VacuumEnvironmentState envState = null;
 	protected boolean isDone = false;
     protected int gridWidth = 0;
     protected int gridHeight = 0;
     protected double dirtProbability = 0;
+    protected DirtArrival dirtArrival = null;
+    protected double dirtArrivalRate = 0;
+    protected List<int[]> dirtHotSpots = new ArrayList<int[]>();
+    protected List<Double> dirtHotSpotRates = new ArrayList<Double>();
+    protected Random dirtRandom = new Random();
 
     /**
       * Constructs a vacuum environment with a random grid size and random
@@ -95,6 +109,23 @@ public class VacuumEnvironment extends AbstractEnvironment {
         }
     }
 
+    /**
+      * Constructs a vacuum environment with a grid of specified width and
+      * height in which every location is in the given state
+      */
+    public VacuumEnvironment(int width, int height, LocationState state) {
+        gridWidth = width;
+        gridHeight = height;
+        dirtProbability = (LocationState.Dirty == state ? 1 : 0);
+        envState = new VacuumEnvironmentState();
+        for (int i = 0; i < gridWidth; ++i) {
+            for (int j = 0; j < gridHeight; ++j) {
+                envState.setLocationState(String.format(LOCATION_FORMAT, i, j),
+                        state);
+            }
+        }
+    }
+
     /**
       * Constructs a vacuum environment with a pre-defined grid with dirt
       * locations specified by a 2-dimensinoal array of Booleans
@@ -179,6 +210,27 @@ public class VacuumEnvironment extends AbstractEnvironment {
 		return super.isDone() || isDone;
 	}
 
+    /**
+      * Deposit new dirt when dynamic dirt is enabled. Rather than flipping a
+      * coin for every location, the number of clean draws before the next
+      * arrival is sampled from a geometric distribution, so a step costs time
+      * proportional to the dirt that actually arrives (plus one draw per
+      * hot-spot) instead of the size of the grid
+      */
+    @Override
+    public void createExogenousChange() {
+        if (dirtArrival == null) {
+            return;
+        }
+        depositDirt(0, 0, gridWidth - 1, gridHeight - 1,
+                arrivalProbability(dirtArrivalRate));
+        for (int i = 0; i < dirtHotSpots.size(); ++i) {
+            int[] r = dirtHotSpots.get(i);
+            depositDirt(r[0], r[1], r[2], r[3],
+                    arrivalProbability(dirtHotSpotRates.get(i)));
+        }
+    }
+
 	@Override
 	public void addAgent(Agent a) {
         Random r = new Random();
@@ -215,6 +267,20 @@ public class VacuumEnvironment extends AbstractEnvironment {
 		return envState.getAgentLocation(a);
 	}
 
+    /**
+      * Width of the grid (number of distinct x coordinates)
+      */
+    public int getGridWidth() {
+        return gridWidth;
+    }
+
+    /**
+      * Height of the grid (number of distinct y coordinates)
+      */
+    public int getGridHeight() {
+        return gridHeight;
+    }
+
     /**
       * Add dirt to location specified by LOCATION_FORMAT'd location string
       */
@@ -270,4 +336,113 @@ public class VacuumEnvironment extends AbstractEnvironment {
             }
         }
     }
+
+    /**
+      * Make dirt reappear over time; after every step each location gets new
+      * dirt with probability rate (Bernoulli) or as a Poisson process with
+      * rate arrivals per step (Poisson). Since a location is simply dirty or
+      * clean, Poisson arrivals dirty a location with probability
+      * 1 - e^(-rate)
+      */
+    public void enableDynamicDirt(DirtArrival arrival, double rate) {
+        if (rate < 0 || (arrival == DirtArrival.Bernoulli && rate > 1)) {
+            throw new IllegalArgumentException("Invalid dirt arrival rate: "
+                    + rate);
+        }
+        dirtArrival = arrival;
+        dirtArrivalRate = rate;
+    }
+
+    /**
+      * Stop dirt from reappearing and forget all hot-spots
+      */
+    public void disableDynamicDirt() {
+        dirtArrival = null;
+        dirtArrivalRate = 0;
+        dirtHotSpots.clear();
+        dirtHotSpotRates.clear();
+    }
+
+    /**
+      * Add a rectangular hot-spot (corners inclusive, clipped to the grid)
+      * where dirt arrives at an additional rate on top of the base rate, using
+      * the same arrival process
+      */
+    public void addDirtHotSpot(int x0, int y0, int x1, int y1, double rate) {
+        if (dirtArrival == null) {
+            throw new IllegalStateException("Dynamic dirt is not enabled.");
+        }
+        if (rate < 0 || (dirtArrival == DirtArrival.Bernoulli && rate > 1)) {
+            throw new IllegalArgumentException("Invalid dirt arrival rate: "
+                    + rate);
+        }
+        int[] r = new int[] { Math.max(0, Math.min(x0, x1)),
+                Math.max(0, Math.min(y0, y1)),
+                Math.min(gridWidth - 1, Math.max(x0, x1)),
+                Math.min(gridHeight - 1, Math.max(y0, y1)) };
+        if (r[0] <= r[2] && r[1] <= r[3]) {
+            dirtHotSpots.add(r);
+            dirtHotSpotRates.add(rate);
+        }
+    }
+
+    /**
+      * Seed the random numbers used for dirt arrivals, for repeatable runs
+      */
+    public void setDynamicDirtSeed(long seed) {
+        dirtRandom = new Random(seed);
+    }
+
+    /**
+      * Probability that a location receives at least one new piece of dirt in
+      * a step with the given arrival rate
+      */
+    protected double arrivalProbability(double rate) {
+        if (dirtArrival == DirtArrival.Poisson) {
+            return -Math.expm1(-rate);
+        }
+        return rate;
+    }
+
+    /**
+      * Dirty each location of the rectangle (corners inclusive) independently
+      * with probability p, visiting only the locations that receive dirt.
+      * Every location that was clean is reported to the DirtArrivalViews
+      */
+    protected void depositDirt(int x0, int y0, int x1, int y1, double p) {
+        if (p <= 0) {
+            return;
+        }
+        int height = y1 - y0 + 1;
+        long cells = (long) (x1 - x0 + 1) * height;
+        double logMiss = Math.log1p(-p);
+        long i = -1;
+        while (true) {
+            // Number of locations skipped before the next arrival
+            double skip = (p >= 1 ? 0 :
+                    Math.floor(Math.log1p(-dirtRandom.nextDouble()) / logMiss));
+            if (skip >= cells - i - 1) {
+                break;
+            }
+            i += 1 + (long) skip;
+            String location = String.format(LOCATION_FORMAT,
+                    x0 + (int) (i / height), y0 + (int) (i % height));
+            if (LocationState.Dirty != envState.getLocationState(location)) {
+                envState.setLocationState(location, LocationState.Dirty);
+                updateEnvironmentViewsDirtArrived(location);
+            }
+        }
+    }
+
+    /**
+      * Tell the views that want to know (DirtArrivalViews) that dirt arrived
+      * at a location
+      */
+    protected void updateEnvironmentViewsDirtArrived(String location) {
+        for (EnvironmentView view : views) {
+            if (view instanceof DirtArrivalView) {
+                ((DirtArrivalView) view).dirtArrived(location, envState);
+            }
+        }
+    }
 }
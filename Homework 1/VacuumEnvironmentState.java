@@ -1,3 +1,4 @@
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -77,6 +78,15 @@ public class VacuumEnvironmentState implements EnvironmentState,
 		state.put(location, s);
 	}
 
+	/**
+	 * Returns a read-only view of every location and its state
+	 *
+	 * @return an unmodifiable view of the location states.
+	 */
+	public Map<String, VacuumEnvironment.LocationState> getLocationStates() {
+		return Collections.unmodifiableMap(state);
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (o instanceof VacuumEnvironmentState) {
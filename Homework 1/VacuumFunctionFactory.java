@@ -0,0 +1,344 @@
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Factory class for constructing functions for searching a width x height
+ * vacuum world with a single agent, where states are VacuumEnvironmentStates
+ * or PersistentVacuumStates. Moves stop at the edge of the grid as in
+ * VacuumEnvironment.<br>
+ * <br>
+ * Besides the deterministic world, an erratic world (AIMA3e page 133) is
+ * available in which Suck on a dirty location cleans it and sometimes also
+ * cleans the adjacent locations, and Suck on a clean location sometimes
+ * deposits dirt on it.
+ */
+public class VacuumFunctionFactory {
+	private static ActionsFunction actionsFunction = null;
+	private static GoalTest goalTest = null;
+
+	public static ActionsFunction getActionsFunction() {
+		if (null == actionsFunction) {
+			actionsFunction = new VacuumActionsFunction();
+		}
+		return actionsFunction;
+	}
+
+	public static ResultsFunction getResultsFunction(Agent agent, int width,
+			int height) {
+		return new VacuumResultsFunction(agent, width, height, false);
+	}
+
+	public static ResultsFunction getErraticResultsFunction(Agent agent,
+			int width, int height) {
+		return new VacuumResultsFunction(agent, width, height, true);
+	}
+
+	public static GoalTest getGoalTest() {
+		if (null == goalTest) {
+			goalTest = new VacuumGoalTest();
+		}
+		return goalTest;
+	}
+
+	/**
+	 * Returns twice the number of dirty locations less one plus the distance
+	 * from the agent to the closest of them. Every dirty location needs a
+	 * Suck, the agent has to reach the closest one and then move at least once
+	 * to get to each of the others, so this never overestimates the (worst
+	 * case) cost with unit step costs.
+	 */
+	public static HeuristicFunction getHeuristicFunction(Agent agent) {
+		return new VacuumHeuristicFunction(agent);
+	}
+
+	/**
+	 * Creates the problem of cleaning the given environment with one agent,
+	 * starting from a copy of its current state.
+	 *
+	 * @param env
+	 *            the environment to clean.
+	 * @param agent
+	 *            the agent, which must already be in the environment.
+	 * @param erratic
+	 *            whether to use the erratic Suck action.
+	 * @return the problem of cleaning the environment.
+	 */
+	public static NondeterministicProblem createProblem(VacuumEnvironment env,
+			Agent agent, boolean erratic) {
+		VacuumEnvironmentState initial = new VacuumEnvironmentState(
+				(VacuumEnvironmentState) env.getCurrentState());
+		ResultsFunction results = erratic ? getErraticResultsFunction(agent,
+				env.getGridWidth(), env.getGridHeight()) : getResultsFunction(
+				agent, env.getGridWidth(), env.getGridHeight());
+		return new NondeterministicProblem(initial, getActionsFunction(),
+				results, getGoalTest());
+	}
+
+	/**
+	 * Creates the same problem as createProblem, with PersistentVacuumStates
+	 * as states, so that successors share structure instead of copying the
+	 * whole grid.
+	 */
+	public static NondeterministicProblem createPersistentProblem(
+			VacuumEnvironment env, Agent agent, boolean erratic) {
+		NondeterministicProblem problem = createProblem(env, agent, erratic);
+		return new NondeterministicProblem(PersistentVacuumState.fromState(
+				(VacuumEnvironmentState) problem.getInitialState(), agent,
+				env.getGridWidth(), env.getGridHeight()),
+				problem.getActionsFunction(), problem.getResultsFunction(),
+				problem.getGoalTest());
+	}
+
+	/**
+	 * Returns a function that turns the percepts of a
+	 * NondeterministicVacuumAgent into PersistentVacuumStates, for use with
+	 * createPersistentProblem.
+	 */
+	public static PerceptToStateFunction getPersistentPerceptToStateFunction(
+			final Agent agent, final int width, final int height) {
+		return new PerceptToStateFunction() {
+			public Object getState(Percept p) {
+				return PersistentVacuumState.fromState(
+						(VacuumEnvironmentState) p, agent, width, height);
+			}
+		};
+	}
+
+	//
+	// PACKAGE METHODS
+	//
+	static int getX(String location) {
+		return Integer.parseInt(location.substring(0, location.indexOf(',')));
+	}
+
+	static int getY(String location) {
+		return Integer.parseInt(location.substring(location.indexOf(',') + 1));
+	}
+
+	static String location(int x, int y) {
+		return String.format(VacuumEnvironment.LOCATION_FORMAT, x, y);
+	}
+
+	private static class VacuumActionsFunction implements ActionsFunction {
+		private Set<Action> actions;
+
+		public VacuumActionsFunction() {
+			Set<Action> a = new LinkedHashSet<Action>();
+			a.add(VacuumEnvironment.ACTION_MOVE_LEFT);
+			a.add(VacuumEnvironment.ACTION_MOVE_RIGHT);
+			a.add(VacuumEnvironment.ACTION_MOVE_UP);
+			a.add(VacuumEnvironment.ACTION_MOVE_DOWN);
+			a.add(VacuumEnvironment.ACTION_SUCK);
+			actions = Collections.unmodifiableSet(a);
+		}
+
+		@Override
+		public Set<Action> actions(Object state) {
+			return actions;
+		}
+
+		@Override
+		public String toString() {
+			return "VacuumActionsFunction" + actions;
+		}
+	}
+
+	private static class VacuumResultsFunction implements ResultsFunction {
+		private Agent agent;
+		private int width;
+		private int height;
+		private boolean erratic;
+
+		public VacuumResultsFunction(Agent agent, int width, int height,
+				boolean erratic) {
+			this.agent = agent;
+			this.width = width;
+			this.height = height;
+			this.erratic = erratic;
+		}
+
+		@Override
+		public String toString() {
+			return "VacuumResultsFunction[width=" + width + ", height="
+					+ height + ", erratic=" + erratic + "]";
+		}
+
+		@Override
+		public Set<Object> results(Object s, Action a) {
+			if (s instanceof PersistentVacuumState) {
+				return results((PersistentVacuumState) s, a);
+			}
+			VacuumEnvironmentState state = (VacuumEnvironmentState) s;
+			Set<Object> results = new LinkedHashSet<Object>();
+			String location = state.getAgentLocation(agent);
+			int x = getX(location);
+			int y = getY(location);
+
+			if (VacuumEnvironment.ACTION_SUCK == a) {
+				boolean dirty = VacuumEnvironment.LocationState.Dirty == state
+						.getLocationState(location);
+				VacuumEnvironmentState cleaned = new VacuumEnvironmentState(
+						state);
+				cleaned.setLocationState(location,
+						VacuumEnvironment.LocationState.Clean);
+				results.add(cleaned);
+				if (erratic && dirty) {
+					// sometimes also cleans the adjacent locations
+					VacuumEnvironmentState alsoAdjacent = new VacuumEnvironmentState(
+							cleaned);
+					int[][] adjacent = new int[][] { { x - 1, y },
+							{ x + 1, y }, { x, y + 1 }, { x, y - 1 } };
+					for (int[] xy : adjacent) {
+						if (xy[0] >= 0 && xy[0] < width && xy[1] >= 0
+								&& xy[1] < height) {
+							alsoAdjacent.setLocationState(
+									location(xy[0], xy[1]),
+									VacuumEnvironment.LocationState.Clean);
+						}
+					}
+					results.add(alsoAdjacent);
+				} else if (erratic) {
+					// sometimes deposits dirt on a clean location
+					VacuumEnvironmentState deposited = new VacuumEnvironmentState(
+							state);
+					deposited.setLocationState(location,
+							VacuumEnvironment.LocationState.Dirty);
+					results.add(deposited);
+				}
+				return results;
+			}
+
+			if (VacuumEnvironment.ACTION_MOVE_LEFT == a) {
+				x = Math.max(x - 1, 0);
+			} else if (VacuumEnvironment.ACTION_MOVE_RIGHT == a) {
+				x = Math.min(x + 1, width - 1);
+			} else if (VacuumEnvironment.ACTION_MOVE_UP == a) {
+				y = Math.min(y + 1, height - 1);
+			} else if (VacuumEnvironment.ACTION_MOVE_DOWN == a) {
+				y = Math.max(y - 1, 0);
+			} else {
+				// The Action is not understood or is a NoOp
+				// the result will be the current state.
+				results.add(s);
+				return results;
+			}
+			VacuumEnvironmentState moved = new VacuumEnvironmentState(state);
+			moved.setAgentLocation(agent, location(x, y));
+			results.add(moved);
+			return results;
+		}
+
+		// The same results, sharing structure with the state
+		private Set<Object> results(PersistentVacuumState state, Action a) {
+			Set<Object> results = new LinkedHashSet<Object>();
+			int x = state.getAgentX();
+			int y = state.getAgentY();
+
+			if (VacuumEnvironment.ACTION_SUCK == a) {
+				boolean dirty = state.isDirty(x, y);
+				PersistentVacuumState cleaned = state.withLocationState(x, y,
+						VacuumEnvironment.LocationState.Clean);
+				results.add(cleaned);
+				if (erratic && dirty) {
+					PersistentVacuumState alsoAdjacent = cleaned;
+					int[][] adjacent = new int[][] { { x - 1, y },
+							{ x + 1, y }, { x, y + 1 }, { x, y - 1 } };
+					for (int[] xy : adjacent) {
+						if (xy[0] >= 0 && xy[0] < width && xy[1] >= 0
+								&& xy[1] < height) {
+							alsoAdjacent = alsoAdjacent.withLocationState(
+									xy[0], xy[1],
+									VacuumEnvironment.LocationState.Clean);
+						}
+					}
+					results.add(alsoAdjacent);
+				} else if (erratic) {
+					results.add(state.withLocationState(x, y,
+							VacuumEnvironment.LocationState.Dirty));
+				}
+				return results;
+			}
+
+			if (VacuumEnvironment.ACTION_MOVE_LEFT == a) {
+				x = Math.max(x - 1, 0);
+			} else if (VacuumEnvironment.ACTION_MOVE_RIGHT == a) {
+				x = Math.min(x + 1, width - 1);
+			} else if (VacuumEnvironment.ACTION_MOVE_UP == a) {
+				y = Math.min(y + 1, height - 1);
+			} else if (VacuumEnvironment.ACTION_MOVE_DOWN == a) {
+				y = Math.max(y - 1, 0);
+			}
+			results.add(state.withAgentLocation(x, y));
+			return results;
+		}
+	}
+
+	private static class VacuumGoalTest implements GoalTest {
+		@Override
+		public String toString() {
+			return "VacuumGoalTest";
+		}
+
+		@Override
+		public boolean isGoalState(Object state) {
+			if (state instanceof PersistentVacuumState) {
+				return ((PersistentVacuumState) state).getDirtCount() == 0;
+			}
+			for (VacuumEnvironment.LocationState s : ((VacuumEnvironmentState) state)
+					.getLocationStates().values()) {
+				if (VacuumEnvironment.LocationState.Dirty == s) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	private static class VacuumHeuristicFunction implements HeuristicFunction {
+		private Agent agent;
+
+		public VacuumHeuristicFunction(Agent agent) {
+			this.agent = agent;
+		}
+
+		@Override
+		public double h(Object s) {
+			if (s instanceof PersistentVacuumState) {
+				return h((PersistentVacuumState) s);
+			}
+			VacuumEnvironmentState state = (VacuumEnvironmentState) s;
+			String location = state.getAgentLocation(agent);
+			int x = getX(location);
+			int y = getY(location);
+			int dirty = 0;
+			int nearest = Integer.MAX_VALUE;
+			for (Map.Entry<String, VacuumEnvironment.LocationState> e : state
+					.getLocationStates().entrySet()) {
+				if (VacuumEnvironment.LocationState.Dirty == e.getValue()) {
+					dirty++;
+					nearest = Math.min(nearest, Math.abs(getX(e.getKey()) - x)
+							+ Math.abs(getY(e.getKey()) - y));
+				}
+			}
+			return dirty == 0 ? 0 : 2 * dirty - 1 + nearest;
+		}
+
+		private double h(PersistentVacuumState state) {
+			if (state.getDirtCount() == 0) {
+				return 0;
+			}
+			int x = state.getAgentX();
+			int y = state.getAgentY();
+			int height = state.getHeight();
+			int nearest = Integer.MAX_VALUE;
+			for (int c = state.nextDirtyCell(0); c >= 0; c = state
+					.nextDirtyCell(c + 1)) {
+				nearest = Math.min(nearest, Math.abs(c / height - x)
+						+ Math.abs(c % height - y));
+			}
+			return 2 * state.getDirtCount() - 1 + nearest;
+		}
+	}
+}
@@ -0,0 +1,490 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes the dirt of a vacuum world to a stream as an image or as run-length
+ * encoded text, and reads it back into a VacuumEnvironment. The grid is
+ * written one row at a time from a buffer of one row, so unlike
+ * VacuumEnvironmentState.toString() the output is never held in memory as a
+ * whole. Rows go from the top of the grid (y = height - 1) down and each row from x
+ * = 0 to the right, as in an image.<br>
+ * <br>
+ * Formats:
+ * <ul>
+ * <li>PBM: a binary portable bitmap (P4), one bit per location, 1 (black) for
+ * dirt;</li>
+ * <li>PGM: a binary portable graymap (P5), one byte per location: 255 for
+ * clean, 0 for dirty, and 170 and 85 for clean and dirty locations with an
+ * agent on them;</li>
+ * <li>RLE: text in the run-length encoding of Life patterns: a header line
+ * "x = width, y = height" followed by runs such as "12c3d" (12 clean, 3
+ * dirty locations), "$" at the end of each row (n$ for n rows) and "!" at
+ * the end. Clean locations at the end of a row are left out.</li>
+ * </ul>
+ * read() tells the formats apart by their first bytes; agents are not read
+ * back.<br>
+ * <br>
+ * A PersistentVacuumState is an immutable snapshot that can be taken in
+ * O(1), so writing one on another thread does not hold up the simulation and
+ * takes no memory beyond the row buffer. A VacuumEnvironment is first copied
+ * to a bitset of its dirty locations, one bit per location, in a single pass
+ * over its state, plus a set of the locations of its agents; the copy takes
+ * width * height / 8 bytes, so it does grow with the grid, but is far smaller
+ * than the state it is taken from. Only the copy must not overlap a step() of
+ * the environment, the writing is done from the copy.
+ */
+public class VacuumGridIO {
+	public enum Format {
+		PBM, PGM, RLE
+	};
+
+	public static final int PGM_CLEAN = 255;
+	public static final int PGM_CLEAN_AGENT = 170;
+	public static final int PGM_DIRTY_AGENT = 85;
+	public static final int PGM_DIRTY = 0;
+	// the longest line of RLE text written
+	public static final int RLE_LINE_LENGTH = 70;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Writes the grid of an environment, and the locations of its agents
+	 * (PGM only), to a stream. The environment is only read while the copy
+	 * written from is taken, which must not overlap a step() of it; the copy
+	 * takes one bit per location.
+	 */
+	public static void write(VacuumEnvironment env, Format format,
+			OutputStream out) throws IOException {
+		final int width = env.getGridWidth();
+		final int height = env.getGridHeight();
+		final Set<Integer> agents = new HashSet<Integer>();
+		for (Agent a : env.getAgents()) {
+			String location = env.getAgentLocation(a);
+			if (location != null) {
+				agents.add(VacuumFunctionFactory.getX(location) * height
+						+ VacuumFunctionFactory.getY(location));
+			}
+		}
+		// bit x * height + y is set if location (x, y) is dirty
+		final long[] dirt = new long[(int) (((long) width * height + 63) >>> 6)];
+		for (Map.Entry<String, VacuumEnvironment.LocationState> e : ((VacuumEnvironmentState) env
+				.getCurrentState()).getLocationStates().entrySet()) {
+			if (VacuumEnvironment.LocationState.Dirty == e.getValue()) {
+				int x = VacuumFunctionFactory.getX(e.getKey());
+				int y = VacuumFunctionFactory.getY(e.getKey());
+				if (x >= 0 && x < width && y >= 0 && y < height) {
+					long i = (long) x * height + y;
+					dirt[(int) (i >>> 6)] |= 1L << i;
+				}
+			}
+		}
+		write(new Grid(width, height) {
+			boolean isDirty(int x, int y) {
+				long i = (long) x * height + y;
+				return (dirt[(int) (i >>> 6)] & (1L << i)) != 0;
+			}
+
+			boolean hasAgent(int x, int y) {
+				return agents.contains(x * height + y);
+			}
+		}, format, out);
+	}
+
+	/**
+	 * Writes the grid of an environment to a file.
+	 */
+	public static void write(VacuumEnvironment env, Format format, File file)
+			throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			write(env, format, out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes a state and the location of its agent (PGM only) to a stream.
+	 */
+	public static void write(final PersistentVacuumState state, Format format,
+			OutputStream out) throws IOException {
+		write(new Grid(state.getWidth(), state.getHeight()) {
+			boolean isDirty(int x, int y) {
+				return state.isDirty(x, y);
+			}
+
+			boolean hasAgent(int x, int y) {
+				return state.getAgentLocation(state.getAgent()) != null
+						&& state.getAgentX() == x && state.getAgentY() == y;
+			}
+		}, format, out);
+	}
+
+	/**
+	 * Reads a grid written in any of the formats into a new environment
+	 * without agents.
+	 */
+	public static VacuumEnvironment read(InputStream in) throws IOException {
+		Reader reader = new Reader(new BufferedInputStream(in, BUFFER_SIZE));
+		int first = reader.next();
+		if (first == 'P') {
+			int type = reader.next();
+			if (type == '4') {
+				return readPbm(reader);
+			} else if (type == '5') {
+				return readPgm(reader);
+			}
+			throw new IOException("Unsupported image type P" + (char) type);
+		}
+		reader.unread(first);
+		return readRle(reader);
+	}
+
+	/**
+	 * Reads a grid from a file into a new environment without agents.
+	 */
+	public static VacuumEnvironment read(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			return read(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	// What is written of a world
+	private static abstract class Grid {
+		final int width;
+		final int height;
+
+		Grid(int width, int height) {
+			this.width = width;
+			this.height = height;
+		}
+
+		abstract boolean isDirty(int x, int y);
+
+		abstract boolean hasAgent(int x, int y);
+	}
+
+	private static void write(Grid grid, Format format, OutputStream stream)
+			throws IOException {
+		// not closed, which would close the stream
+		BufferedOutputStream out = new BufferedOutputStream(stream,
+				BUFFER_SIZE);
+		if (Format.PBM == format) {
+			writePbm(grid, out);
+		} else if (Format.PGM == format) {
+			writePgm(grid, out);
+		} else {
+			writeRle(grid, out);
+		}
+		out.flush();
+	}
+
+	private static void writePbm(Grid grid, OutputStream out)
+			throws IOException {
+		writeAscii(out, "P4\n" + grid.width + " " + grid.height + "\n");
+		byte[] row = new byte[(grid.width + 7) / 8];
+		for (int y = grid.height - 1; y >= 0; y--) {
+			Arrays.fill(row, (byte) 0);
+			for (int x = 0; x < grid.width; x++) {
+				if (grid.isDirty(x, y)) {
+					row[x >>> 3] |= 0x80 >>> (x & 7);
+				}
+			}
+			out.write(row);
+		}
+	}
+
+	private static void writePgm(Grid grid, OutputStream out)
+			throws IOException {
+		writeAscii(out, "P5\n" + grid.width + " " + grid.height + "\n255\n");
+		byte[] row = new byte[grid.width];
+		for (int y = grid.height - 1; y >= 0; y--) {
+			for (int x = 0; x < grid.width; x++) {
+				boolean dirty = grid.isDirty(x, y);
+				int value;
+				if (grid.hasAgent(x, y)) {
+					value = dirty ? PGM_DIRTY_AGENT : PGM_CLEAN_AGENT;
+				} else {
+					value = dirty ? PGM_DIRTY : PGM_CLEAN;
+				}
+				row[x] = (byte) value;
+			}
+			out.write(row);
+		}
+	}
+
+	private static void writeRle(Grid grid, OutputStream out)
+			throws IOException {
+		writeAscii(out, "x = " + grid.width + ", y = " + grid.height + "\n");
+		RleWriter rle = new RleWriter(out);
+		// rows ended but not written yet, so that blank rows are merged
+		int rowsEnded = 0;
+		for (int y = grid.height - 1; y >= 0; y--) {
+			int x = 0;
+			while (x < grid.width) {
+				boolean dirty = grid.isDirty(x, y);
+				int run = 1;
+				while (x + run < grid.width && grid.isDirty(x + run, y) == dirty) {
+					run++;
+				}
+				if (dirty || x + run < grid.width) {
+					if (rowsEnded > 0) {
+						rle.run(rowsEnded, '$');
+						rowsEnded = 0;
+					}
+					rle.run(run, dirty ? 'd' : 'c');
+				}
+				x += run;
+			}
+			rowsEnded++;
+		}
+		// the last row needs no $
+		rle.run(1, '!');
+		rle.newLine();
+	}
+
+	private static VacuumEnvironment readPbm(Reader in) throws IOException {
+		int width = in.nextInt();
+		int height = in.nextInt();
+		in.next(); // the single whitespace before the raster
+		VacuumEnvironment env = newEnvironment(width, height);
+		int rowBytes = (width + 7) / 8;
+		for (int y = height - 1; y >= 0; y--) {
+			for (int i = 0; i < rowBytes; i++) {
+				int b = in.nextByte();
+				for (int bit = 0; bit < 8 && b != 0; bit++) {
+					int x = 8 * i + bit;
+					if (x < width && (b & (0x80 >>> bit)) != 0) {
+						env.addDirt(VacuumFunctionFactory.location(x, y));
+					}
+				}
+			}
+		}
+		return env;
+	}
+
+	private static VacuumEnvironment readPgm(Reader in) throws IOException {
+		int width = in.nextInt();
+		int height = in.nextInt();
+		int max = in.nextInt();
+		in.next();
+		if (max > 255) {
+			throw new IOException("Only 8-bit graymaps are supported");
+		}
+		VacuumEnvironment env = newEnvironment(width, height);
+		for (int y = height - 1; y >= 0; y--) {
+			for (int x = 0; x < width; x++) {
+				// the darker half is dirt
+				if (2 * in.nextByte() < max) {
+					env.addDirt(VacuumFunctionFactory.location(x, y));
+				}
+			}
+		}
+		return env;
+	}
+
+	private static VacuumEnvironment readRle(Reader in) throws IOException {
+		// skip comment lines, then "x = width, y = height[, ...]"
+		String header = in.nextLine();
+		while (header.startsWith("#")) {
+			header = in.nextLine();
+		}
+		int width = -1;
+		int height = -1;
+		for (String field : header.split(",")) {
+			String[] pair = field.split("=");
+			if (pair.length == 2) {
+				String key = pair[0].trim();
+				if (key.equals("x")) {
+					width = Integer.parseInt(pair[1].trim());
+				} else if (key.equals("y")) {
+					height = Integer.parseInt(pair[1].trim());
+				}
+			}
+		}
+		if (width < 0 || height < 0) {
+			throw new IOException("Missing RLE header: " + header);
+		}
+		VacuumEnvironment env = newEnvironment(width, height);
+		int x = 0;
+		int y = height - 1;
+		int count = 0;
+		while (true) {
+			int c = in.next();
+			if (c < 0) {
+				throw new EOFException("RLE text does not end with !");
+			} else if (c >= '0' && c <= '9') {
+				if (count > (Integer.MAX_VALUE - 9) / 10) {
+					throw new IOException("RLE run count too large");
+				}
+				count = 10 * count + (c - '0');
+				continue;
+			}
+			int n = count == 0 ? 1 : count;
+			count = 0;
+			if (c == 'c' || c == 'b') {
+				if ((long) x + n > width) {
+					throw new IOException("RLE run outside the grid");
+				}
+				x += n;
+			} else if (c == 'd' || c == 'o') {
+				if ((long) x + n > width || y < 0) {
+					throw new IOException("RLE run outside the grid");
+				}
+				for (int i = 0; i < n; i++) {
+					env.addDirt(VacuumFunctionFactory.location(x++, y));
+				}
+			} else if (c == '$') {
+				if (y - n < 0) {
+					throw new IOException("RLE rows outside the grid");
+				}
+				x = 0;
+				y -= n;
+			} else if (c == '!') {
+				return env;
+			} else if (!Character.isWhitespace(c)) {
+				throw new IOException("Unexpected character in RLE text: "
+						+ (char) c);
+			}
+		}
+	}
+
+	private static VacuumEnvironment newEnvironment(int width, int height)
+			throws IOException {
+		if (width <= 0 || height <= 0) {
+			throw new IOException("Bad grid size " + width + "x" + height);
+		}
+		return new VacuumEnvironment(width, height,
+				VacuumEnvironment.LocationState.Clean);
+	}
+
+	private static void writeAscii(OutputStream out, String s)
+			throws IOException {
+		for (int i = 0; i < s.length(); i++) {
+			out.write(s.charAt(i));
+		}
+	}
+
+	// Writes runs of RLE text, breaking lines between runs.
+	private static class RleWriter {
+		private OutputStream out;
+		private int column = 0;
+		private byte[] digits = new byte[11];
+
+		RleWriter(OutputStream out) {
+			this.out = out;
+		}
+
+		void run(int n, char tag) throws IOException {
+			int length = 0;
+			if (n > 1) {
+				for (int v = n; v > 0; v /= 10) {
+					digits[length++] = (byte) ('0' + v % 10);
+				}
+			}
+			if (column + length + 1 > RLE_LINE_LENGTH) {
+				newLine();
+			}
+			while (length > 0) {
+				out.write(digits[--length]);
+				column++;
+			}
+			out.write(tag);
+			column++;
+		}
+
+		void newLine() throws IOException {
+			out.write('\n');
+			column = 0;
+		}
+	}
+
+	// Reads the tokens of PNM headers and RLE text and the raw bytes of an
+	// image.
+	private static class Reader {
+		private InputStream in;
+		private int pushedBack = -1;
+
+		Reader(InputStream in) {
+			this.in = in;
+		}
+
+		int next() throws IOException {
+			if (pushedBack >= 0) {
+				int c = pushedBack;
+				pushedBack = -1;
+				return c;
+			}
+			return in.read();
+		}
+
+		void unread(int c) {
+			pushedBack = c;
+		}
+
+		int nextByte() throws IOException {
+			int b = next();
+			if (b < 0) {
+				throw new EOFException("Image ends early");
+			}
+			return b;
+		}
+
+		// the next decimal number of a PNM header, skipping whitespace and
+		// comments
+		int nextInt() throws IOException {
+			int c = next();
+			while (c == '#' || Character.isWhitespace(c)) {
+				if (c == '#') {
+					while (c >= 0 && c != '\n') {
+						c = next();
+					}
+				}
+				c = next();
+			}
+			if (c < '0' || c > '9') {
+				throw new IOException("Bad image header");
+			}
+			int n = 0;
+			while (c >= '0' && c <= '9') {
+				n = 10 * n + (c - '0');
+				c = next();
+			}
+			unread(c);
+			return n;
+		}
+
+		String nextLine() throws IOException {
+			StringBuilder line = new StringBuilder();
+			int c = next();
+			if (c < 0) {
+				throw new EOFException("Empty input");
+			}
+			while (c >= 0 && c != '\n') {
+				if (c != '\r') {
+					line.append((char) c);
+				}
+				c = next();
+			}
+			return line.toString();
+		}
+	}
+}
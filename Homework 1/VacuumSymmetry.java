@@ -0,0 +1,332 @@
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * The symmetry group of a width x height vacuum grid: the identity, the two
+ * mirror images and the half turn, and on a square grid also the two
+ * diagonal mirror images and the two quarter turns. Each symmetry maps a
+ * state of the world to an equivalent state; a plan that works from one state
+ * works from its image once its actions and states are mapped the same way
+ * (Left becomes Right under the mirror image in x, and so on).<br>
+ * <br>
+ * A state's canonical key is the smallest, over the group, of its image
+ * packed into a bitset (the dirty locations followed by the location of the
+ * agent), so two states have the same key exactly when one is an image of the
+ * other. States are VacuumEnvironmentStates in which one agent has a
+ * location.
+ */
+public class VacuumSymmetry {
+	public static final int IDENTITY = 0;
+
+	// x' = ox + xx * x + xy * y, y' = oy + yx * x + yy * y for each symmetry,
+	// with ox and oy filled in from the grid size
+	private static final int[][] LINEAR = new int[][] { { 1, 0, 0, 1 }, // identity
+			{ -1, 0, 0, 1 }, // mirror image in x
+			{ 1, 0, 0, -1 }, // mirror image in y
+			{ -1, 0, 0, -1 }, // half turn
+			{ 0, 1, 1, 0 }, // mirror image in the diagonal
+			{ 0, -1, -1, 0 }, // mirror image in the anti-diagonal
+			{ 0, -1, 1, 0 }, // quarter turn
+			{ 0, 1, -1, 0 } // three quarter turn
+	};
+
+	private Agent agent;
+	private int width;
+	private int height;
+	private int cells;
+	private int size;
+	// image of cell x * height + y under each symmetry
+	private int[][] cellMaps;
+	// image of each of Left, Right, Up, Down under each symmetry
+	private Action[][] actionMaps;
+	private int[][] compose;
+	private int[] inverse;
+	private String[] locations;
+
+	/**
+	 * Constructor
+	 *
+	 * @param agent
+	 *            the agent whose location is part of the states.
+	 * @param width
+	 *            the width of the grid.
+	 * @param height
+	 *            the height of the grid.
+	 */
+	public VacuumSymmetry(Agent agent, int width, int height) {
+		this.agent = agent;
+		this.width = width;
+		this.height = height;
+		this.cells = width * height;
+
+		locations = new String[cells];
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				locations[x * height + y] = VacuumFunctionFactory.location(x, y);
+			}
+		}
+
+		// the diagonal symmetries only map a square grid onto itself, and on a
+		// grid one cell wide some of the others move no cell and are left out
+		int candidates = width == height ? 8 : 4;
+		cellMaps = new int[candidates][];
+		actionMaps = new Action[candidates][];
+		size = 0;
+		for (int k = 0; k < candidates; k++) {
+			int[] m = LINEAR[k];
+			// the offsets that map the grid onto itself
+			int ox = (m[0] < 0 || m[1] < 0) ? width - 1 : 0;
+			int oy = (m[2] < 0 || m[3] < 0) ? height - 1 : 0;
+			int[] map = new int[cells];
+			for (int x = 0; x < width; x++) {
+				for (int y = 0; y < height; y++) {
+					int x2 = ox + m[0] * x + m[1] * y;
+					int y2 = oy + m[2] * x + m[3] * y;
+					map[x * height + y] = x2 * height + y2;
+				}
+			}
+			if (find(map) < 0) {
+				cellMaps[size] = map;
+				actionMaps[size] = new Action[] { direction(-m[0], -m[2]),
+						direction(m[0], m[2]), direction(m[1], m[3]),
+						direction(-m[1], -m[3]) };
+				size++;
+			}
+		}
+
+		compose = new int[size][size];
+		inverse = new int[size];
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				int[] ij = new int[cells];
+				for (int c = 0; c < cells; c++) {
+					ij[c] = cellMaps[i][cellMaps[j][c]];
+				}
+				compose[i][j] = find(ij);
+				if (compose[i][j] == IDENTITY) {
+					inverse[j] = i;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of symmetries of the grid: 8 for a square grid, 4
+	 * otherwise (fewer if the grid is only one cell wide or high).
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the symmetry applying j first and then i.
+	 */
+	public int compose(int i, int j) {
+		return compose[i][j];
+	}
+
+	public int inverse(int k) {
+		return inverse[k];
+	}
+
+	/**
+	 * Returns the canonical key of a state.
+	 *
+	 * @param state
+	 *            a VacuumEnvironmentState.
+	 * @return the canonical key of the state.
+	 */
+	public Key canonicalKey(Object state) {
+		return canonicalize(state).key;
+	}
+
+	/**
+	 * Returns the canonical key of a state together with a symmetry that maps
+	 * the state to the state the key encodes.
+	 *
+	 * @param s
+	 *            a VacuumEnvironmentState.
+	 * @return the canonical key and symmetry of the state.
+	 */
+	public Canonical canonicalize(Object s) {
+		VacuumEnvironmentState state = (VacuumEnvironmentState) s;
+		int[] dirty = new int[cells];
+		int n = 0;
+		for (Map.Entry<String, VacuumEnvironment.LocationState> e : state
+				.getLocationStates().entrySet()) {
+			if (VacuumEnvironment.LocationState.Dirty == e.getValue()) {
+				dirty[n++] = cell(e.getKey());
+			}
+		}
+		int agentCell = cell(state.getAgentLocation(agent));
+
+		int words = (cells + 63) >>> 6;
+		long[] best = null;
+		int bestSymmetry = IDENTITY;
+		long[] candidate = new long[words + 1];
+		for (int k = 0; k < size; k++) {
+			Arrays.fill(candidate, 0);
+			int[] map = cellMaps[k];
+			for (int i = 0; i < n; i++) {
+				int c = map[dirty[i]];
+				candidate[c >>> 6] |= 1L << c;
+			}
+			candidate[words] = map[agentCell];
+			if (best == null || compare(candidate, best) < 0) {
+				best = candidate.clone();
+				bestSymmetry = k;
+			}
+		}
+		return new Canonical(new Key(best), bestSymmetry);
+	}
+
+	/**
+	 * Returns the image of an action under a symmetry; Suck and anything else
+	 * that is not a move are their own image.
+	 */
+	public Action transform(Action action, int k) {
+		if (VacuumEnvironment.ACTION_MOVE_LEFT == action) {
+			return actionMaps[k][0];
+		} else if (VacuumEnvironment.ACTION_MOVE_RIGHT == action) {
+			return actionMaps[k][1];
+		} else if (VacuumEnvironment.ACTION_MOVE_UP == action) {
+			return actionMaps[k][2];
+		} else if (VacuumEnvironment.ACTION_MOVE_DOWN == action) {
+			return actionMaps[k][3];
+		}
+		return action;
+	}
+
+	/**
+	 * Returns the image of a state under a symmetry.
+	 */
+	public VacuumEnvironmentState transform(VacuumEnvironmentState state, int k) {
+		VacuumEnvironmentState result = new VacuumEnvironmentState();
+		for (Map.Entry<String, VacuumEnvironment.LocationState> e : state
+				.getLocationStates().entrySet()) {
+			result.setLocationState(locations[cellMaps[k][cell(e.getKey())]],
+					e.getValue());
+		}
+		String location = state.getAgentLocation(agent);
+		if (location != null) {
+			result.setAgentLocation(agent, locations[cellMaps[k][cell(location)]]);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a copy of a plan with all of its actions and states mapped by a
+	 * symmetry. The copy shares nothing with the plan.
+	 */
+	public Plan transform(Plan plan, int k) {
+		if (plan instanceof UnresolvedPlan) {
+			return (Plan) transformStep(plan, k);
+		}
+		Plan result = new Plan();
+		for (Object step : plan) {
+			result.add(transformStep(step, k));
+		}
+		return result;
+	}
+
+	/**
+	 * A state packed into a bitset, with equals and hashCode over its words.
+	 */
+	public static class Key {
+		private final long[] words;
+		private final int hash;
+
+		Key(long[] words) {
+			this.words = words;
+			this.hash = Arrays.hashCode(words);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key k = (Key) o;
+			return hash == k.hash && Arrays.equals(words, k.words);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	/**
+	 * A canonical key and the symmetry mapping a state to it.
+	 */
+	public static class Canonical {
+		public final Key key;
+		public final int symmetry;
+
+		Canonical(Key key, int symmetry) {
+			this.key = key;
+			this.symmetry = symmetry;
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private Object transformStep(Object step, int k) {
+		if (step instanceof UnresolvedPlan) {
+			return new UnresolvedPlan(transform(
+					(VacuumEnvironmentState) ((UnresolvedPlan) step).getState(),
+					k));
+		} else if (step instanceof Plan) {
+			return transform((Plan) step, k);
+		} else if (step instanceof IfStateThenPlan) {
+			IfStateThenPlan conditional = (IfStateThenPlan) step;
+			Plan plan = conditional.getPlan();
+			return new IfStateThenPlan(transform(
+					(VacuumEnvironmentState) conditional.getState(), k),
+					plan == null ? null : transform(plan, k));
+		} else if (step instanceof Action) {
+			return transform((Action) step, k);
+		}
+		return step;
+	}
+
+	private int cell(String location) {
+		int comma = location.indexOf(',');
+		int x = Integer.parseInt(location.substring(0, comma));
+		int y = Integer.parseInt(location.substring(comma + 1));
+		return x * height + y;
+	}
+
+	private static Action direction(int dx, int dy) {
+		if (dx < 0) {
+			return VacuumEnvironment.ACTION_MOVE_LEFT;
+		} else if (dx > 0) {
+			return VacuumEnvironment.ACTION_MOVE_RIGHT;
+		} else if (dy > 0) {
+			return VacuumEnvironment.ACTION_MOVE_UP;
+		}
+		return VacuumEnvironment.ACTION_MOVE_DOWN;
+	}
+
+	private int find(int[] map) {
+		for (int k = 0; k < size; k++) {
+			if (Arrays.equals(cellMaps[k], map)) {
+				return k;
+			}
+		}
+		return -1;
+	}
+
+	private static int compare(long[] a, long[] b) {
+		for (int i = a.length - 1; i >= 0; i--) {
+			if (a[i] != b[i]) {
+				return a[i] < b[i] ? -1 : 1;
+			}
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,426 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records the actions taken in a VacuumEnvironment as fixed-width binary
+ * records in a memory-mapped, append-only trace file. Every record holds the
+ * id of the acting agent, the action, the location the agent ended up in and
+ * the resulting state of that location (the only cell an action can change),
+ * so a long run costs a few bytes per action instead of a dump of the whole
+ * map.<br>
+ * <br>
+ * Every snapshotInterval records the full grid and all agent locations are
+ * written as a fixed-size block to a companion file (the trace file name with
+ * SNAPSHOT_SUFFIX appended). VacuumTraceReplayer seeks straight to the closest
+ * snapshot and only replays the records that follow it.<br>
+ * <br>
+ * Trace file layout: a HEADER_SIZE byte header (magic, version, grid width,
+ * grid height, snapshot interval, maximum agents, record count) followed by
+ * RECORD_SIZE byte records (short agent id, byte action code, byte location
+ * state, int x, int y). The file grows a window of records at a time while
+ * recording and is cut back to the records written on close.<br>
+ * <br>
+ * Dirt that arrives while dynamic dirt is enabled is recorded too, as a
+ * CODE_DIRT_ARRIVED record of the dirty location with agent id -1, so a
+ * replay does not drift from the run. Version 1 traces have no such records.
+ * <br>
+ * <br>
+ * Agents are only traced at grid locations: an agent added at a location
+ * that is not LOCATION_FORMAT'd grid coordinates is not recorded (and is
+ * left out of snapshots) until it is at one.
+ */
+public class VacuumTraceRecorder implements DirtArrivalView, Closeable {
+	public static final int MAGIC = 0x56545243; // "VTRC"
+	public static final int VERSION = 2;
+	public static final int HEADER_SIZE = 32;
+	public static final int RECORD_SIZE = 12;
+	public static final String SNAPSHOT_SUFFIX = ".snap";
+	public static final int DEFAULT_SNAPSHOT_INTERVAL = 4096;
+	public static final int DEFAULT_MAX_AGENTS = 16;
+
+	// Action codes stored in each record; the code of an action is its index
+	// in ACTIONS.
+	public static final Action[] ACTIONS = new Action[] { NoOpAction.NO_OP,
+			VacuumEnvironment.ACTION_MOVE_LEFT,
+			VacuumEnvironment.ACTION_MOVE_RIGHT,
+			VacuumEnvironment.ACTION_MOVE_UP,
+			VacuumEnvironment.ACTION_MOVE_DOWN, VacuumEnvironment.ACTION_SUCK };
+	public static final byte CODE_UNKNOWN_ACTION = -1;
+	public static final byte CODE_AGENT_ADDED = -2;
+	public static final byte CODE_DIRT_ARRIVED = -3;
+	// The agent id of the records that no agent caused
+	public static final short NO_AGENT = -1;
+
+	// Location state codes stored in each record
+	public static final byte STATE_UNKNOWN = -1;
+	public static final byte STATE_CLEAN = 0;
+	public static final byte STATE_DIRTY = 1;
+
+	// Header field offsets
+	static final int OFFSET_MAGIC = 0;
+	static final int OFFSET_VERSION = 4;
+	static final int OFFSET_WIDTH = 8;
+	static final int OFFSET_HEIGHT = 12;
+	static final int OFFSET_INTERVAL = 16;
+	static final int OFFSET_MAX_AGENTS = 20;
+	static final int OFFSET_RECORD_COUNT = 24;
+
+	// Records are mapped one window at a time as the trace grows
+	static final int WINDOW_RECORDS = 1 << 16;
+
+	private VacuumEnvironment env;
+	private int width;
+	private int height;
+	private int snapshotInterval;
+	private int maxAgents;
+	private Map<Agent, Integer> agentIds = new LinkedHashMap<Agent, Integer>();
+	private Agent[] agents;
+	//
+	private RandomAccessFile traceFile;
+	private FileChannel traceChannel;
+	private MappedByteBuffer header;
+	private MappedByteBuffer window;
+	private long windowStart;
+	private long recordCount;
+	//
+	private RandomAccessFile snapshotFile;
+	private FileChannel snapshotChannel;
+	private ByteBuffer snapshotBuffer;
+	private byte[] bitmap;
+
+	/**
+	 * Starts recording the given environment using the default snapshot
+	 * interval and maximum number of agents.
+	 *
+	 * @param env
+	 *            the environment to record.
+	 * @param file
+	 *            the trace file to create (overwritten if it exists).
+	 * @throws IOException
+	 */
+	public VacuumTraceRecorder(VacuumEnvironment env, File file)
+			throws IOException {
+		this(env, file, DEFAULT_SNAPSHOT_INTERVAL, DEFAULT_MAX_AGENTS);
+	}
+
+	/**
+	 * Starts recording the given environment. A snapshot of the current state
+	 * is written straight away and the recorder registers itself as a view of
+	 * the environment.
+	 *
+	 * @param env
+	 *            the environment to record.
+	 * @param file
+	 *            the trace file to create (overwritten if it exists).
+	 * @param snapshotInterval
+	 *            number of records between two grid snapshots.
+	 * @param maxAgents
+	 *            the maximum number of agents that will act in the trace.
+	 * @throws IOException
+	 */
+	public VacuumTraceRecorder(VacuumEnvironment env, File file,
+			int snapshotInterval, int maxAgents) throws IOException {
+		if (snapshotInterval < 1 || maxAgents < 1
+				|| maxAgents > Short.MAX_VALUE) {
+			throw new IllegalArgumentException(
+					"Snapshot interval and maximum agents must be positive.");
+		}
+		this.env = env;
+		this.width = env.getGridWidth();
+		this.height = env.getGridHeight();
+		this.snapshotInterval = snapshotInterval;
+		this.maxAgents = maxAgents;
+		this.agents = new Agent[maxAgents];
+
+		traceFile = new RandomAccessFile(file, "rw");
+		traceFile.setLength(0);
+		traceChannel = traceFile.getChannel();
+		header = traceChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+				HEADER_SIZE);
+		header.putInt(OFFSET_MAGIC, MAGIC);
+		header.putInt(OFFSET_VERSION, VERSION);
+		header.putInt(OFFSET_WIDTH, width);
+		header.putInt(OFFSET_HEIGHT, height);
+		header.putInt(OFFSET_INTERVAL, snapshotInterval);
+		header.putInt(OFFSET_MAX_AGENTS, maxAgents);
+		header.putLong(OFFSET_RECORD_COUNT, 0);
+		mapWindow(0);
+
+		snapshotFile = new RandomAccessFile(snapshotFileFor(file), "rw");
+		snapshotFile.setLength(0);
+		snapshotChannel = snapshotFile.getChannel();
+		snapshotBuffer = ByteBuffer.allocate(snapshotSize(width, height,
+				maxAgents));
+		bitmap = new byte[bitmapSize(width, height)];
+
+		for (Agent a : env.getAgents()) {
+			register(a);
+		}
+		writeSnapshot(0);
+		env.addEnvironmentView(this);
+	}
+
+	/**
+	 * Returns the number of records written so far
+	 *
+	 * @return the number of records written so far.
+	 */
+	public long getRecordCount() {
+		return recordCount;
+	}
+
+	/**
+	 * Returns the id recorded for an agent, or -1 if the agent has not been
+	 * seen by this recorder
+	 *
+	 * @param a
+	 * @return the id recorded for the agent.
+	 */
+	public int getAgentId(Agent a) {
+		Integer id = agentIds.get(a);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Flushes the trace, detaches from the environment and releases the files.
+	 */
+	@Override
+	public void close() throws IOException {
+		env.removeEnvironmentView(this);
+		header.force();
+		window.force();
+		// drop the unused part of the last window
+		traceChannel.truncate(HEADER_SIZE + recordCount * RECORD_SIZE);
+		traceChannel.close();
+		traceFile.close();
+		snapshotChannel.force(false);
+		snapshotChannel.close();
+		snapshotFile.close();
+	}
+
+	//
+	// START-EnvironmentView
+	@Override
+	public void notify(String msg) {
+		// Messages are not part of the trace.
+	}
+
+	@Override
+	public void agentAdded(Agent agent, EnvironmentState resultingState) {
+		append(register(agent), CODE_AGENT_ADDED, agent,
+				(VacuumEnvironmentState) resultingState);
+	}
+
+	@Override
+	public void agentActed(Agent agent, Action action,
+			EnvironmentState resultingState) {
+		Integer id = agentIds.get(agent);
+		if (id == null) {
+			id = register(agent);
+		}
+		append(id, actionCode(action), agent,
+				(VacuumEnvironmentState) resultingState);
+	}
+
+	// END-EnvironmentView
+	//
+
+	//
+	// START-DirtArrivalView
+	@Override
+	public void dirtArrived(String location, EnvironmentState resultingState) {
+		append(NO_AGENT, CODE_DIRT_ARRIVED, location,
+				(VacuumEnvironmentState) resultingState);
+	}
+
+	// END-DirtArrivalView
+	//
+
+	/**
+	 * Returns the code stored in a record for the given action
+	 *
+	 * @param action
+	 * @return the action code, or CODE_UNKNOWN_ACTION.
+	 */
+	public static byte actionCode(Action action) {
+		for (byte i = 0; i < ACTIONS.length; i++) {
+			if (ACTIONS[i] == action) {
+				return i;
+			}
+		}
+		return CODE_UNKNOWN_ACTION;
+	}
+
+	/**
+	 * Returns the snapshot file that accompanies a trace file
+	 *
+	 * @param traceFile
+	 * @return the snapshot file.
+	 */
+	public static File snapshotFileFor(File traceFile) {
+		return new File(traceFile.getPath() + SNAPSHOT_SUFFIX);
+	}
+
+	//
+	// PACKAGE METHODS
+	//
+	static int bitmapSize(int width, int height) {
+		return (int) (((long) width * height + 7) / 8);
+	}
+
+	static int snapshotSize(int width, int height, int maxAgents) {
+		return maxAgents * 8 + bitmapSize(width, height);
+	}
+
+	/**
+	 * Returns whether s is a LOCATION_FORMAT'd grid location, two
+	 * non-negative integers separated by a comma, without allocating.
+	 */
+	static boolean isGridLocation(String s) {
+		if (s == null) {
+			return false;
+		}
+		int comma = s.indexOf(',');
+		if (comma < 1 || comma == s.length() - 1) {
+			return false;
+		}
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (i != comma && (c < '0' || c > '9')) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parses the integer in s between from (inclusive) and to (exclusive)
+	 * without allocating.
+	 */
+	static int parseCoordinate(String s, int from, int to) {
+		int value = 0;
+		for (int i = from; i < to; i++) {
+			char c = s.charAt(i);
+			if (c < '0' || c > '9') {
+				throw new IllegalArgumentException("Not a grid location: " + s);
+			}
+			value = value * 10 + (c - '0');
+		}
+		return value;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private int register(Agent a) {
+		Integer id = agentIds.get(a);
+		if (id == null) {
+			id = agentIds.size();
+			if (id >= maxAgents) {
+				throw new IllegalStateException("Trace is limited to "
+						+ maxAgents + " agents.");
+			}
+			agentIds.put(a, id);
+			agents[id] = a;
+		}
+		return id;
+	}
+
+	private void append(int id, byte code, Agent agent,
+			VacuumEnvironmentState state) {
+		append(id, code, state.getAgentLocation(agent), state);
+	}
+
+	private void append(int id, byte code, String location,
+			VacuumEnvironmentState state) {
+		if (!isGridLocation(location)) {
+			// called back from within the environment, which must not fail
+			// because of the trace
+			return;
+		}
+		int comma = location.indexOf(',');
+		if (recordCount - windowStart == WINDOW_RECORDS) {
+			mapWindow(recordCount);
+		}
+		window.putShort((short) id);
+		window.put(code);
+		window.put(stateCode(state.getLocationState(location)));
+		window.putInt(parseCoordinate(location, 0, comma));
+		window.putInt(parseCoordinate(location, comma + 1, location.length()));
+		recordCount++;
+		header.putLong(OFFSET_RECORD_COUNT, recordCount);
+
+		if (recordCount % snapshotInterval == 0) {
+			writeSnapshot(recordCount / snapshotInterval);
+		}
+	}
+
+	private void mapWindow(long firstRecord) {
+		try {
+			window = traceChannel.map(FileChannel.MapMode.READ_WRITE,
+					HEADER_SIZE + firstRecord * RECORD_SIZE,
+					(long) WINDOW_RECORDS * RECORD_SIZE);
+			windowStart = firstRecord;
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to extend trace file.", e);
+		}
+	}
+
+	private void writeSnapshot(long index) {
+		VacuumEnvironmentState state = (VacuumEnvironmentState) env
+				.getCurrentState();
+		snapshotBuffer.clear();
+		for (int id = 0; id < maxAgents; id++) {
+			String location = agents[id] == null ? null : state
+					.getAgentLocation(agents[id]);
+			if (!isGridLocation(location)) {
+				snapshotBuffer.putInt(-1);
+				snapshotBuffer.putInt(-1);
+			} else {
+				int comma = location.indexOf(',');
+				snapshotBuffer.putInt(parseCoordinate(location, 0, comma));
+				snapshotBuffer.putInt(parseCoordinate(location, comma + 1,
+						location.length()));
+			}
+		}
+		Arrays.fill(bitmap, (byte) 0);
+		for (Map.Entry<String, VacuumEnvironment.LocationState> e : state
+				.getLocationStates().entrySet()) {
+			if (VacuumEnvironment.LocationState.Dirty == e.getValue()) {
+				String location = e.getKey();
+				int comma = location.indexOf(',');
+				long bit = (long) parseCoordinate(location, 0, comma) * height
+						+ parseCoordinate(location, comma + 1,
+								location.length());
+				bitmap[(int) (bit >>> 3)] |= 1 << (bit & 7);
+			}
+		}
+		snapshotBuffer.put(bitmap);
+		snapshotBuffer.flip();
+		try {
+			long position = index * snapshotBuffer.capacity();
+			while (snapshotBuffer.hasRemaining()) {
+				position += snapshotChannel.write(snapshotBuffer, position);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to write snapshot.", e);
+		}
+	}
+
+	private static byte stateCode(VacuumEnvironment.LocationState s) {
+		if (VacuumEnvironment.LocationState.Dirty == s) {
+			return STATE_DIRTY;
+		} else if (VacuumEnvironment.LocationState.Clean == s) {
+			return STATE_CLEAN;
+		}
+		return STATE_UNKNOWN;
+	}
+}
@@ -0,0 +1,294 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a trace written by VacuumTraceRecorder and rebuilds the
+ * VacuumEnvironment as it was after any number of recorded actions. The
+ * closest preceding snapshot is read from the snapshot file and only the
+ * records after it are applied, so the cost of a replay is bounded by the
+ * snapshot interval rather than the length of the run.<br>
+ * <br>
+ * Agents in a rebuilt environment are stand-ins (see getAgent(int)); they
+ * only carry the id the recorder assigned. Records of dirt arriving (see
+ * isDirtArrival(long)) dirty their location without moving any agent.
+ */
+public class VacuumTraceReplayer implements Closeable {
+
+	private RandomAccessFile traceFile;
+	private FileChannel traceChannel;
+	private MappedByteBuffer window;
+	private long windowStart = -1;
+	private long windowEnd = -1;
+	//
+	private RandomAccessFile snapshotFile;
+	private FileChannel snapshotChannel;
+	private long snapshotCount;
+	//
+	private int width;
+	private int height;
+	private int snapshotInterval;
+	private int maxAgents;
+	private long recordCount;
+	private Agent[] agents;
+
+	/**
+	 * Opens a trace file and its snapshot file for replay
+	 *
+	 * @param file
+	 *            the trace file written by a VacuumTraceRecorder.
+	 * @throws IOException
+	 */
+	public VacuumTraceReplayer(File file) throws IOException {
+		traceFile = new RandomAccessFile(file, "r");
+		traceChannel = traceFile.getChannel();
+		ByteBuffer header = ByteBuffer
+				.allocate(VacuumTraceRecorder.HEADER_SIZE);
+		readFully(traceChannel, header, 0);
+		int version = header.getInt(VacuumTraceRecorder.OFFSET_VERSION);
+		if (header.getInt(VacuumTraceRecorder.OFFSET_MAGIC) != VacuumTraceRecorder.MAGIC
+				|| version < 1 || version > VacuumTraceRecorder.VERSION) {
+			throw new IOException("Not a vacuum trace file: " + file);
+		}
+		width = header.getInt(VacuumTraceRecorder.OFFSET_WIDTH);
+		height = header.getInt(VacuumTraceRecorder.OFFSET_HEIGHT);
+		snapshotInterval = header.getInt(VacuumTraceRecorder.OFFSET_INTERVAL);
+		maxAgents = header.getInt(VacuumTraceRecorder.OFFSET_MAX_AGENTS);
+		recordCount = header.getLong(VacuumTraceRecorder.OFFSET_RECORD_COUNT);
+
+		snapshotFile = new RandomAccessFile(
+				VacuumTraceRecorder.snapshotFileFor(file), "r");
+		snapshotChannel = snapshotFile.getChannel();
+		snapshotCount = snapshotChannel.size()
+				/ VacuumTraceRecorder.snapshotSize(width, height, maxAgents);
+		if (snapshotCount == 0) {
+			throw new IOException("Trace has no snapshots: " + file);
+		}
+
+		agents = new Agent[maxAgents];
+		for (int id = 0; id < maxAgents; id++) {
+			agents[id] = new TraceAgent(id);
+		}
+	}
+
+	public long getRecordCount() {
+		return recordCount;
+	}
+
+	public int getGridWidth() {
+		return width;
+	}
+
+	public int getGridHeight() {
+		return height;
+	}
+
+	public int getSnapshotInterval() {
+		return snapshotInterval;
+	}
+
+	/**
+	 * Returns the stand-in agent used for an agent id in rebuilt environments
+	 *
+	 * @param id
+	 * @return the stand-in agent.
+	 */
+	public Agent getAgent(int id) {
+		return agents[id];
+	}
+
+	/**
+	 * Returns the id of the agent that produced record i, or
+	 * VacuumTraceRecorder.NO_AGENT if the record is of dirt arriving
+	 *
+	 * @param i
+	 * @return the agent id.
+	 */
+	public int getAgentId(long i) {
+		return record(i).getShort(offset(i));
+	}
+
+	/**
+	 * Returns whether record i is of dirt arriving at its location rather
+	 * than of an agent
+	 *
+	 * @param i
+	 * @return true if dirt arrived.
+	 */
+	public boolean isDirtArrival(long i) {
+		return VacuumTraceRecorder.CODE_DIRT_ARRIVED == record(i).get(
+				offset(i) + 2);
+	}
+
+	/**
+	 * Returns the action of record i, or null if the record marks an agent
+	 * being added, dirt arriving or an action the recorder did not know
+	 *
+	 * @param i
+	 * @return the recorded action.
+	 */
+	public Action getAction(long i) {
+		byte code = record(i).get(offset(i) + 2);
+		return code >= 0 && code < VacuumTraceRecorder.ACTIONS.length ? VacuumTraceRecorder.ACTIONS[code]
+				: null;
+	}
+
+	/**
+	 * Returns the LOCATION_FORMAT'd location of the agent after record i, or
+	 * the location dirt arrived at
+	 *
+	 * @param i
+	 * @return the agent location.
+	 */
+	public String getLocation(long i) {
+		MappedByteBuffer b = record(i);
+		int off = offset(i);
+		return String.format(VacuumEnvironment.LOCATION_FORMAT,
+				b.getInt(off + 4), b.getInt(off + 8));
+	}
+
+	/**
+	 * Returns the state of the agent's location after record i
+	 *
+	 * @param i
+	 * @return the location state, or null if it was not known.
+	 */
+	public VacuumEnvironment.LocationState getLocationState(long i) {
+		return locationState(record(i).get(offset(i) + 3));
+	}
+
+	/**
+	 * Rebuilds the environment as it was after the first step records were
+	 * applied (step 0 is the state when recording started).
+	 *
+	 * @param step
+	 *            the number of records to apply.
+	 * @return a new environment holding the replayed state.
+	 * @throws IOException
+	 */
+	public VacuumEnvironment replay(long step) throws IOException {
+		if (step < 0 || step > recordCount) {
+			throw new IllegalArgumentException("Step " + step
+					+ " is outside the trace (0.." + recordCount + ").");
+		}
+		long snapshot = Math.min(step / snapshotInterval, snapshotCount - 1);
+		ByteBuffer block = ByteBuffer.allocate(VacuumTraceRecorder
+				.snapshotSize(width, height, maxAgents));
+		readFully(snapshotChannel, block, snapshot * block.capacity());
+
+		int[] agentXs = new int[maxAgents];
+		int[] agentYs = new int[maxAgents];
+		for (int id = 0; id < maxAgents; id++) {
+			agentXs[id] = block.getInt();
+			agentYs[id] = block.getInt();
+		}
+		Boolean[][] grid = new Boolean[width][height];
+		long bit = 0;
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++, bit++) {
+				grid[x][y] = (block.get(block.position() + (int) (bit >>> 3)) & (1 << (bit & 7))) != 0;
+			}
+		}
+		VacuumEnvironment env = new VacuumEnvironment(grid);
+		for (int id = 0; id < maxAgents; id++) {
+			if (agentXs[id] >= 0) {
+				env.addAgent(agents[id], agentXs[id], agentYs[id]);
+			}
+		}
+
+		for (long i = snapshot * snapshotInterval; i < step; i++) {
+			MappedByteBuffer b = record(i);
+			int off = offset(i);
+			int x = b.getInt(off + 4);
+			int y = b.getInt(off + 8);
+			if (VacuumTraceRecorder.CODE_DIRT_ARRIVED != b.get(off + 2)) {
+				// addAgent only moves an agent that is already present
+				env.addAgent(agents[b.getShort(off)], x, y);
+			}
+			VacuumEnvironment.LocationState s = locationState(b.get(off + 3));
+			if (s != null) {
+				env.setLocationState(x, y, s);
+			}
+		}
+		return env;
+	}
+
+	@Override
+	public void close() throws IOException {
+		traceChannel.close();
+		traceFile.close();
+		snapshotChannel.close();
+		snapshotFile.close();
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private MappedByteBuffer record(long i) {
+		if (i < 0 || i >= recordCount) {
+			throw new IndexOutOfBoundsException("Record " + i
+					+ " is outside the trace.");
+		}
+		if (i < windowStart || i >= windowEnd) {
+			long first = i - i % VacuumTraceRecorder.WINDOW_RECORDS;
+			long count = Math.min(VacuumTraceRecorder.WINDOW_RECORDS,
+					recordCount - first);
+			try {
+				window = traceChannel.map(FileChannel.MapMode.READ_ONLY,
+						VacuumTraceRecorder.HEADER_SIZE + first
+								* VacuumTraceRecorder.RECORD_SIZE, count
+								* VacuumTraceRecorder.RECORD_SIZE);
+			} catch (IOException e) {
+				throw new IllegalStateException("Unable to map trace file.", e);
+			}
+			windowStart = first;
+			windowEnd = first + count;
+		}
+		return window;
+	}
+
+	private int offset(long i) {
+		return (int) (i - windowStart) * VacuumTraceRecorder.RECORD_SIZE;
+	}
+
+	private static VacuumEnvironment.LocationState locationState(byte code) {
+		if (VacuumTraceRecorder.STATE_DIRTY == code) {
+			return VacuumEnvironment.LocationState.Dirty;
+		} else if (VacuumTraceRecorder.STATE_CLEAN == code) {
+			return VacuumEnvironment.LocationState.Clean;
+		}
+		return null;
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer b,
+			long position) throws IOException {
+		while (b.hasRemaining()) {
+			int n = channel.read(b, position);
+			if (n < 0) {
+				throw new IOException("Unexpected end of trace.");
+			}
+			position += n;
+		}
+		b.flip();
+	}
+
+	/**
+	 * Stand-in for an agent that appears in a trace.
+	 */
+	private static class TraceAgent extends AbstractAgent {
+		private int id;
+
+		TraceAgent(int id) {
+			this.id = id;
+		}
+
+		@Override
+		public String toString() {
+			return "Agent" + id;
+		}
+	}
+}
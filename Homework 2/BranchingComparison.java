@@ -0,0 +1,271 @@
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Compares branching heuristics of ClauseLearningDPLL on WumpusKnowledgeBase
+ * instances: the knowledge base of DPLLComparison's walk through the cave of
+ * figure 7.2 after several time steps. At every time step each heuristic
+ * gets a new solver holding the clauses of the knowledge base, which is
+ * asked for every room whether the room is OK, whether there is no wumpus in
+ * it and whether the agent is in it, one assumption solve per query, keeping
+ * what it learns from one query to the next. The time, decisions and
+ * conflicts taken are reported per heuristic, and the answers are checked to
+ * be the same for all of them. All heuristics are run once on the first time
+ * step before measuring, so that the times do not include JIT compilation.
+ * <br>
+ * <br>
+ * A configuration is named after its heuristic (see newHeuristic), followed
+ * by the restart schedule after a slash (see newRestartSchedule), Luby
+ * restarts if there is none; the number of restarts is reported as well.
+ * The Wumpus queries take few conflicts, so the configurations are also run
+ * on random 3-SAT problems of SAT_VARIABLES variables at the ratio of
+ * clauses to variables where they are hardest, on which restarts happen and
+ * the order they branch in after one matters.<br>
+ * <br>
+ * Usage: java BranchingComparison [t ...]<br>
+ * where the t are the time steps to compare at, by default 0, 3, 6 and 10.
+ */
+public class BranchingComparison {
+	public static final String ORDER = "order";
+	public static final String VSIDS = "vsids";
+	public static final String MOMS  = "moms";
+	public static final String JW    = "jw";
+	// appended to a name for the heuristic with phase saving
+	public static final String PHASE = "+phase";
+	// appended to a name (after +phase) for random tie-breaking
+	public static final String RANDOM = "+random";
+	// restart schedules, after a slash
+	public static final String LUBY       = "luby";
+	public static final String GEOMETRIC  = "geometric";
+	public static final String NO_RESTART = "none";
+	//
+	private static final int  CAVE = 4;
+	// the random tie-breaking and problems are seeded, so that runs can be
+	// compared
+	private static final long SEED = 1;
+	//
+	public static final int    SAT_VARIABLES = 150;
+	public static final int    SAT_PROBLEMS  = 20;
+	public static final double SAT_RATIO     = 4.26;
+
+	/**
+	 * Returns a new heuristic by name: order, vsids, moms or jw, followed by
+	 * +phase for phase saving and then +random for random tie-breaking.
+	 */
+	public static BranchingHeuristic newHeuristic(String name) {
+		boolean randomTies = name.endsWith(RANDOM);
+		String heuristic = randomTies ? name.substring(0, name.length() - RANDOM.length()) : name;
+		boolean phaseSaving = heuristic.endsWith(PHASE);
+		if (phaseSaving) {
+			heuristic = heuristic.substring(0, heuristic.length() - PHASE.length());
+		}
+		ScoredBranchingHeuristic result;
+		if (ORDER.equals(heuristic)) {
+			result = new InputOrderHeuristic(phaseSaving);
+		} else if (VSIDS.equals(heuristic)) {
+			result = new VSIDSHeuristic(VSIDSHeuristic.DEFAULT_DECAY, phaseSaving);
+		} else if (MOMS.equals(heuristic)) {
+			result = new MOMSHeuristic(MOMSHeuristic.DEFAULT_K, phaseSaving);
+		} else if (JW.equals(heuristic)) {
+			result = new JeroslowWangHeuristic(phaseSaving);
+		} else {
+			throw new IllegalArgumentException("Unknown branching heuristic: " + name);
+		}
+		if (randomTies) {
+			result.setRandomTieBreaking(new Random(SEED));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a new restart schedule by name: luby, geometric, or null for
+	 * none.
+	 */
+	public static RestartSchedule newRestartSchedule(String name) {
+		if (LUBY.equals(name)) {
+			return new LubyRestartSchedule();
+		} else if (GEOMETRIC.equals(name)) {
+			return new GeometricRestartSchedule();
+		} else if (NO_RESTART.equals(name)) {
+			return null;
+		}
+		throw new IllegalArgumentException("Unknown restart schedule: " + name);
+	}
+
+	/**
+	 * Returns a new solver for a configuration: a heuristic name, optionally
+	 * followed by a slash and a restart schedule name.
+	 */
+	public static ClauseLearningDPLL newSolver(String configuration) {
+		int slash = configuration.indexOf('/');
+		String heuristic = slash < 0 ? configuration : configuration.substring(0, slash);
+		String restarts = slash < 0 ? LUBY : configuration.substring(slash + 1);
+		ClauseLearningDPLL solver = new ClauseLearningDPLL(newHeuristic(heuristic));
+		solver.setRestartSchedule(newRestartSchedule(restarts));
+		return solver;
+	}
+
+	public static void main(String[] args) {
+		List<Integer> steps = new ArrayList<Integer>();
+		for (String arg : args) {
+			steps.add(Integer.parseInt(arg));
+		}
+		if (steps.isEmpty()) {
+			steps.add(0);
+			steps.add(3);
+			steps.add(6);
+			steps.add(10);
+		}
+		String[] names = { ORDER, ORDER + PHASE, ORDER + PHASE + RANDOM,
+				ORDER + PHASE + RANDOM + "/" + GEOMETRIC,
+				ORDER + PHASE + RANDOM + "/" + NO_RESTART, VSIDS,
+				VSIDS + PHASE, VSIDS + PHASE + RANDOM, MOMS, MOMS + PHASE, JW,
+				JW + PHASE };
+		boolean agree = true;
+		long[] stats = new long[4];
+
+		WumpusKnowledgeBase warmUp = tellWalk(steps.get(0));
+		for (String name : names) {
+			ask(name, warmUp, steps.get(0), stats);
+		}
+		for (int t : steps) {
+			WumpusKnowledgeBase kb = tellWalk(t);
+			System.out.printf("t=%d: %d symbols, %d clauses%n", t, kb
+					.getSymbols().size(), kb.asCNF().size());
+			System.out.printf("  %-32s %10s %10s %10s %10s%n", "configuration",
+					"ms", "decisions", "conflicts", "restarts");
+			String first = null;
+			for (String name : names) {
+				String answers = ask(name, kb, t, stats);
+				System.out.printf("  %-32s %10.1f %10d %10d %10d", name,
+						stats[0] / 1e6, stats[1], stats[2], stats[3]);
+				if (first == null) {
+					first = answers;
+				} else if (!first.equals(answers)) {
+					agree = false;
+					System.out.print(" (answers differ)");
+				}
+				System.out.println();
+			}
+		}
+		agree &= compareRandom3Sat(names);
+		System.out.println(agree ? "All answers agree." : "ANSWERS DIFFER.");
+	}
+
+	// Solves the same random 3-SAT problems with every configuration,
+	// printing the totals taken; returns whether they all agree.
+	private static boolean compareRandom3Sat(String[] names) {
+		List<List<PropositionSymbol>> symbolLists = new ArrayList<List<PropositionSymbol>>();
+		List<Set<Clause>> problems = new ArrayList<Set<Clause>>();
+		Random random = new Random(SEED);
+		for (int i = 0; i < SAT_PROBLEMS; i++) {
+			List<PropositionSymbol> symbols = new ArrayList<PropositionSymbol>();
+			for (int v = 0; v < SAT_VARIABLES; v++) {
+				symbols.add(new PropositionSymbol("X" + v));
+			}
+			Set<Clause> clauses = new LinkedHashSet<Clause>();
+			while (clauses.size() < (int) (SAT_RATIO * SAT_VARIABLES)) {
+				clauses.add(new Clause(
+						new Literal(symbols.get(random.nextInt(SAT_VARIABLES)), random.nextBoolean()),
+						new Literal(symbols.get(random.nextInt(SAT_VARIABLES)), random.nextBoolean()),
+						new Literal(symbols.get(random.nextInt(SAT_VARIABLES)), random.nextBoolean())));
+			}
+			symbolLists.add(symbols);
+			problems.add(clauses);
+		}
+
+		System.out.printf("random 3-SAT: %d problems, %d variables, %d clauses%n",
+				SAT_PROBLEMS, SAT_VARIABLES, (int) (SAT_RATIO * SAT_VARIABLES));
+		System.out.printf("  %-32s %10s %10s %10s %10s%n", "configuration",
+				"ms", "decisions", "conflicts", "restarts");
+		boolean agree = true;
+		String first = null;
+		for (String name : names) {
+			long[] stats = new long[4];
+			StringBuilder answers = new StringBuilder();
+			long start = System.nanoTime();
+			for (int i = 0; i < SAT_PROBLEMS; i++) {
+				ClauseLearningDPLL solver = newSolver(name);
+				answers.append(solver.dpll(problems.get(i), symbolLists.get(i),
+						new Model()) ? 'S' : 'U');
+				stats[1] += solver.getMetrics().getInt("decisions");
+				stats[2] += solver.getMetrics().getInt("conflicts");
+				stats[3] += solver.getMetrics().getInt("restarts");
+			}
+			stats[0] = System.nanoTime() - start;
+			System.out.printf("  %-32s %10.1f %10d %10d %10d", name,
+					stats[0] / 1e6, stats[1], stats[2], stats[3]);
+			if (first == null) {
+				first = answers.toString();
+			} else if (!first.equals(answers.toString())) {
+				agree = false;
+				System.out.print(" (answers differ)");
+			}
+			System.out.println();
+		}
+		return agree;
+	}
+
+	// Asks the queries at time t with a new solver of the named
+	// configuration, returning the answers and putting the time, decisions,
+	// conflicts and restarts taken into stats.
+	private static String ask(String name, WumpusKnowledgeBase kb, int t, long[] stats) {
+		ClauseLearningDPLL solver  = newSolver(name);
+		SymbolTable        symbols = solver.getSymbolTable();
+		StringBuilder      answers = new StringBuilder();
+		for (PropositionSymbol p : kb.getSymbols()) {
+			symbols.intern(p);
+		}
+		stats[1] = 0;
+		stats[2] = 0;
+		stats[3] = 0;
+		long start = System.nanoTime();
+		for (Clause c : kb.asCNF()) {
+			solver.addClause(c);
+		}
+		for (int x = 1; x <= CAVE; x++) {
+			for (int y = 1; y <= CAVE; y++) {
+				PropositionSymbol[] queries = {
+						kb.newSymbol(WumpusKnowledgeBase.OK_TO_MOVE_INTO, t, x, y),
+						kb.newSymbol(WumpusKnowledgeBase.WUMPUS, x, y),
+						kb.newSymbol(WumpusKnowledgeBase.LOCATION, t, x, y) };
+				for (PropositionSymbol query : queries) {
+					// entailed true, entailed false or neither
+					int lit = SymbolTable.literal(symbols.intern(query), true);
+					char answer = '?';
+					if (!solver.solve(SymbolTable.negate(lit))) {
+						answer = 'T';
+					} else if (!solver.solve(lit)) {
+						answer = 'F';
+					}
+					stats[1] += solver.getMetrics().getInt("decisions");
+					stats[2] += solver.getMetrics().getInt("conflicts");
+					stats[3] += solver.getMetrics().getInt("restarts");
+					answers.append(answer);
+				}
+			}
+		}
+		stats[0] = System.nanoTime() - start;
+		return answers.toString();
+	}
+
+	// The knowledge base of DPLLComparison's walk at time t.
+	private static WumpusKnowledgeBase tellWalk(int t) {
+		WumpusKnowledgeBase kb = new WumpusKnowledgeBase(new IncrementalDPLL(), CAVE);
+		AgentPosition position = new AgentPosition(1, 1,
+				AgentPosition.Orientation.FACING_EAST);
+		for (int step = 0; step <= t && step <= DPLLComparison.WALK.length(); step++) {
+			kb.makePerceptSentence(DPLLComparison.perceive(position), step);
+			kb.tellTemporalPhysicsSentences(step);
+			if (step < t && step < DPLLComparison.WALK.length()) {
+				Action action = DPLLComparison.act(DPLLComparison.WALK.charAt(step), position);
+				kb.makeActionSentence(action, step);
+				position = DPLLComparison.move(action, position);
+			}
+		}
+		return kb;
+	}
+}
@@ -0,0 +1,64 @@
+/**
+ * The variable and value ordering of a DPLL solver, AIMA3e p.g. 261: which
+ * unassigned variable to branch on next, and which of its values to try
+ * first. The solver keeps the heuristic informed of the problem and the
+ * search through the methods below, and asks it for every decision.<br>
+ * <br>
+ * Variables and literals are the ints of SymbolTable.
+ */
+public interface BranchingHeuristic {
+
+	/**
+	 * Forgets everything, for a new problem with no variables.
+	 */
+	void reset();
+
+	/**
+	 * The problem now has n variables, 0 to n-1, all of them unassigned.
+	 */
+	void addVariables(int n);
+
+	/**
+	 * A clause of two or more literals has been added to the problem.
+	 *
+	 * @param clause
+	 *            the literals of the clause.
+	 * @param learned
+	 *            whether the clause was learned from a conflict rather than
+	 *            given.
+	 */
+	void clauseAdded(int[] clause, boolean learned);
+
+	/**
+	 * A variable took part in (was resolved on or appears in the clause
+	 * learned from) the conflict being analyzed.
+	 */
+	void conflictVariable(int var);
+
+	/**
+	 * The analysis of a conflict is done.
+	 */
+	void conflictAnalyzed();
+
+	/**
+	 * The solver has restarted: all decisions have been undone, and the
+	 * search starts again from the assignments at level 0.
+	 */
+	void restarted();
+
+	/**
+	 * A literal has been made true.
+	 */
+	void assigned(int lit);
+
+	/**
+	 * The variable of a literal that was true is unassigned again.
+	 */
+	void unassigned(int lit);
+
+	/**
+	 * Returns the literal to make true as the next decision, or -1 if all
+	 * variables are assigned.
+	 */
+	int selectLiteral();
+}
@@ -0,0 +1,161 @@
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A compact store of clauses over the int encoded literals of a SymbolTable.
+ * The literals of all clauses are kept one after the other in a single int
+ * array, each clause sorted and without duplicates, with a second array
+ * holding where each clause starts; a clause of k literals takes 4*(k+1)
+ * bytes, where a Clause object with its sets of literals and symbols takes
+ * several hundred. Clauses are numbered in the order they are added.<br>
+ * <br>
+ * Clause and Literal objects are converted on the way in and out, so callers
+ * working with those can keep doing so.
+ */
+public class ClauseDatabase {
+
+	private SymbolTable symbols;
+	// the literals of clause c are literals[starts[c]] to
+	// literals[starts[c+1]-1]
+	private int[]       literals     = new int[64];
+	private int[]       starts       = new int[17];
+	private int         literalCount = 0;
+	private int         clauseCount  = 0;
+
+	public ClauseDatabase() {
+		this(new SymbolTable());
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param symbols
+	 *            the symbol table the literals are encoded with, which may be
+	 *            shared with other databases.
+	 */
+	public ClauseDatabase(SymbolTable symbols) {
+		this.symbols = symbols;
+	}
+
+	public SymbolTable getSymbolTable() {
+		return symbols;
+	}
+
+	/**
+	 * Adds a clause of int encoded literals, which need not be sorted and may
+	 * repeat.
+	 *
+	 * @return the number of the clause, or -1 if the clause is a tautology,
+	 *         which is not added.
+	 */
+	public int add(int... clause) {
+		int[] sorted = clause.clone();
+		Arrays.sort(sorted);
+		int length = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			if (length > 0 && sorted[length - 1] == sorted[i]) {
+				continue;
+			}
+			// P and ~P are adjacent once sorted
+			if (length > 0 && sorted[length - 1] == SymbolTable.negate(sorted[i])) {
+				return -1;
+			}
+			sorted[length++] = sorted[i];
+		}
+
+		if (literalCount + length > literals.length) {
+			literals = Arrays.copyOf(literals,
+					Math.max(2 * literals.length, literalCount + length));
+		}
+		if (clauseCount + 2 > starts.length) {
+			starts = Arrays.copyOf(starts, 2 * starts.length);
+		}
+		System.arraycopy(sorted, 0, literals, literalCount, length);
+		literalCount += length;
+		starts[++clauseCount] = literalCount;
+		return clauseCount - 1;
+	}
+
+	/**
+	 * Adds a Clause, interning its symbols.
+	 *
+	 * @return the number of the clause, or -1 if the clause is a tautology,
+	 *         which is not added.
+	 */
+	public int add(Clause c) {
+		if (c.isTautology()) {
+			return -1;
+		}
+		int[] clause = new int[c.getNumberLiterals()];
+		int i = 0;
+		for (Literal l : c.getLiterals()) {
+			clause[i++] = symbols.encode(l);
+		}
+		return add(clause);
+	}
+
+	public void addAll(Collection<Clause> clauses) {
+		for (Clause c : clauses) {
+			add(c);
+		}
+	}
+
+	/**
+	 * Returns the number of clauses.
+	 */
+	public int size() {
+		return clauseCount;
+	}
+
+	/**
+	 * Returns the number of literals of clause c.
+	 */
+	public int length(int c) {
+		return starts[c + 1] - starts[c];
+	}
+
+	/**
+	 * Returns the k-th literal of clause c.
+	 */
+	public int get(int c, int k) {
+		return literals[starts[c] + k];
+	}
+
+	/**
+	 * Returns a copy of the literals of clause c.
+	 */
+	public int[] getLiterals(int c) {
+		return Arrays.copyOfRange(literals, starts[c], starts[c + 1]);
+	}
+
+	/**
+	 * Returns the number of literals of all clauses together.
+	 */
+	public int getLiteralCount() {
+		return literalCount;
+	}
+
+	/**
+	 * Returns clause c as a Clause.
+	 */
+	public Clause toClause(int c) {
+		Literal[] clause = new Literal[length(c)];
+		for (int k = 0; k < clause.length; k++) {
+			clause[k] = symbols.decode(get(c, k));
+		}
+		return new Clause(clause);
+	}
+
+	/**
+	 * Returns all clauses as Clauses, in the order they were added.
+	 */
+	public Set<Clause> toClauses() {
+		Set<Clause> clauses = new LinkedHashSet<Clause>();
+		for (int c = 0; c < clauseCount; c++) {
+			clauses.add(toClause(c));
+		}
+		return clauses;
+	}
+}
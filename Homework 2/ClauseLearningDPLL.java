@@ -0,0 +1,858 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+
+/**
+ * A conflict-driven clause learning (CDCL) implementation of DPLL, i.e. the
+ * "intelligent backtracking" of AIMA3e p.g. 262. Unit propagation uses two
+ * watched literals, as in WatchedLiteralDPLL, and records for every assignment
+ * its decision level and the clause that implied it, which together form the
+ * implication graph. On a conflict:
+ * <ul>
+ * <li>the implication graph is cut at the first unique implication point
+ * (first UIP) of the current level, giving a learned clause that is false
+ * under the current assignment and has exactly one literal of the current
+ * level;</li>
+ * <li>literals of the learned clause that are implied by the others (through
+ * the implication graph) are removed;</li>
+ * <li>the search backjumps to the second highest level in the learned clause,
+ * undoing all levels in between, which the learned clause then makes unit.
+ * </li>
+ * </ul>
+ * Learned clauses are kept in the clause database, so the same conflict is
+ * never run into again. To keep propagation fast the database is reduced
+ * whenever the number of learned clauses passes a limit: about half of them
+ * are deleted, those spanning the most decision levels first, keeping
+ * clauses spanning at most two levels and clauses that are the reason for a
+ * current assignment. The limit grows after every reduction.<br>
+ * <br>
+ * The variable and value to branch on are chosen by a BranchingHeuristic,
+ * by default InputOrderHeuristic with phase saving and random tie-breaking:
+ * it branches on the variables in a random order, drawn again on every
+ * restart, and gives each the value it last had, true at first. Without
+ * them a restart would only rebuild the trail it undid.<br>
+ * <br>
+ * The search restarts according to a RestartSchedule, by default the Luby
+ * sequence with a unit of 100 conflicts: all decisions are undone and the
+ * heuristic chooses afresh. Nothing else is lost, as the learned clauses are
+ * kept, and so are the phases of a heuristic with phase saving.<br>
+ * <br>
+ * Besides the DPLL methods, which solve every problem from scratch, the
+ * solver can be used incrementally: clauses are added one at a time with
+ * addClause and solve is called under assumptions, literals that are taken as
+ * the first decisions. As the assumptions are decisions, not clauses,
+ * everything learned while solving follows from the clauses alone, so the
+ * learned clauses are kept for the next call to solve, whatever its
+ * assumptions, and for as long as clauses are only added.<br>
+ * <br>
+ * The search gives up, throwing a CancellationException rather than giving
+ * an answer, when the thread running it is a canceled CancelableThread.
+ */
+public class ClauseLearningDPLL implements DPLL {
+
+	// Values of a variable
+	private static final byte UNASSIGNED = 0;
+	private static final byte TRUE       = 1;
+	private static final byte FALSE      = -1;
+	// reason of decisions and of assignments at level 0 without a clause
+	private static final int  NO_REASON  = -1;
+	//
+	// Variables and literals are numbered as in SymbolTable.
+	private SymbolTable             vars          = new SymbolTable();
+	// the clauses of two or more literals, given and learned; the watched
+	// literals are always at positions 0 and 1, and a clause that is the
+	// reason for an assignment has the implied literal at position 0.
+	// Deleted clauses are null.
+	private List<int[]>             clauses       = new ArrayList<int[]>();
+	// number of decision levels each learned clause spans, by clause index;
+	// 0 for given clauses
+	private int[]                   spans         = new int[16];
+	private int                     givenClauses  = 0;
+	private int                     liveLearned   = 0;
+	// learned clauses kept on top of a third of the given clauses
+	private int                     maxLearned    = 100;
+	private int[][]                 watches       = new int[0][];
+	private int[]                   watchCounts   = new int[0];
+	// false once the given clauses are known to be unsatisfiable
+	private boolean                 consistent    = true;
+	// the assignment and implication graph
+	private int                     varCount      = 0;
+	private byte[]                  values        = new byte[0];
+	private int[]                   levels        = new int[0];
+	private int[]                   reasons       = new int[0];
+	private int[]                   trail         = new int[0];
+	private int                     trailSize     = 0;
+	private int                     qhead         = 0;
+	// trail index of the decision of each level
+	private int[]                   levelStart    = new int[1];
+	private int                     level         = 0;
+	private BranchingHeuristic      heuristic;
+	// null for no restarts
+	private RestartSchedule         restarts      = new LubyRestartSchedule();
+	// the values of the last model found
+	private byte[]                  modelValues   = new byte[0];
+	// scratch space of conflict analysis
+	private boolean[]               seen          = new boolean[0];
+	private int[]                   levelStamps   = new int[1];
+	private int                     stamp         = 0;
+	//
+	private int     decisions         = 0;
+	private int     propagations      = 0;
+	private int     conflicts         = 0;
+	private int     levelsJumped      = 0;
+	private int     learnedClauses    = 0;
+	private int     minimizedLiterals = 0;
+	private int     deletedClauses    = 0;
+	private int     restartCount      = 0;
+	private Metrics metrics           = new Metrics();
+
+	public ClauseLearningDPLL() {
+		this(newDefaultHeuristic());
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param heuristic
+	 *            the heuristic choosing the variable and value to branch on,
+	 *            which must not be used by another solver.
+	 */
+	public ClauseLearningDPLL(BranchingHeuristic heuristic) {
+		this.heuristic = heuristic;
+	}
+
+	//
+	// START-DPLL
+	@Override
+	public boolean dpllSatisfiable(Sentence s) {
+		// clauses <- the set of clauses in the CNF representation of s
+		Set<Clause> clauses = ConvertToConjunctionOfClauses.convert(s)
+				.getClauses();
+		// symbols <- a list of the proposition symbols in s
+		List<PropositionSymbol> symbols = new ArrayList<PropositionSymbol>(
+				SymbolCollector.getSymbolsFrom(s));
+
+		// return DPLL(clauses, symbols, {})
+		return dpll(clauses, symbols, new Model());
+	}
+
+	/**
+	 * DPLL(clauses, symbols, model)<br>
+	 *
+	 * @param clauses
+	 *            the set of clauses.
+	 * @param symbols
+	 *            a list of unassigned symbols, the order in which they are
+	 *            branched on.
+	 * @param model
+	 *            contains the values for assigned symbols. If the clauses are
+	 *            satisfiable it is extended with the values found for the
+	 *            other symbols.
+	 * @return true if the model is satisfiable under current assignments, false
+	 *         otherwise.
+	 */
+	@Override
+	public boolean dpll(Set<Clause> clauses, List<PropositionSymbol> symbols,
+			Model model) {
+		SymbolTable table = new SymbolTable();
+		for (PropositionSymbol p : symbols) {
+			table.intern(p);
+		}
+		ClauseDatabase db = new ClauseDatabase(table);
+		db.addAll(clauses);
+		return dpll(db, model);
+	}
+
+	/**
+	 * DPLL(clauses, symbols, model) over the clauses of a ClauseDatabase,
+	 * whose SymbolTable gives the order of the symbols to the heuristic.
+	 *
+	 * @param clauses
+	 *            the clauses.
+	 * @param model
+	 *            contains the values for assigned symbols. If the clauses are
+	 *            satisfiable it is extended with the values found for the
+	 *            other symbols.
+	 * @return true if the model is satisfiable under current assignments, false
+	 *         otherwise.
+	 */
+	public boolean dpll(ClauseDatabase clauses, Model model) {
+		reset(clauses.getSymbolTable());
+		for (int c = 0; c < clauses.size(); c++) {
+			addClause(clauses.getLiterals(c));
+		}
+		// the values of the model are taken as assumptions
+		List<Integer> assumptions = new ArrayList<Integer>();
+		for (int v = 0; v < vars.size(); v++) {
+			Boolean value = model.getValue(vars.getSymbol(v));
+			if (value != null) {
+				assumptions.add(SymbolTable.literal(v, value));
+			}
+		}
+		int[] literals = new int[assumptions.size()];
+		for (int i = 0; i < literals.length; i++) {
+			literals[i] = assumptions.get(i);
+		}
+
+		boolean result = solve(literals);
+		if (result) {
+			for (int v = 0; v < vars.size(); v++) {
+				if (modelValues[v] != UNASSIGNED && vars.getSymbol(v) != null) {
+					model.unionInPlace(vars.getSymbol(v), modelValues[v] == TRUE);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Determine if KB |= &alpha;, i.e. alpha is entailed by KB.
+	 *
+	 * @param kb
+	 *            a Knowledge Base in propositional logic.
+	 * @param alpha
+	 *            a propositional sentence.
+	 * @return true, if &alpha; is entailed by KB, false otherwise.
+	 */
+	@Override
+	public boolean isEntailed(KnowledgeBase kb, Sentence alpha) {
+		// AIMA3e p.g. 260: kb |= alpha, can be done by testing
+		// unsatisfiability of kb & ~alpha.
+		Set<Clause>             kbAndNotAlpha = new LinkedHashSet<Clause>();
+		Sentence                notQuery      = new ComplexSentence(Connective.NOT, alpha);
+		Set<PropositionSymbol>  symbols       = new LinkedHashSet<PropositionSymbol>();
+		List<PropositionSymbol> querySymbols  = new ArrayList<PropositionSymbol>(SymbolCollector.getSymbolsFrom(notQuery));
+
+		kbAndNotAlpha.addAll(kb.asCNF());
+		kbAndNotAlpha.addAll(ConvertToConjunctionOfClauses.convert(notQuery).getClauses());
+		symbols.addAll(querySymbols);
+		symbols.addAll(kb.getSymbols());
+
+		return !dpll(kbAndNotAlpha, new ArrayList<PropositionSymbol>(symbols), new Model());
+	}
+	// END-DPLL
+	//
+
+	/**
+	 * Returns the metrics of the last call to solve (or dpll): the number of
+	 * decisions, propagations and conflicts, the levels skipped by
+	 * backjumping, the restarts, the clauses learned and deleted, the literals
+	 * removed from learned clauses by minimization, the size of the problem
+	 * and the time taken.
+	 */
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Sets the schedule of restarts, or null for no restarts.
+	 */
+	public void setRestartSchedule(RestartSchedule restarts) {
+		this.restarts = restarts;
+	}
+
+	public RestartSchedule getRestartSchedule() {
+		return restarts;
+	}
+
+	/**
+	 * Removes all clauses, learned clauses included, and starts a new problem
+	 * over the given symbol table.
+	 */
+	public void reset(SymbolTable symbols) {
+		vars = symbols;
+		clauses = new ArrayList<int[]>();
+		givenClauses = 0;
+		liveLearned = 0;
+		maxLearned = 100;
+		consistent = true;
+		varCount = 0;
+		trailSize = 0;
+		qhead = 0;
+		level = 0;
+		heuristic.reset();
+		watchCounts = new int[0];
+		watches = new int[0][];
+		values = new byte[0];
+		ensureVariables(symbols.size());
+	}
+
+	/**
+	 * Returns the symbol table of the problem, to which symbols may be added
+	 * for use in new clauses.
+	 */
+	public SymbolTable getSymbolTable() {
+		return vars;
+	}
+
+	/**
+	 * Adds a Clause to the problem, interning its symbols.
+	 *
+	 * @return false if the clauses are now known to be unsatisfiable.
+	 */
+	public boolean addClause(Clause c) {
+		if (c.isTautology()) {
+			return consistent;
+		}
+		int[] clause = new int[c.getNumberLiterals()];
+		int i = 0;
+		for (Literal l : c.getLiterals()) {
+			clause[i++] = vars.encode(l);
+		}
+		return addClause(clause);
+	}
+
+	/**
+	 * Adds a clause of int encoded literals (see SymbolTable) to the problem.
+	 * Clauses can be added between calls to solve.
+	 *
+	 * @return false if the clauses are now known to be unsatisfiable.
+	 */
+	public boolean addClause(int... clause) {
+		ensureVariables(vars.size());
+		if (!consistent) {
+			return false;
+		}
+		// simplify by the assignments at level 0, which are for good
+		int[] lits = new int[clause.length];
+		int length = 0;
+		for (int lit : clause) {
+			if (isTrue(lit)) {
+				return true;
+			}
+			if (isFalse(lit)) {
+				continue;
+			}
+			boolean repeated = false;
+			for (int k = 0; k < length; k++) {
+				if (lits[k] == lit) {
+					repeated = true;
+				} else if (lits[k] == SymbolTable.negate(lit)) {
+					return true;
+				}
+			}
+			if (!repeated) {
+				lits[length++] = lit;
+			}
+		}
+
+		if (length == 0) {
+			consistent = false;
+		} else if (length == 1) {
+			assign(lits[0], NO_REASON);
+		} else {
+			int c = clauses.size();
+			clauses.add(Arrays.copyOf(lits, length));
+			if (c == spans.length) {
+				spans = Arrays.copyOf(spans, 2 * spans.length);
+			}
+			spans[c] = 0;
+			givenClauses++;
+			heuristic.clauseAdded(clauses.get(c), false);
+			watch(lits[0], c);
+			watch(lits[1], c);
+		}
+		return consistent;
+	}
+
+	/**
+	 * Deletes the clauses, given and learned, that are true for good, i.e.
+	 * satisfied by the assignments at level 0, such as the clauses of a
+	 * retired selector variable (see IncrementalDPLL) once the selector is
+	 * false, so that they no longer take up space or watches. Clauses may be
+	 * renumbered. Call between calls to solve.
+	 */
+	public void removeSatisfied() {
+		// the reasons of assignments at level 0 are never looked at, and
+		// would point at the wrong clauses after renumbering
+		for (int i = 0; i < trailSize; i++) {
+			reasons[trail[i] >> 1] = NO_REASON;
+		}
+		int kept = 0;
+		for (int c = 0; c < clauses.size(); c++) {
+			int[] lits = clauses.get(c);
+			if (lits == null) {
+				continue;
+			}
+			boolean satisfied = false;
+			for (int k = 0; k < lits.length && !satisfied; k++) {
+				satisfied = isTrue(lits[k]) && levels[lits[k] >> 1] == 0;
+			}
+			if (satisfied) {
+				if (spans[c] == 0) {
+					givenClauses--;
+				} else {
+					liveLearned--;
+				}
+				continue;
+			}
+			clauses.set(kept, lits);
+			spans[kept] = spans[c];
+			kept++;
+		}
+		while (clauses.size() > kept) {
+			clauses.remove(clauses.size() - 1);
+		}
+		rebuildWatches();
+	}
+
+	/**
+	 * Solves the clauses added so far under the given assumptions.
+	 *
+	 * @param assumptions
+	 *            int encoded literals (see SymbolTable) assumed to be true.
+	 * @return true if the clauses and assumptions are satisfiable together,
+	 *         in which case getValue gives the model found.
+	 * @throws CancellationException
+	 *             if the thread running the search is a canceled
+	 *             CancelableThread.
+	 */
+	public boolean solve(int... assumptions) {
+		long start = System.nanoTime();
+		decisions = 0;
+		propagations = 0;
+		conflicts = 0;
+		levelsJumped = 0;
+		learnedClauses = 0;
+		minimizedLiterals = 0;
+		deletedClauses = 0;
+		restartCount = 0;
+		ensureVariables(vars.size());
+		// every assumption opens a level, even one that already holds
+		ensureLevels(varCount + assumptions.length);
+
+		boolean result;
+		try {
+			result = consistent && search(assumptions);
+			if (result) {
+				modelValues = Arrays.copyOf(values, varCount);
+			}
+		} finally {
+			undo(0);
+		}
+
+		metrics = new Metrics();
+		metrics.set("decisions", decisions);
+		metrics.set("propagations", propagations);
+		metrics.set("conflicts", conflicts);
+		metrics.set("levelsJumped", levelsJumped);
+		metrics.set("restarts", restartCount);
+		metrics.set("learnedClauses", learnedClauses);
+		metrics.set("minimizedLiterals", minimizedLiterals);
+		metrics.set("deletedClauses", deletedClauses);
+		metrics.set("liveLearnedClauses", liveLearned);
+		metrics.set("variables", varCount);
+		metrics.set("clauses", givenClauses);
+		metrics.set("timeNanos", System.nanoTime() - start);
+		return result;
+	}
+
+	/**
+	 * Returns the value of a variable in the model found by the last call to
+	 * solve that returned true, or null if the model leaves it open.
+	 */
+	public Boolean getValue(int var) {
+		if (var >= modelValues.length || modelValues[var] == UNASSIGNED) {
+			return null;
+		}
+		return modelValues[var] == TRUE;
+	}
+
+	//
+	// PRIVATE
+	//
+
+	private static BranchingHeuristic newDefaultHeuristic() {
+		InputOrderHeuristic heuristic = new InputOrderHeuristic(true);
+		heuristic.setRandomTieBreaking(new Random());
+		return heuristic;
+	}
+
+	// Grows the arrays indexed by variable or literal to n variables.
+	private void ensureVariables(int n) {
+		if (n <= varCount) {
+			return;
+		}
+		if (n > values.length) {
+			int capacity = Math.max(n, 2 * values.length);
+			values = Arrays.copyOf(values, capacity);
+			levels = Arrays.copyOf(levels, capacity);
+			reasons = Arrays.copyOf(reasons, capacity);
+			trail = Arrays.copyOf(trail, capacity);
+			levelStart = Arrays.copyOf(levelStart, capacity + 1);
+			seen = Arrays.copyOf(seen, capacity);
+			levelStamps = Arrays.copyOf(levelStamps, capacity + 1);
+			int oldLiterals = watches.length;
+			watches = Arrays.copyOf(watches, 2 * capacity);
+			watchCounts = Arrays.copyOf(watchCounts, 2 * capacity);
+			for (int l = oldLiterals; l < watches.length; l++) {
+				watches[l] = new int[4];
+			}
+		}
+		varCount = n;
+		heuristic.addVariables(n);
+	}
+
+	// Grows the arrays indexed by level to levels 0 to n.
+	private void ensureLevels(int n) {
+		if (n + 1 > levelStart.length) {
+			int capacity = Math.max(n + 1, 2 * levelStart.length);
+			levelStart = Arrays.copyOf(levelStart, capacity);
+			levelStamps = Arrays.copyOf(levelStamps, capacity);
+		}
+	}
+
+	private boolean search(int[] assumptions) {
+		List<Integer> learnedClause = new ArrayList<Integer>();
+		int conflictsLeft = -1;
+		if (restarts != null) {
+			restarts.reset();
+			conflictsLeft = Math.max(1, restarts.nextInterval());
+		}
+		while (true) {
+			int conflict = propagate();
+			if (conflict != NO_REASON) {
+				conflicts++;
+				if (level == 0) {
+					consistent = false;
+					return false;
+				}
+				int backjumpLevel = analyze(conflict, learnedClause);
+				levelsJumped += level - backjumpLevel - 1;
+				undo(backjumpLevel);
+				if (learnedClause.size() == 1) {
+					assign(learnedClause.get(0), NO_REASON);
+				} else {
+					int c = addLearned(learnedClause);
+					assign(clauses.get(c)[0], c);
+				}
+				if (conflictsLeft > 0) {
+					conflictsLeft--;
+				}
+				continue;
+			}
+
+			if (conflictsLeft == 0) {
+				restartCount++;
+				undo(0);
+				heuristic.restarted();
+				conflictsLeft = Math.max(1, restarts.nextInterval());
+				continue;
+			}
+
+			if (CancelableThread.currIsCanceled()) {
+				throw new CancellationException("Search canceled.");
+			}
+			if (liveLearned >= givenClauses / 3 + maxLearned) {
+				reduce();
+			}
+			int decision;
+			if (level < assumptions.length) {
+				// the assumption of this level is the decision, unless it
+				// already holds (the level is then left empty) or cannot
+				int assumption = assumptions[level];
+				if (isFalse(assumption)) {
+					return false;
+				}
+				decision = isTrue(assumption) ? -1 : assumption;
+			} else {
+				decision = heuristic.selectLiteral();
+				if (decision < 0) {
+					return true;
+				}
+				decisions++;
+			}
+			level++;
+			levelStart[level] = trailSize;
+			if (decision >= 0) {
+				assign(decision, NO_REASON);
+			}
+		}
+	}
+
+	// Propagates the assignments on the trail not yet propagated, returning
+	// the index of a clause that became false or NO_REASON.
+	private int propagate() {
+		int conflict = NO_REASON;
+		while (conflict == NO_REASON && qhead < trailSize) {
+			int falseLit = trail[qhead++] ^ 1;
+			int[] ws = watches[falseLit];
+			int count = watchCounts[falseLit];
+			int kept = 0;
+			int i = 0;
+			while (i < count) {
+				int c = ws[i++];
+				int[] lits = clauses.get(c);
+				// keep the false watched literal in position 1
+				if (lits[0] == falseLit) {
+					lits[0] = lits[1];
+					lits[1] = falseLit;
+				}
+				if (isTrue(lits[0])) {
+					ws[kept++] = c;
+					continue;
+				}
+				// look for a literal not false to watch instead
+				boolean moved = false;
+				for (int k = 2; k < lits.length; k++) {
+					if (!isFalse(lits[k])) {
+						lits[1] = lits[k];
+						lits[k] = falseLit;
+						watch(lits[1], c);
+						moved = true;
+						break;
+					}
+				}
+				if (moved) {
+					continue;
+				}
+				ws[kept++] = c;
+				if (isFalse(lits[0])) {
+					// conflict, keep the remaining watches
+					while (i < count) {
+						ws[kept++] = ws[i++];
+					}
+					conflict = c;
+				} else {
+					assign(lits[0], c);
+					propagations++;
+				}
+			}
+			watchCounts[falseLit] = kept;
+		}
+		return conflict;
+	}
+
+	// Walks the implication graph back from the conflict clause to the first
+	// UIP of the current level. Puts the learned clause, minimized and with
+	// the asserted literal first and a literal of the backjump level second,
+	// into learnedClause and returns the backjump level.
+	private int analyze(int conflict, List<Integer> learnedClause) {
+		learnedClause.clear();
+		learnedClause.add(-1); // the UIP, filled in below
+		int pending = 0;
+		int p = -1;
+		int index = trailSize - 1;
+		int[] lits = clauses.get(conflict);
+		do {
+			// for a reason clause skip the implied literal at position 0
+			for (int k = (p == -1 ? 0 : 1); k < lits.length; k++) {
+				int q = lits[k];
+				int v = q >> 1;
+				if (!seen[v] && levels[v] > 0) {
+					seen[v] = true;
+					heuristic.conflictVariable(v);
+					if (levels[v] == level) {
+						pending++;
+					} else {
+						learnedClause.add(q);
+					}
+				}
+			}
+			// the next literal of the current level on the path
+			while (!seen[trail[index] >> 1]) {
+				index--;
+			}
+			p = trail[index--];
+			seen[p >> 1] = false;
+			pending--;
+			if (pending > 0) {
+				lits = clauses.get(reasons[p >> 1]);
+			}
+		} while (pending > 0);
+		learnedClause.set(0, p ^ 1);
+
+		minimize(learnedClause);
+		heuristic.conflictAnalyzed();
+
+		// the backjump level is the highest level of the other literals
+		int backjumpLevel = 0;
+		int second = 1;
+		for (int k = 1; k < learnedClause.size(); k++) {
+			int l = levels[learnedClause.get(k) >> 1];
+			if (l > backjumpLevel) {
+				backjumpLevel = l;
+				second = k;
+			}
+		}
+		if (learnedClause.size() > 1) {
+			int q = learnedClause.get(second);
+			learnedClause.set(second, learnedClause.get(1));
+			learnedClause.set(1, q);
+		}
+		return backjumpLevel;
+	}
+
+	// Removes the literals of the learned clause whose negation is implied
+	// by the negations of the others, i.e. all of whose antecedents in the
+	// implication graph are in the clause, at level 0 or removable in turn.
+	// Clears the seen flags of the clause's literals.
+	private void minimize(List<Integer> learnedClause) {
+		List<Integer> marked = new ArrayList<Integer>();
+		for (int k = 1; k < learnedClause.size(); k++) {
+			marked.add(learnedClause.get(k) >> 1);
+		}
+		int kept = 1;
+		for (int k = 1; k < learnedClause.size(); k++) {
+			int q = learnedClause.get(k);
+			if (reasons[q >> 1] == NO_REASON || !isRedundant(q, marked)) {
+				learnedClause.set(kept++, q);
+			}
+		}
+		minimizedLiterals += learnedClause.size() - kept;
+		while (learnedClause.size() > kept) {
+			learnedClause.remove(learnedClause.size() - 1);
+		}
+		for (int v : marked) {
+			seen[v] = false;
+		}
+	}
+
+	// Depth-first search of the antecedents of q; variables found removable
+	// are marked seen (and added to marked) so they are visited only once.
+	private boolean isRedundant(int q, List<Integer> marked) {
+		List<Integer> stack = new ArrayList<Integer>();
+		int top = marked.size();
+		stack.add(q);
+		while (!stack.isEmpty()) {
+			int[] lits = clauses.get(reasons[stack.remove(stack.size() - 1) >> 1]);
+			for (int k = 1; k < lits.length; k++) {
+				int v = lits[k] >> 1;
+				if (seen[v] || levels[v] == 0) {
+					continue;
+				}
+				if (reasons[v] == NO_REASON) {
+					// a decision that is not in the clause
+					while (marked.size() > top) {
+						seen[marked.remove(marked.size() - 1)] = false;
+					}
+					return false;
+				}
+				seen[v] = true;
+				marked.add(v);
+				stack.add(lits[k]);
+			}
+		}
+		return true;
+	}
+
+	private int addLearned(List<Integer> learnedClause) {
+		int[] lits = new int[learnedClause.size()];
+		stamp++;
+		int span = 0;
+		for (int k = 0; k < lits.length; k++) {
+			lits[k] = learnedClause.get(k);
+			int l = levels[lits[k] >> 1];
+			if (levelStamps[l] != stamp) {
+				levelStamps[l] = stamp;
+				span++;
+			}
+		}
+		int c = clauses.size();
+		clauses.add(lits);
+		if (c == spans.length) {
+			spans = Arrays.copyOf(spans, 2 * spans.length);
+		}
+		spans[c] = span;
+		learnedClauses++;
+		liveLearned++;
+		heuristic.clauseAdded(lits, true);
+		watch(lits[0], c);
+		watch(lits[1], c);
+		return c;
+	}
+
+	// Deletes about half of the learned clauses, those spanning the most
+	// levels and, of those spanning equally many, the oldest first. Clauses
+	// spanning two levels or fewer and clauses that are reasons are kept.
+	private void reduce() {
+		List<Integer> candidates = new ArrayList<Integer>();
+		for (int c = 0; c < clauses.size(); c++) {
+			int[] lits = clauses.get(c);
+			if (lits == null || spans[c] <= 2) {
+				continue;
+			}
+			int v = lits[0] >> 1;
+			if (values[v] != UNASSIGNED && reasons[v] == c) {
+				continue;
+			}
+			candidates.add(c);
+		}
+		// stable, so older clauses stay first among equal spans
+		Integer[] sorted = candidates.toArray(new Integer[candidates.size()]);
+		Arrays.sort(sorted, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return spans[b] - spans[a];
+			}
+		});
+		int deletions = liveLearned / 2;
+		for (int k = 0; k < sorted.length && k < deletions; k++) {
+			clauses.set(sorted[k], null);
+			deletedClauses++;
+			liveLearned--;
+		}
+		rebuildWatches();
+		maxLearned += (givenClauses / 3 + maxLearned) / 10;
+	}
+
+	// The watched literals are at positions 0 and 1, so the watch lists can
+	// simply be rebuilt from the clauses after some are deleted.
+	private void rebuildWatches() {
+		Arrays.fill(watchCounts, 0);
+		for (int c = 0; c < clauses.size(); c++) {
+			int[] lits = clauses.get(c);
+			if (lits != null) {
+				watch(lits[0], c);
+				watch(lits[1], c);
+			}
+		}
+	}
+
+	private void assign(int lit, int reason) {
+		int v = lit >> 1;
+		values[v] = (lit & 1) == 0 ? TRUE : FALSE;
+		levels[v] = level;
+		reasons[v] = reason;
+		trail[trailSize++] = lit;
+		heuristic.assigned(lit);
+	}
+
+	// Undoes all levels above the given one.
+	private void undo(int toLevel) {
+		if (level <= toLevel) {
+			return;
+		}
+		int from = levelStart[toLevel + 1];
+		while (trailSize > from) {
+			int lit = trail[--trailSize];
+			values[lit >> 1] = UNASSIGNED;
+			heuristic.unassigned(lit);
+		}
+		qhead = trailSize;
+		level = toLevel;
+	}
+
+	private void watch(int lit, int c) {
+		if (watchCounts[lit] == watches[lit].length) {
+			int[] grown = new int[2 * watches[lit].length];
+			System.arraycopy(watches[lit], 0, grown, 0, watchCounts[lit]);
+			watches[lit] = grown;
+		}
+		watches[lit][watchCounts[lit]++] = c;
+	}
+
+	private boolean isTrue(int lit) {
+		byte value = values[lit >> 1];
+		return (lit & 1) == 0 ? value == TRUE : value == FALSE;
+	}
+
+	private boolean isFalse(int lit) {
+		byte value = values[lit >> 1];
+		return (lit & 1) == 0 ? value == FALSE : value == TRUE;
+	}
+}
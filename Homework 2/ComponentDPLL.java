@@ -0,0 +1,461 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A DPLL implementation that does component analysis (AIMA3e p.g. 261):
+ * clauses that share no variables, directly or through other clauses, can be
+ * solved independently, and the clauses are satisfiable if and only if every
+ * such component is. The components are found after unit propagation, which
+ * assigns the variables fixed by unit clauses (and the values of the model
+ * passed in) and so removes the satisfied clauses and false literals that
+ * would otherwise tie separate parts of a problem together. Variables are
+ * joined into components with a union-find over the literals of the clauses
+ * left, and every component is solved by a ClauseLearningDPLL of its own.<br>
+ * <br>
+ * The result of every component is cached by its signature, its clauses in a
+ * canonical order. Variables are numbered by a symbol table kept from one
+ * call to the next, so a component that comes up again in a later call, such
+ * as a part of a knowledge base a query has nothing to do with, is not solved
+ * again. The cache holds the components least recently used last, and drops
+ * them when full.<br>
+ * <br>
+ * The components are not looked for again below the decisions within a
+ * component, as the clauses learned by the solver join up the parts a
+ * decision separates.<br>
+ * <br>
+ * When the thread running it is a canceled CancelableThread, the
+ * CancellationException of the component's solver is passed on, and the
+ * component is not cached.
+ */
+public class ComponentDPLL implements DPLL {
+
+	public static final int DEFAULT_CACHE_CAPACITY = 1000;
+	//
+	// Values of a variable
+	private static final byte UNASSIGNED = 0;
+	private static final byte TRUE       = 1;
+	private static final byte FALSE      = -1;
+	//
+	// Variables and literals are numbered as in SymbolTable, by a table kept
+	// for all calls so that signatures stay the same.
+	private SymbolTable             vars       = new SymbolTable();
+	// component signature -> literals of a model of it, or null if it is
+	// unsatisfiable
+	private Map<Signature, int[]>   cache;
+	private byte[]                  values     = null;
+	private int[]                   parents    = null;
+	//
+	private int     components        = 0;
+	private int     cacheHits         = 0;
+	private int     largestComponent  = 0;
+	private int     propagations      = 0;
+	private Metrics metrics           = new Metrics();
+
+	public ComponentDPLL() {
+		this(DEFAULT_CACHE_CAPACITY);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param cacheCapacity
+	 *            the maximum number of components whose results are cached.
+	 */
+	public ComponentDPLL(final int cacheCapacity) {
+		cache = new LinkedHashMap<Signature, int[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Signature, int[]> eldest) {
+				return size() > cacheCapacity;
+			}
+		};
+	}
+
+	//
+	// START-DPLL
+	@Override
+	public boolean dpllSatisfiable(Sentence s) {
+		// clauses <- the set of clauses in the CNF representation of s
+		Set<Clause> clauses = ConvertToConjunctionOfClauses.convert(s)
+				.getClauses();
+		// symbols <- a list of the proposition symbols in s
+		List<PropositionSymbol> symbols = new ArrayList<PropositionSymbol>(
+				SymbolCollector.getSymbolsFrom(s));
+
+		// return DPLL(clauses, symbols, {})
+		return dpll(clauses, symbols, new Model());
+	}
+
+	/**
+	 * DPLL(clauses, symbols, model)<br>
+	 *
+	 * @param clauses
+	 *            the set of clauses.
+	 * @param symbols
+	 *            a list of unassigned symbols.
+	 * @param model
+	 *            contains the values for assigned symbols. If the clauses are
+	 *            satisfiable it is extended with the values found for the
+	 *            other symbols.
+	 * @return true if the model is satisfiable under current assignments, false
+	 *         otherwise.
+	 */
+	@Override
+	public boolean dpll(Set<Clause> clauses, List<PropositionSymbol> symbols,
+			Model model) {
+		long start = System.nanoTime();
+		components = 0;
+		cacheHits = 0;
+		largestComponent = 0;
+		propagations = 0;
+
+		for (PropositionSymbol p : symbols) {
+			vars.intern(p);
+		}
+		ClauseDatabase db = new ClauseDatabase(vars);
+		db.addAll(clauses);
+		values = new byte[vars.size()];
+		for (int v = 0; v < vars.size(); v++) {
+			Boolean value = model.getValue(vars.getSymbol(v));
+			if (value != null) {
+				values[v] = value ? TRUE : FALSE;
+			}
+		}
+
+		boolean result = propagate(db) && solveComponents(db);
+		if (result) {
+			// the symbols of this problem; those in no clause left may have
+			// either value
+			Set<PropositionSymbol> problemSymbols = new LinkedHashSet<PropositionSymbol>(symbols);
+			for (int c = 0; c < db.size(); c++) {
+				for (int k = 0; k < db.length(c); k++) {
+					problemSymbols.add(vars.getSymbol(db.get(c, k) >> 1));
+				}
+			}
+			for (PropositionSymbol p : problemSymbols) {
+				model.unionInPlace(p, values[vars.getId(p)] != FALSE);
+			}
+		}
+
+		metrics = new Metrics();
+		metrics.set("components", components);
+		metrics.set("cacheHits", cacheHits);
+		metrics.set("cachedComponents", cache.size());
+		metrics.set("largestComponent", largestComponent);
+		metrics.set("propagations", propagations);
+		metrics.set("variables", vars.size());
+		metrics.set("clauses", db.size());
+		metrics.set("timeNanos", System.nanoTime() - start);
+		return result;
+	}
+
+	/**
+	 * Determine if KB |= &alpha;, i.e. alpha is entailed by KB.
+	 *
+	 * @param kb
+	 *            a Knowledge Base in propositional logic.
+	 * @param alpha
+	 *            a propositional sentence.
+	 * @return true, if &alpha; is entailed by KB, false otherwise.
+	 */
+	@Override
+	public boolean isEntailed(KnowledgeBase kb, Sentence alpha) {
+		// AIMA3e p.g. 260: kb |= alpha, can be done by testing
+		// unsatisfiability of kb & ~alpha.
+		Set<Clause>             kbAndNotAlpha = new LinkedHashSet<Clause>();
+		Sentence                notQuery      = new ComplexSentence(Connective.NOT, alpha);
+		Set<PropositionSymbol>  symbols       = new LinkedHashSet<PropositionSymbol>();
+		List<PropositionSymbol> querySymbols  = new ArrayList<PropositionSymbol>(SymbolCollector.getSymbolsFrom(notQuery));
+
+		kbAndNotAlpha.addAll(kb.asCNF());
+		kbAndNotAlpha.addAll(ConvertToConjunctionOfClauses.convert(notQuery).getClauses());
+		symbols.addAll(querySymbols);
+		symbols.addAll(kb.getSymbols());
+
+		return !dpll(kbAndNotAlpha, new ArrayList<PropositionSymbol>(symbols), new Model());
+	}
+	// END-DPLL
+	//
+
+	/**
+	 * Returns the metrics of the last call to dpll: the number of components,
+	 * how many of them were found in the cache, the number of components
+	 * cached, the number of variables of the largest component solved, the
+	 * assignments made by unit propagation, the size of the problem and the
+	 * time taken.
+	 */
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	//
+	// PRIVATE
+	//
+
+	// Assigns the literals of unit clauses until there are none left, or a
+	// clause is false. Every clause counts its true and false literals, and
+	// every literal knows the clauses it is in, so an assignment only visits
+	// the clauses of its variable.
+	private boolean propagate(ClauseDatabase db) {
+		int[][] occurrences = new int[2 * vars.size()][];
+		int[]   counts      = new int[2 * vars.size()];
+		for (int c = 0; c < db.size(); c++) {
+			for (int k = 0; k < db.length(c); k++) {
+				counts[db.get(c, k)]++;
+			}
+		}
+		for (int l = 0; l < occurrences.length; l++) {
+			occurrences[l] = new int[counts[l]];
+			counts[l] = 0;
+		}
+		for (int c = 0; c < db.size(); c++) {
+			for (int k = 0; k < db.length(c); k++) {
+				int lit = db.get(c, k);
+				occurrences[lit][counts[lit]++] = c;
+			}
+		}
+
+		int[] trueCounts  = new int[db.size()];
+		int[] falseCounts = new int[db.size()];
+		int[] queue       = new int[vars.size()];
+		int   queued      = 0;
+		// the values already given count as assignments, and so do the
+		// literals of clauses that are unit to begin with
+		for (int v = 0; v < vars.size(); v++) {
+			if (values[v] != UNASSIGNED) {
+				queue[queued++] = SymbolTable.literal(v, values[v] == TRUE);
+			}
+		}
+		for (int c = 0; c < db.size(); c++) {
+			if (db.length(c) == 0) {
+				return false;
+			}
+			if (db.length(c) == 1) {
+				int lit = db.get(c, 0);
+				if (isFalse(lit)) {
+					return false;
+				}
+				if (!isTrue(lit)) {
+					values[lit >> 1] = SymbolTable.isPositive(lit) ? TRUE : FALSE;
+					queue[queued++] = lit;
+					propagations++;
+				}
+			}
+		}
+
+		for (int head = 0; head < queued; head++) {
+			int lit = queue[head];
+			for (int c : occurrences[lit]) {
+				trueCounts[c]++;
+			}
+			for (int c : occurrences[SymbolTable.negate(lit)]) {
+				falseCounts[c]++;
+				if (trueCounts[c] > 0 || falseCounts[c] < db.length(c) - 1) {
+					continue;
+				}
+				// unit or false, unless its last literal is already true
+				int unit = -1;
+				for (int k = 0; k < db.length(c); k++) {
+					int l = db.get(c, k);
+					if (isTrue(l)) {
+						unit = -2;
+						break;
+					}
+					if (!isFalse(l)) {
+						unit = l;
+					}
+				}
+				if (unit == -1) {
+					return false;
+				}
+				if (unit >= 0) {
+					values[unit >> 1] = SymbolTable.isPositive(unit) ? TRUE : FALSE;
+					queue[queued++] = unit;
+					propagations++;
+				}
+			}
+		}
+		return true;
+	}
+
+	// Splits the clauses not satisfied into components and solves them, or
+	// looks them up in the cache, assigning their models on success.
+	private boolean solveComponents(ClauseDatabase db) {
+		// the clauses left, without their false literals
+		List<int[]> residual = new ArrayList<int[]>();
+		parents = new int[vars.size()];
+		for (int v = 0; v < parents.length; v++) {
+			parents[v] = v;
+		}
+		for (int c = 0; c < db.size(); c++) {
+			int[] clause = new int[db.length(c)];
+			int length = 0;
+			boolean satisfied = false;
+			for (int k = 0; k < clause.length && !satisfied; k++) {
+				int lit = db.get(c, k);
+				if (isTrue(lit)) {
+					satisfied = true;
+				} else if (!isFalse(lit)) {
+					clause[length++] = lit;
+				}
+			}
+			if (satisfied) {
+				continue;
+			}
+			residual.add(Arrays.copyOf(clause, length));
+			for (int k = 1; k < length; k++) {
+				union(clause[0] >> 1, clause[k] >> 1);
+			}
+		}
+
+		// group the clauses by the root of their variables
+		Map<Integer, List<int[]>> byRoot = new LinkedHashMap<Integer, List<int[]>>();
+		for (int[] clause : residual) {
+			Integer root = find(clause[0] >> 1);
+			List<int[]> component = byRoot.get(root);
+			if (component == null) {
+				component = new ArrayList<int[]>();
+				byRoot.put(root, component);
+			}
+			component.add(clause);
+		}
+
+		for (List<int[]> component : byRoot.values()) {
+			components++;
+			Signature signature = new Signature(component);
+			int[] model;
+			if (cache.containsKey(signature)) {
+				cacheHits++;
+				model = cache.get(signature);
+			} else {
+				model = solve(component);
+				cache.put(signature, model);
+			}
+			if (model == null) {
+				return false;
+			}
+			for (int lit : model) {
+				values[lit >> 1] = SymbolTable.isPositive(lit) ? TRUE : FALSE;
+			}
+		}
+		return true;
+	}
+
+	// Solves one component, returning the literals of a model of it or null
+	// if it is unsatisfiable.
+	private int[] solve(List<int[]> component) {
+		// number the variables of the component from 0 for its solver
+		Map<Integer, Integer> local = new LinkedHashMap<Integer, Integer>();
+		SymbolTable table = new SymbolTable();
+		for (int[] clause : component) {
+			for (int lit : clause) {
+				if (!local.containsKey(lit >> 1)) {
+					local.put(lit >> 1, table.newVariable());
+				}
+			}
+		}
+		largestComponent = Math.max(largestComponent, local.size());
+
+		ClauseLearningDPLL solver = new ClauseLearningDPLL();
+		solver.reset(table);
+		for (int[] clause : component) {
+			int[] lits = new int[clause.length];
+			for (int k = 0; k < lits.length; k++) {
+				lits[k] = SymbolTable.literal(local.get(clause[k] >> 1),
+						SymbolTable.isPositive(clause[k]));
+			}
+			solver.addClause(lits);
+		}
+		if (!solver.solve()) {
+			return null;
+		}
+		int[] model = new int[local.size()];
+		int i = 0;
+		for (Map.Entry<Integer, Integer> e : local.entrySet()) {
+			Boolean value = solver.getValue(e.getValue());
+			model[i++] = SymbolTable.literal(e.getKey(), value == null || value);
+		}
+		return model;
+	}
+
+	private int find(int v) {
+		while (parents[v] != v) {
+			// path halving
+			parents[v] = parents[parents[v]];
+			v = parents[v];
+		}
+		return v;
+	}
+
+	private void union(int a, int b) {
+		int rootA = find(a);
+		int rootB = find(b);
+		if (rootA != rootB) {
+			parents[rootA] = rootB;
+		}
+	}
+
+	private boolean isTrue(int lit) {
+		byte value = values[lit >> 1];
+		return (lit & 1) == 0 ? value == TRUE : value == FALSE;
+	}
+
+	private boolean isFalse(int lit) {
+		byte value = values[lit >> 1];
+		return (lit & 1) == 0 ? value == FALSE : value == TRUE;
+	}
+
+	// The clauses of a component, each sorted and in sorted order, laid out
+	// one after the other with their lengths in between, so that equal
+	// components have equal signatures.
+	private static class Signature {
+		private int[] literals;
+		private int   hash;
+
+		public Signature(List<int[]> component) {
+			int[][] clauses = component.toArray(new int[component.size()][]);
+			int size = 0;
+			for (int[] clause : clauses) {
+				Arrays.sort(clause);
+				size += clause.length + 1;
+			}
+			Arrays.sort(clauses, new Comparator<int[]>() {
+				public int compare(int[] a, int[] b) {
+					for (int k = 0; k < a.length && k < b.length; k++) {
+						if (a[k] != b[k]) {
+							return a[k] < b[k] ? -1 : 1;
+						}
+					}
+					return a.length - b.length;
+				}
+			});
+			literals = new int[size];
+			int i = 0;
+			for (int[] clause : clauses) {
+				literals[i++] = -clause.length;
+				for (int lit : clause) {
+					literals[i++] = lit;
+				}
+			}
+			hash = Arrays.hashCode(literals);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Signature && hash == ((Signature) o).hash
+					&& Arrays.equals(literals, ((Signature) o).literals);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
@@ -0,0 +1,151 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares DPLL implementations on WumpusKnowledgeBase instances. Each
+ * implementation gets its own knowledge base for the cave of figure 7.2
+ * (wumpus in [1,3], pits in [3,1], [3,3] and [4,4], gold in [2,3]), which is
+ * told the percepts of a fixed walk from [1,1] to the gold, one time step at
+ * a time. At every step it is asked the queries HybridWumpusAgent asks; the
+ * time taken to answer them is reported per step, and the answers are
+ * checked to be the same for all implementations. The hit rate of each
+ * knowledge base's entailment cache is reported at the end.<br>
+ * <br>
+ * Usage: java DPLLComparison [steps [dpll ...]]<br>
+ * where dpll is one of the names accepted by WumpusKnowledgeBase.newDPLL,
+ * by default all of them.
+ */
+public class DPLLComparison {
+	// F = Forward, L = TurnLeft, R = TurnRight:
+	// [1,1] -> [2,1] -> [1,1] -> [1,2] -> [2,2] -> [2,3]
+	public static final String WALK = "FLLFRFRFLF";
+	//
+	private static final int CAVE = 4;
+
+	public static void main(String[] args) {
+		int steps = args.length > 0 ? Integer.parseInt(args[0]) : WALK.length();
+		List<String> names = new ArrayList<String>();
+		for (int i = 1; i < args.length; i++) {
+			names.add(args[i]);
+		}
+		if (names.isEmpty()) {
+			names.add(WumpusKnowledgeBase.DPLL_OPTIMIZED);
+			names.add(WumpusKnowledgeBase.DPLL_WATCHED);
+			names.add(WumpusKnowledgeBase.DPLL_CDCL);
+			names.add(WumpusKnowledgeBase.DPLL_INCREMENTAL);
+			names.add(WumpusKnowledgeBase.DPLL_COMPONENTS);
+			names.add(WumpusKnowledgeBase.DPLL_PORTFOLIO);
+		}
+
+		List<WumpusKnowledgeBase> kbs = new ArrayList<WumpusKnowledgeBase>();
+		for (String name : names) {
+			kbs.add(new WumpusKnowledgeBase(WumpusKnowledgeBase.newDPLL(name), CAVE));
+		}
+		long[] totals = new long[names.size()];
+		boolean agree = true;
+
+		System.out.printf("%-4s %-14s", "t", "position");
+		for (String name : names) {
+			System.out.printf(" %12s", name + " ms");
+		}
+		System.out.println();
+		AgentPosition position = new AgentPosition(1, 1,
+				AgentPosition.Orientation.FACING_EAST);
+		for (int t = 0; t <= steps && t <= WALK.length(); t++) {
+			AgentPercept percept = perceive(position);
+			String first = null;
+			System.out.printf("%-4d %-14s", t, position.getX() + ","
+					+ position.getY() + " " + position.getOrientation());
+			Action action = null;
+			if (t < WALK.length()) {
+				action = act(WALK.charAt(t), position);
+			}
+			for (int i = 0; i < kbs.size(); i++) {
+				WumpusKnowledgeBase kb = kbs.get(i);
+				long start = System.nanoTime();
+				kb.makePerceptSentence(percept, t);
+				kb.tellTemporalPhysicsSentences(t);
+				String answers = ask(kb, t);
+				long time = System.nanoTime() - start;
+				totals[i] += time;
+				System.out.printf(" %12.1f", time / 1e6);
+				if (first == null) {
+					first = answers;
+				} else if (!first.equals(answers)) {
+					agree = false;
+					System.out.printf(" (%s differs: %s)", names.get(i), answers);
+				}
+				if (action != null) {
+					kb.makeActionSentence(action, t);
+				}
+			}
+			System.out.println();
+			position = move(action, position);
+		}
+		System.out.printf("%-19s", "total");
+		for (int i = 0; i < names.size(); i++) {
+			System.out.printf(" %12.1f", totals[i] / 1e6);
+		}
+		System.out.println();
+		System.out.printf("%-19s", "cache hit rate");
+		for (WumpusKnowledgeBase kb : kbs) {
+			System.out.printf(" %12.2f", kb.getEntailmentCache().getMetrics()
+					.getDouble(EntailmentCache.METRIC_HIT_RATE));
+		}
+		System.out.println();
+		System.out.println(agree ? "All answers agree." : "ANSWERS DIFFER.");
+	}
+
+	// The queries of HybridWumpusAgent.execute at time t.
+	private static String ask(WumpusKnowledgeBase kb, int t) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(kb.askCurrentPosition(t));
+		sb.append(" safe=").append(kb.askSafeRooms(t));
+		sb.append(" glitter=").append(kb.askGlitter(t));
+		sb.append(" unvisited=").append(kb.askUnvisitedRooms(t));
+		sb.append(" arrow=").append(kb.askHaveArrow(t));
+		sb.append(" wumpus=").append(kb.askPossibleWumpusRooms(t));
+		sb.append(" notUnsafe=").append(kb.askNotUnsafeRooms(t));
+		return sb.toString();
+	}
+
+	static AgentPercept perceive(AgentPosition position) {
+		int x = position.getX();
+		int y = position.getY();
+		boolean stench = isNear(x, y, 1, 3);
+		boolean breeze = isNear(x, y, 3, 1) || isNear(x, y, 3, 3)
+				|| isNear(x, y, 4, 4);
+		boolean glitter = x == 2 && y == 3;
+		return new AgentPercept(stench, breeze, glitter, false, false);
+	}
+
+	private static boolean isNear(int x, int y, int roomX, int roomY) {
+		return Math.abs(x - roomX) + Math.abs(y - roomY) == 1;
+	}
+
+	static AgentPosition move(Action action, AgentPosition position) {
+		if (action instanceof Forward) {
+			return ((Forward) action).getToPosition();
+		} else if (action instanceof TurnLeft) {
+			return new AgentPosition(position.getRoom(),
+					((TurnLeft) action).getToOrientation());
+		} else if (action instanceof TurnRight) {
+			return new AgentPosition(position.getRoom(),
+					((TurnRight) action).getToOrientation());
+		}
+		return position;
+	}
+
+	static Action act(char c, AgentPosition position) {
+		switch (c) {
+		case 'F':
+			return new Forward(position);
+		case 'L':
+			return new TurnLeft(position.getOrientation());
+		case 'R':
+			return new TurnRight(position.getOrientation());
+		default:
+			throw new IllegalArgumentException("Unknown action: " + c);
+		}
+	}
+}
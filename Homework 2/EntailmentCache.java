@@ -0,0 +1,120 @@
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Remembers the answers to entailment queries asked of a KnowledgeBase,
+ * keyed by the query and the version of the knowledge base it was answered
+ * for (see KnowledgeBase.getVersion()). Telling only ever adds clauses, so a
+ * query once entailed stays entailed: those answers are kept for good. A
+ * query that is not entailed may become entailed by the next clause told, so
+ * those answers only hold for the version they were found in, and are kept
+ * in a map of bounded size that evicts the least recently used answer when
+ * full.
+ */
+public class EntailmentCache {
+	public static final String METRIC_HITS         = "hits";
+	public static final String METRIC_MISSES       = "misses";
+	public static final String METRIC_HIT_RATE     = "hitRate";
+	public static final String METRIC_ENTAILED     = "entailed";
+	public static final String METRIC_NOT_ENTAILED = "notEntailed";
+	//
+	public static final int DEFAULT_CAPACITY = 1000;
+
+	private Set<Sentence>                 entailed    = new HashSet<Sentence>();
+	// query -> version of the knowledge base it was not entailed by
+	private LinkedHashMap<Sentence, Long> notEntailed;
+	private int                           hits        = 0;
+	private int                           misses      = 0;
+
+	public EntailmentCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity
+	 *            the maximum number of not entailed answers kept.
+	 */
+	public EntailmentCache(final int capacity) {
+		notEntailed = new LinkedHashMap<Sentence, Long>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Sentence, Long> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cached answer to a query.
+	 *
+	 * @param alpha
+	 *            the query.
+	 * @param version
+	 *            the current version of the knowledge base.
+	 * @return true if alpha is known to be entailed, false if alpha is known
+	 *         not to be entailed by this version of the knowledge base, or null
+	 *         if the answer is not known.
+	 */
+	public Boolean get(Sentence alpha, long version) {
+		if (entailed.contains(alpha)) {
+			hits++;
+			return Boolean.TRUE;
+		}
+		Long notEntailedBy = notEntailed.get(alpha);
+		if (notEntailedBy != null) {
+			if (notEntailedBy.longValue() == version) {
+				hits++;
+				return Boolean.FALSE;
+			}
+			// found for an earlier version, so no longer known
+			notEntailed.remove(alpha);
+		}
+		misses++;
+		return null;
+	}
+
+	/**
+	 * Records the answer to a query.
+	 *
+	 * @param alpha
+	 *            the query.
+	 * @param version
+	 *            the version of the knowledge base the answer was found for.
+	 * @param isEntailed
+	 *            whether that version of the knowledge base entails alpha.
+	 */
+	public void put(Sentence alpha, long version, boolean isEntailed) {
+		if (isEntailed) {
+			notEntailed.remove(alpha);
+			entailed.add(alpha);
+		} else if (!entailed.contains(alpha)) {
+			notEntailed.put(alpha, version);
+		}
+	}
+
+	public void clear() {
+		entailed.clear();
+		notEntailed.clear();
+		hits = 0;
+		misses = 0;
+	}
+
+	/**
+	 * Returns the number of lookups answered, those not answered, the
+	 * fraction answered and the number of answers of either kind held.
+	 */
+	public Metrics getMetrics() {
+		Metrics metrics = new Metrics();
+		metrics.set(METRIC_HITS, hits);
+		metrics.set(METRIC_MISSES, misses);
+		metrics.set(METRIC_HIT_RATE, hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+		metrics.set(METRIC_ENTAILED, entailed.size());
+		metrics.set(METRIC_NOT_ENTAILED, notEntailed.size());
+		return metrics;
+	}
+}
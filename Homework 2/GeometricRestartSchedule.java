@@ -0,0 +1,44 @@
+/**
+ * Restarts after a number of conflicts that grows by a constant factor from
+ * one restart to the next, e.g. 100, 150, 225, ..., so that the search is
+ * complete however hard the problem: there are ever longer runs to finish it.
+ */
+public class GeometricRestartSchedule implements RestartSchedule {
+
+	public static final int    DEFAULT_FIRST  = 100;
+	public static final double DEFAULT_FACTOR = 1.5;
+	//
+	private int    first;
+	private double factor;
+	private double interval;
+
+	public GeometricRestartSchedule() {
+		this(DEFAULT_FIRST, DEFAULT_FACTOR);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param first
+	 *            the number of conflicts before the first restart.
+	 * @param factor
+	 *            the factor every following interval grows by, greater than 1.
+	 */
+	public GeometricRestartSchedule(int first, double factor) {
+		this.first = first;
+		this.factor = factor;
+		this.interval = first;
+	}
+
+	@Override
+	public void reset() {
+		interval = first;
+	}
+
+	@Override
+	public int nextInterval() {
+		int next = (int) Math.min(Integer.MAX_VALUE, interval);
+		interval *= factor;
+		return next;
+	}
+}
@@ -325,6 +325,10 @@ public class HybridWumpusAgent extends AbstractAgent {
 		kb = new WumpusKnowledgeBase(caveXandYDimensions);
 	}
 
+	public HybridWumpusAgent(DPLL dpll, int caveXandYDimensions) {
+		kb = new WumpusKnowledgeBase(dpll, caveXandYDimensions);
+	}
+
     /* Expose all known facts in CNF */
     public Set<Clause> getCNFFacts() {
         return cnfFacts;
@@ -0,0 +1,100 @@
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A DPLL implementation that answers entailment queries with the incremental
+ * solver attached to the knowledge base (see
+ * KnowledgeBase.getIncrementalSolver()), instead of copying the clauses of the
+ * knowledge base and solving from scratch for every query. KB |= &alpha; is
+ * tested as the unsatisfiability of KB under the assumption ~&alpha;:
+ * <ul>
+ * <li>if ~&alpha; is a literal, as are the queries of WumpusKnowledgeBase,
+ * it is assumed directly;</li>
+ * <li>otherwise the clauses of ~&alpha; are added to the solver, each with
+ * the negation of a new selector variable, and the selector is assumed
+ * true. Afterwards the selector is set false for good, which satisfies the
+ * clauses, and they are deleted from the solver together with the clauses
+ * learned from them (see ClauseLearningDPLL.removeSatisfied()), so that the
+ * clauses of the solver do not grow with every query; only the variable of
+ * the selector is left.</li>
+ * </ul>
+ * The other clauses learned answering a query follow from the knowledge base
+ * alone, so they are kept for all later queries and time steps.<br>
+ * <br>
+ * dpllSatisfiable and dpll solve from scratch with a ClauseLearningDPLL.<br>
+ * <br>
+ * Like ClauseLearningDPLL, a query throws a CancellationException when the
+ * thread asking it is a canceled CancelableThread, rather than answering.
+ */
+public class IncrementalDPLL implements DPLL {
+
+	private Metrics metrics = new Metrics();
+
+	//
+	// START-DPLL
+	@Override
+	public boolean dpllSatisfiable(Sentence s) {
+		return new ClauseLearningDPLL().dpllSatisfiable(s);
+	}
+
+	@Override
+	public boolean dpll(Set<Clause> clauses, List<PropositionSymbol> symbols,
+			Model model) {
+		return new ClauseLearningDPLL().dpll(clauses, symbols, model);
+	}
+
+	/**
+	 * Determine if KB |= &alpha;, i.e. alpha is entailed by KB.
+	 * 
+	 * @param kb
+	 *            a Knowledge Base in propositional logic.
+	 * @param alpha
+	 *            a propositional sentence.
+	 * @return true, if &alpha; is entailed by KB, false otherwise.
+	 */
+	@Override
+	public boolean isEntailed(KnowledgeBase kb, Sentence alpha) {
+		ClauseLearningDPLL solver   = kb.getIncrementalSolver();
+		SymbolTable        symbols  = solver.getSymbolTable();
+		Set<Clause>        notAlpha = ConvertToConjunctionOfClauses.convert(
+				new ComplexSentence(Connective.NOT, alpha)).getClauses();
+		Clause             unit     = notAlpha.size() == 1 ? notAlpha.iterator().next() : null;
+
+		boolean satisfiable;
+		if (unit != null && unit.isUnitClause() && !unit.isTautology()) {
+			satisfiable = solver.solve(symbols.encode(unit.getLiterals().iterator().next()));
+		} else {
+			int selector = symbols.newVariable();
+			for (Clause c : notAlpha) {
+				if (c.isTautology()) {
+					continue;
+				}
+				int[] clause = new int[c.getNumberLiterals() + 1];
+				int i = 0;
+				for (Literal l : c.getLiterals()) {
+					clause[i++] = symbols.encode(l);
+				}
+				clause[i] = SymbolTable.literal(selector, false);
+				solver.addClause(clause);
+			}
+			try {
+				satisfiable = solver.solve(SymbolTable.literal(selector, true));
+			} finally {
+				// retire the selector even if the search is canceled
+				solver.addClause(SymbolTable.literal(selector, false));
+				solver.removeSatisfied();
+			}
+		}
+		metrics = solver.getMetrics();
+		return !satisfiable;
+	}
+	// END-DPLL
+	//
+
+	/**
+	 * Returns the metrics of the solver for the last query.
+	 */
+	public Metrics getMetrics() {
+		return metrics;
+	}
+}
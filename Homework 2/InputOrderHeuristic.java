@@ -0,0 +1,22 @@
+/**
+ * Branches on the unassigned variable with the lowest id, i.e. on the symbols
+ * in the order they were interned, trying true first as OptimizedDPLL does.
+ * This is the order of the symbol list passed to DPLL(clauses, symbols,
+ * model), which is more or less arbitrary.
+ */
+public class InputOrderHeuristic extends ScoredBranchingHeuristic {
+
+	public InputOrderHeuristic() {
+		this(false);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param phaseSaving
+	 *            whether to give a variable the value it last had.
+	 */
+	public InputOrderHeuristic(boolean phaseSaving) {
+		super(phaseSaving);
+	}
+}
@@ -0,0 +1,58 @@
+import java.util.Arrays;
+
+/**
+ * The two-sided Jeroslow-Wang rule: a literal l has the weight J(l), the sum
+ * of 2^-|c| over the given clauses c it appears in, so that short clauses
+ * count for more, and the variable v with the largest J(v) + J(~v) is
+ * branched on, trying the value of its heavier literal first. Learned clauses
+ * are not counted, so the order depends on the problem alone.
+ */
+public class JeroslowWangHeuristic extends ScoredBranchingHeuristic {
+
+	private double[] weights = new double[0];
+
+	public JeroslowWangHeuristic() {
+		this(false);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param phaseSaving
+	 *            whether to give a variable the value it last had.
+	 */
+	public JeroslowWangHeuristic(boolean phaseSaving) {
+		super(phaseSaving);
+	}
+
+	@Override
+	public void reset() {
+		super.reset();
+		Arrays.fill(weights, 0);
+	}
+
+	@Override
+	public void addVariables(int n) {
+		if (2 * n > weights.length) {
+			weights = Arrays.copyOf(weights, Math.max(2 * n, 2 * weights.length));
+		}
+		super.addVariables(n);
+	}
+
+	@Override
+	public void clauseAdded(int[] clause, boolean learned) {
+		if (learned) {
+			return;
+		}
+		double weight = Math.pow(2, -clause.length);
+		for (int lit : clause) {
+			weights[lit] += weight;
+			increaseScore(lit >> 1, weight);
+		}
+	}
+
+	@Override
+	protected boolean isPositiveFirst(int var) {
+		return weights[SymbolTable.literal(var, true)] >= weights[SymbolTable.literal(var, false)];
+	}
+}
@@ -1,7 +1,10 @@
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -13,6 +16,11 @@ public class KnowledgeBase {
 	private ConjunctionOfClauses   asCNF     = new ConjunctionOfClauses(Collections.<Clause>emptySet());
 	private Set<PropositionSymbol> symbols   = new LinkedHashSet<PropositionSymbol>();
 	private PLParser               parser    = new PLParser();
+	// incremental solver kept up to date with the clauses told, once asked for
+	private ClauseLearningDPLL     solver    = null;
+	// counts the tells that added clauses; see getVersion()
+	private long                   version   = 0;
+	private EntailmentCache        cache     = new EntailmentCache();
 
 	public KnowledgeBase() {
 	}
@@ -37,11 +45,234 @@ public class KnowledgeBase {
 	public void tell(Sentence aSentence) {
 		if (!(sentences.contains(aSentence))) {
 			sentences.add(aSentence);
-			asCNF = asCNF.extend(ConvertToConjunctionOfClauses.convert(aSentence).getClauses());
+			Set<Clause> clauses = ConvertToConjunctionOfClauses.convert(aSentence).getClauses();
+			boolean added = false;
+			for (Clause c : clauses) {
+				if (!asCNF.getClauses().contains(c)) {
+					added = true;
+					if (solver != null) {
+						solver.addClause(c);
+					}
+				}
+			}
+			if (added) {
+				version++;
+			}
+			asCNF = asCNF.extend(clauses);
 			symbols.addAll(SymbolCollector.getSymbolsFrom(aSentence));
 		}
 	}
 
+	/**
+	 * Returns the version of the knowledge base, which changes whenever
+	 * clauses are added to it, so that an answer found for one version can be
+	 * told apart from an answer found for another.
+	 * 
+	 * @return the version of the knowledge base.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the answer to the specified question using the given DPLL
+	 * implementation, or the answer cached from an earlier call if that is
+	 * still valid (see EntailmentCache).
+	 * 
+	 * @param alpha
+	 *            a question to ASK the knowledge base
+	 * @param dpll
+	 *            the DPLL implementation to answer the question with if it is
+	 *            not cached.
+	 * @return true if the knowledge base entails alpha, false otherwise.
+	 */
+	public boolean ask(Sentence alpha, DPLL dpll) {
+		Boolean cached = cache.get(alpha, version);
+		if (cached != null) {
+			return cached.booleanValue();
+		}
+		boolean entailed = dpll.isEntailed(this, alpha);
+		cache.put(alpha, version, entailed);
+		return entailed;
+	}
+
+	public EntailmentCache getEntailmentCache() {
+		return cache;
+	}
+
+	/**
+	 * Returns a solver that holds the clauses of the knowledge base, for
+	 * asking it queries incrementally (see IncrementalDPLL). The solver is
+	 * created with the clauses told so far on the first call, and every
+	 * clause told after that is added to it as it is told, so that the
+	 * clauses are converted only once and what the solver has learned is
+	 * kept from one query to the next.
+	 * 
+	 * @return the incremental solver of the knowledge base.
+	 */
+	public ClauseLearningDPLL getIncrementalSolver() {
+		if (solver == null) {
+			solver = new ClauseLearningDPLL();
+			for (PropositionSymbol p : symbols) {
+				solver.getSymbolTable().intern(p);
+			}
+			for (Clause c : asCNF.getClauses()) {
+				solver.addClause(c);
+			}
+		}
+		return solver;
+	}
+
+	/**
+	 * Determines which of the given literals the knowledge base entails, i.e.
+	 * the part of the backbone of the knowledge base among them, with the
+	 * given DPLL implementation.<br>
+	 * <br>
+	 * With an IncrementalDPLL, which answers queries with the incremental
+	 * solver of the knowledge base, this takes far fewer calls to the solver
+	 * than asking one query per literal, by model-guided filtering: a literal
+	 * can only be entailed if it is true in every model, so after finding one
+	 * model only the literals true in it need testing, and every model found
+	 * while testing rules out the literals false in it. A literal found to be
+	 * entailed is added to the solver as a unit clause. Any other DPLL
+	 * implementation is asked about each literal in turn (see ask).<br>
+	 * <br>
+	 * Either way the answers are looked up in and added to the entailment
+	 * cache, so that literals asked again for the same version of the
+	 * knowledge base, or entailed in an earlier version, are not tested
+	 * again. Finding a literal entailed also tells that its negation is not,
+	 * as long as the knowledge base is satisfiable. As with ask, an
+	 * unsatisfiable knowledge base entails every literal.
+	 * 
+	 * @param literals
+	 *            the literals to determine, proposition symbols and negated
+	 *            proposition symbols.
+	 * @param dpll
+	 *            the DPLL implementation to answer with.
+	 * @return the literals the knowledge base entails.
+	 */
+	public Set<Sentence> backbone(Collection<? extends Sentence> literals, DPLL dpll) {
+		Set<Sentence> entailed = new LinkedHashSet<Sentence>();
+		if (!(dpll instanceof IncrementalDPLL)) {
+			for (Sentence l : literals) {
+				if (ask(l, dpll)) {
+					entailed.add(l);
+				}
+			}
+			return entailed;
+		}
+
+		// the literals whose answer is not cached
+		List<Sentence> candidates = new ArrayList<Sentence>();
+		for (Sentence l : literals) {
+			Boolean cached = cache.get(l, version);
+			if (cached == null) {
+				candidates.add(l);
+			} else if (cached.booleanValue()) {
+				entailed.add(l);
+			}
+		}
+		if (candidates.isEmpty()) {
+			return entailed;
+		}
+
+		ClauseLearningDPLL solver  = getIncrementalSolver();
+		int[]              encoded = new int[candidates.size()];
+		boolean[]          open    = new boolean[candidates.size()];
+		for (int i = 0; i < encoded.length; i++) {
+			encoded[i] = encode(solver.getSymbolTable(), candidates.get(i));
+		}
+		if (!solver.solve()) {
+			for (Sentence l : candidates) {
+				entailed.add(l);
+				cache.put(l, version, true);
+			}
+			return entailed;
+		}
+		// the literals that may still be entailed: those true in the model
+		for (int i = 0; i < encoded.length; i++) {
+			open[i] = isTrue(solver, encoded[i]);
+		}
+		for (int i = 0; i < encoded.length; i++) {
+			if (!open[i]) {
+				cache.put(candidates.get(i), version, false);
+				continue;
+			}
+			open[i] = false;
+			if (!solver.solve(SymbolTable.negate(encoded[i]))) {
+				entailed.add(candidates.get(i));
+				solver.addClause(encoded[i]);
+				cache.put(candidates.get(i), version, true);
+				cache.put(negate(candidates.get(i)), version, false);
+			} else {
+				cache.put(candidates.get(i), version, false);
+				// rule out the literals false in the new model
+				for (int j = i + 1; j < encoded.length; j++) {
+					if (open[j] && !isTrue(solver, encoded[j])) {
+						open[j] = false;
+					}
+				}
+			}
+		}
+		return entailed;
+	}
+
+	/**
+	 * Determines for each of the given proposition symbols whether the
+	 * knowledge base entails it true, entails it false or leaves it
+	 * undetermined, with the given DPLL implementation.<br>
+	 * <br>
+	 * With an IncrementalDPLL both literals of every symbol are determined
+	 * together by backbone(Collection, DPLL): the first model found leaves
+	 * only one of the two to test, the one true in it, so this takes no more
+	 * calls to the solver than determining one literal per symbol. Only
+	 * IncrementalDPLL gives access to the models it finds, so any other DPLL
+	 * implementation is asked about each symbol in turn (see ask), and about
+	 * its negation if the symbol is not entailed, i.e. up to two queries per
+	 * symbol. As with ask, an unsatisfiable knowledge base entails every
+	 * symbol, and every symbol is then reported entailed true.
+	 * 
+	 * @param symbols
+	 *            the proposition symbols to determine.
+	 * @param dpll
+	 *            the DPLL implementation to answer with.
+	 * @return a map from each of the symbols, in the order given, to
+	 *         Boolean.TRUE if the knowledge base entails it, Boolean.FALSE if
+	 *         it entails its negation, and null if it entails neither.
+	 */
+	public Map<PropositionSymbol, Boolean> askValues(Collection<PropositionSymbol> symbols, DPLL dpll) {
+		Map<PropositionSymbol, Boolean> values = new LinkedHashMap<PropositionSymbol, Boolean>();
+		if (!(dpll instanceof IncrementalDPLL)) {
+			for (PropositionSymbol p : symbols) {
+				if (ask(p, dpll)) {
+					values.put(p, Boolean.TRUE);
+				} else if (ask(negate(p), dpll)) {
+					values.put(p, Boolean.FALSE);
+				} else {
+					values.put(p, null);
+				}
+			}
+			return values;
+		}
+
+		List<Sentence> literals = new ArrayList<Sentence>(2 * symbols.size());
+		for (PropositionSymbol p : symbols) {
+			literals.add(p);
+			literals.add(negate(p));
+		}
+		Set<Sentence> entailed = backbone(literals, dpll);
+		for (PropositionSymbol p : symbols) {
+			if (entailed.contains(p)) {
+				values.put(p, Boolean.TRUE);
+			} else if (entailed.contains(negate(p))) {
+				values.put(p, Boolean.FALSE);
+			} else {
+				values.put(p, null);
+			}
+		}
+		return values;
+	}
+
 	/**
 	 * Each time the agent program is called, it TELLS the knowledge base what
 	 * it perceives.
@@ -127,4 +358,33 @@ public class KnowledgeBase {
 	public List<Sentence> getSentences() {
 		return sentences;
 	}
+
+	//
+	// PRIVATE
+	//
+
+	// The int encoded literal (see SymbolTable) of a proposition symbol or
+	// negated proposition symbol.
+	private static int encode(SymbolTable table, Sentence literal) {
+		if (literal.isPropositionSymbol()) {
+			return SymbolTable.literal(table.intern((PropositionSymbol) literal), true);
+		}
+		if (literal.isNotSentence() && literal.getSimplerSentence(0).isPropositionSymbol()) {
+			return SymbolTable.literal(table.intern((PropositionSymbol) literal.getSimplerSentence(0)), false);
+		}
+		throw new IllegalArgumentException("Not a literal: " + literal);
+	}
+
+	// The negation of a proposition symbol or negated proposition symbol.
+	private static Sentence negate(Sentence literal) {
+		if (literal.isNotSentence()) {
+			return literal.getSimplerSentence(0);
+		}
+		return new ComplexSentence(Connective.NOT, literal);
+	}
+
+	// Whether a literal is true in the last model found by the solver.
+	private static boolean isTrue(ClauseLearningDPLL solver, int lit) {
+		return Boolean.valueOf(SymbolTable.isPositive(lit)).equals(solver.getValue(SymbolTable.var(lit)));
+	}
 }
@@ -0,0 +1,57 @@
+/**
+ * Restarts after unit times the terms of the Luby sequence 1, 1, 2, 1, 1, 2,
+ * 4, 1, 1, 2, 1, 1, 2, 4, 8, ... conflicts. Luby, Sinclair and Zuckerman
+ * showed this schedule to be within a logarithmic factor of the best
+ * schedule for a search of unknown run time distribution: runs of every
+ * length are tried, each length about as much in total as the others.
+ */
+public class LubyRestartSchedule implements RestartSchedule {
+
+	public static final int DEFAULT_UNIT = 100;
+	//
+	private int unit;
+	// the index of the next term, from 1
+	private int index = 1;
+
+	public LubyRestartSchedule() {
+		this(DEFAULT_UNIT);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param unit
+	 *            the number of conflicts a term of 1 stands for.
+	 */
+	public LubyRestartSchedule(int unit) {
+		this.unit = unit;
+	}
+
+	@Override
+	public void reset() {
+		index = 1;
+	}
+
+	@Override
+	public int nextInterval() {
+		return (int) Math.min(Integer.MAX_VALUE, (long) unit * luby(index++));
+	}
+
+	/**
+	 * Returns the i-th term of the Luby sequence, for i >= 1: 2^(k-1) if
+	 * i = 2^k - 1, and otherwise the term at i - 2^(k-1) + 1 for the k with
+	 * 2^(k-1) <= i < 2^k - 1.
+	 */
+	public static int luby(int i) {
+		while (true) {
+			int k = 1;
+			while ((1 << k) - 1 < i) {
+				k++;
+			}
+			if ((1 << k) - 1 == i) {
+				return 1 << (k - 1);
+			}
+			i -= (1 << (k - 1)) - 1;
+		}
+	}
+}
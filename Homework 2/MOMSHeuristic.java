@@ -0,0 +1,88 @@
+import java.util.Arrays;
+
+/**
+ * Maximum occurrences in clauses of minimum size (MOMS): the variable
+ * branched on is the one occurring most often in the shortest given clauses,
+ * as assigning it is the quickest way to make clauses unit. With f(l) the
+ * number of shortest clauses literal l occurs in, a variable v scores<br>
+ * (f(v) + f(~v)) * 2^k + f(v) * f(~v)<br>
+ * which favours variables occurring often, and of those the ones occurring
+ * often both ways. The value whose literal occurs more often is tried first.
+ * <br>
+ * <br>
+ * The counts are taken over the given clauses as they are added, rather than
+ * over the clauses left unsatisfied by the current assignment at every
+ * decision, which would take a pass over all clauses per decision.
+ */
+public class MOMSHeuristic extends ScoredBranchingHeuristic {
+
+	public static final int DEFAULT_K = 10;
+	//
+	private int   k;
+	// the size of the shortest clauses, and the occurrences of every literal
+	// in them
+	private int   minSize     = Integer.MAX_VALUE;
+	private int[] occurrences = new int[0];
+
+	public MOMSHeuristic() {
+		this(DEFAULT_K, false);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param k
+	 *            the weight of the sum of occurrences against their product.
+	 * @param phaseSaving
+	 *            whether to give a variable the value it last had.
+	 */
+	public MOMSHeuristic(int k, boolean phaseSaving) {
+		super(phaseSaving);
+		this.k = k;
+	}
+
+	@Override
+	public void reset() {
+		super.reset();
+		minSize = Integer.MAX_VALUE;
+		Arrays.fill(occurrences, 0);
+	}
+
+	@Override
+	public void addVariables(int n) {
+		if (2 * n > occurrences.length) {
+			occurrences = Arrays.copyOf(occurrences, Math.max(2 * n, 2 * occurrences.length));
+		}
+		super.addVariables(n);
+	}
+
+	@Override
+	public void clauseAdded(int[] clause, boolean learned) {
+		if (learned || clause.length > minSize) {
+			return;
+		}
+		if (clause.length < minSize) {
+			// the clauses counted so far are not the shortest any more
+			minSize = clause.length;
+			Arrays.fill(occurrences, 0);
+			clearScores();
+		}
+		for (int lit : clause) {
+			int v = lit >> 1;
+			double before = score(v);
+			occurrences[lit]++;
+			increaseScore(v, score(v) - before);
+		}
+	}
+
+	@Override
+	protected boolean isPositiveFirst(int var) {
+		return occurrences[SymbolTable.literal(var, true)] >= occurrences[SymbolTable.literal(var, false)];
+	}
+
+	private double score(int var) {
+		double positive = occurrences[SymbolTable.literal(var, true)];
+		double negative = occurrences[SymbolTable.literal(var, false)];
+		return (positive + negative) * Math.pow(2, k) + positive * negative;
+	}
+}
@@ -0,0 +1,252 @@
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+
+/**
+ * A DPLL implementation that races WalkSAT against a systematic search (a
+ * ClauseLearningDPLL) on two threads and answers with whichever finishes
+ * first, canceling the other. Local search often finds a model of
+ * satisfiable clauses much sooner than DPLL, but can never show that there
+ * is none, so WalkSAT is retried from new random assignments until DPLL
+ * finishes; DPLL answers the unsatisfiable problems, which are the entailed
+ * queries of isEntailed. Both solvers share the clauses, converted once to a
+ * ClauseDatabase, and stop when their CancelableThread is canceled.
+ */
+public class PortfolioDPLL implements DPLL {
+
+	public static final int    DEFAULT_MAX_FLIPS = 100000;
+	//
+	public static final String WINNER_DPLL       = "dpll";
+	public static final String WINNER_WALKSAT    = "walksat";
+	//
+	private double  noise;
+	private int     maxFlips;
+	private Random  random;
+	private String  winner  = null;
+	private Metrics metrics = new Metrics();
+
+	public PortfolioDPLL() {
+		this(WalkSAT.DEFAULT_NOISE, DEFAULT_MAX_FLIPS, new Random());
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param noise
+	 *            the noise of WalkSAT, see WalkSAT.solve.
+	 * @param maxFlips
+	 *            the flips of every try of WalkSAT, after which it starts
+	 *            again from a new random assignment.
+	 * @param random
+	 *            the source of the random choices of WalkSAT.
+	 */
+	public PortfolioDPLL(double noise, int maxFlips, Random random) {
+		this.noise = noise;
+		this.maxFlips = maxFlips;
+		this.random = random;
+	}
+
+	//
+	// START-DPLL
+	@Override
+	public boolean dpllSatisfiable(Sentence s) {
+		// clauses <- the set of clauses in the CNF representation of s
+		Set<Clause> clauses = ConvertToConjunctionOfClauses.convert(s)
+				.getClauses();
+		// symbols <- a list of the proposition symbols in s
+		List<PropositionSymbol> symbols = new ArrayList<PropositionSymbol>(
+				SymbolCollector.getSymbolsFrom(s));
+
+		// return DPLL(clauses, symbols, {})
+		return dpll(clauses, symbols, new Model());
+	}
+
+	/**
+	 * DPLL(clauses, symbols, model)<br>
+	 *
+	 * @param clauses
+	 *            the set of clauses.
+	 * @param symbols
+	 *            a list of unassigned symbols.
+	 * @param model
+	 *            contains the values for assigned symbols. If the clauses are
+	 *            satisfiable it is extended with the values found for the
+	 *            other symbols.
+	 * @return true if the model is satisfiable under current assignments, false
+	 *         otherwise.
+	 */
+	@Override
+	public boolean dpll(Set<Clause> clauses, List<PropositionSymbol> symbols,
+			Model model) {
+		long start = System.nanoTime();
+		final SymbolTable    table = new SymbolTable();
+		final ClauseDatabase db    = new ClauseDatabase(table);
+		final Race           race  = new Race();
+		for (PropositionSymbol p : symbols) {
+			table.intern(p);
+		}
+		db.addAll(clauses);
+		// the values of the model hold in every model found
+		for (PropositionSymbol p : model.getAssignedSymbols()) {
+			db.add(SymbolTable.literal(table.intern(p), model.getValue(p)));
+		}
+
+		final WalkSAT walkSAT = new WalkSAT(new Random(random.nextLong()));
+		CancelableThread walkSATThread = new CancelableThread() {
+			@Override
+			public void run() {
+				try {
+					while (!isCanceled()) {
+						race.walkSATTries++;
+						if (walkSAT.solve(db, noise, maxFlips)) {
+							Model found = new Model();
+							for (int v = 0; v < table.size(); v++) {
+								found.unionInPlace(table.getSymbol(v), walkSAT.getValue(v));
+							}
+							race.finish(WINNER_WALKSAT, true, found);
+							return;
+						}
+					}
+				} catch (Throwable e) {
+					race.fail(e);
+				}
+			}
+		};
+		CancelableThread dpllThread = new CancelableThread() {
+			@Override
+			public void run() {
+				try {
+					Model found = new Model();
+					boolean satisfiable = new ClauseLearningDPLL().dpll(db, found);
+					race.finish(WINNER_DPLL, satisfiable, found);
+				} catch (CancellationException e) {
+					// WalkSAT has answered
+				} catch (Throwable e) {
+					race.fail(e);
+				}
+			}
+		};
+
+		walkSATThread.start();
+		dpllThread.start();
+		try {
+			race.await();
+			walkSATThread.cancel();
+			dpllThread.cancel();
+			// both stop at their next flip or decision
+			walkSATThread.join();
+			dpllThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted waiting for the portfolio.", e);
+		} finally {
+			walkSATThread.cancel();
+			dpllThread.cancel();
+		}
+		if (race.failure instanceof Error) {
+			throw (Error) race.failure;
+		}
+		if (race.failure instanceof RuntimeException) {
+			throw (RuntimeException) race.failure;
+		}
+		if (race.failure != null) {
+			throw new IllegalStateException("The portfolio failed.", race.failure);
+		}
+		if (race.satisfiable) {
+			for (PropositionSymbol p : race.model.getAssignedSymbols()) {
+				model.unionInPlace(p, race.model.getValue(p));
+			}
+		}
+
+		winner = race.winner;
+		metrics = new Metrics();
+		metrics.set("walkSATWins", WINNER_WALKSAT.equals(winner) ? 1 : 0);
+		metrics.set("walkSATTries", race.walkSATTries);
+		metrics.set("timeNanos", System.nanoTime() - start);
+		return race.satisfiable;
+	}
+
+	/**
+	 * Determine if KB |= &alpha;, i.e. alpha is entailed by KB.
+	 *
+	 * @param kb
+	 *            a Knowledge Base in propositional logic.
+	 * @param alpha
+	 *            a propositional sentence.
+	 * @return true, if &alpha; is entailed by KB, false otherwise.
+	 */
+	@Override
+	public boolean isEntailed(KnowledgeBase kb, Sentence alpha) {
+		// AIMA3e p.g. 260: kb |= alpha, can be done by testing
+		// unsatisfiability of kb & ~alpha.
+		Set<Clause>             kbAndNotAlpha = new LinkedHashSet<Clause>();
+		Sentence                notQuery      = new ComplexSentence(Connective.NOT, alpha);
+		Set<PropositionSymbol>  symbols       = new LinkedHashSet<PropositionSymbol>();
+		List<PropositionSymbol> querySymbols  = new ArrayList<PropositionSymbol>(SymbolCollector.getSymbolsFrom(notQuery));
+
+		kbAndNotAlpha.addAll(kb.asCNF());
+		kbAndNotAlpha.addAll(ConvertToConjunctionOfClauses.convert(notQuery).getClauses());
+		symbols.addAll(querySymbols);
+		symbols.addAll(kb.getSymbols());
+
+		return !dpll(kbAndNotAlpha, new ArrayList<PropositionSymbol>(symbols), new Model());
+	}
+	// END-DPLL
+	//
+
+	/**
+	 * Returns the solver that answered the last call to dpll first,
+	 * WINNER_DPLL or WINNER_WALKSAT.
+	 */
+	public String getWinner() {
+		return winner;
+	}
+
+	/**
+	 * Returns the metrics of the last call to dpll: whether WalkSAT answered
+	 * first (1) or not (0), the number of tries WalkSAT started and the time
+	 * taken.
+	 */
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	// The outcome of one race, set by the first solver to finish.
+	private static class Race {
+		private boolean          finished     = false;
+		private String           winner       = null;
+		private boolean          satisfiable  = false;
+		private Model            model        = null;
+		private Throwable        failure      = null;
+		private volatile int     walkSATTries = 0;
+
+		public synchronized void finish(String winner, boolean satisfiable, Model model) {
+			if (!finished) {
+				finished = true;
+				this.winner = winner;
+				this.satisfiable = satisfiable;
+				this.model = model;
+				notifyAll();
+			}
+		}
+
+		// A solver has died, with an unchecked exception or an error; the
+		// race is over, as the other may never finish.
+		public synchronized void fail(Throwable failure) {
+			if (!finished) {
+				finished = true;
+				this.failure = failure;
+				notifyAll();
+			}
+		}
+
+		public synchronized void await() throws InterruptedException {
+			while (!finished) {
+				wait();
+			}
+		}
+	}
+}
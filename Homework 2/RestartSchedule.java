@@ -0,0 +1,19 @@
+/**
+ * When a DPLL solver restarts, AIMA3e p.g. 262: a solver whose early
+ * decisions were bad can stay stuck below them for a long time, so now and
+ * then it gives up all its decisions and starts the search over, keeping what
+ * it has learned. A schedule gives the number of conflicts to allow before
+ * each restart.
+ */
+public interface RestartSchedule {
+
+	/**
+	 * Starts the schedule over, for a new search.
+	 */
+	void reset();
+
+	/**
+	 * Returns the number of conflicts to allow before the next restart.
+	 */
+	int nextInterval();
+}
@@ -0,0 +1,276 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A BranchingHeuristic that branches on the unassigned variable of highest
+ * score, the variable with the lowest id first among equal scores, or in a
+ * random order with random tie-breaking (see setRandomTieBreaking). The
+ * variables are kept in a binary max-heap on their scores, so that a
+ * decision takes logarithmic rather than linear time; assigned variables are
+ * only taken out of the heap when they come to the top, and are put back
+ * when they are unassigned. Subclasses define the scores, and which value of
+ * a variable to try first.<br>
+ * <br>
+ * With phase saving, a variable is given the value it last had instead, as
+ * the search tends to come back to the same parts of the problem after a
+ * backjump or restart, whose values it would otherwise have to find again.
+ */
+public abstract class ScoredBranchingHeuristic implements BranchingHeuristic {
+
+	// Saved phases of a variable
+	private static final byte NONE  = 0;
+	private static final byte TRUE  = 1;
+	private static final byte FALSE = -1;
+	//
+	protected double[] scores     = new double[0];
+	private boolean    phaseSaving;
+	private byte[]     phases     = new byte[0];
+	private boolean[]  assigned   = new boolean[0];
+	// heap[0] is the variable of highest score; positions[v] is the index of
+	// v in the heap, or -1 if it is not in it
+	private int[]      heap       = new int[0];
+	private int[]      positions  = new int[0];
+	private int        heapSize   = 0;
+	protected int      varCount   = 0;
+	// with random tie-breaking, the higher tie key goes first among equal
+	// scores; the keys are drawn again on every restart
+	private Random     random     = null;
+	private double[]   ties       = new double[0];
+
+	/**
+	 * Constructor
+	 *
+	 * @param phaseSaving
+	 *            whether to give a variable the value it last had.
+	 */
+	public ScoredBranchingHeuristic(boolean phaseSaving) {
+		this.phaseSaving = phaseSaving;
+	}
+
+	public boolean isPhaseSaving() {
+		return phaseSaving;
+	}
+
+	/**
+	 * Sets the source of random numbers to break ties between variables of
+	 * equal score with, in a new random order after every restart, so that
+	 * restarts explore different parts of the search space even when the
+	 * scores stay the same. With null (the default) ties go to the variable
+	 * with the lowest id.
+	 */
+	public void setRandomTieBreaking(Random random) {
+		this.random = random;
+		drawTies();
+	}
+
+	@Override
+	public void reset() {
+		varCount = 0;
+		heapSize = 0;
+	}
+
+	@Override
+	public void addVariables(int n) {
+		if (n <= varCount) {
+			return;
+		}
+		if (n > scores.length) {
+			int capacity = Math.max(n, 2 * scores.length);
+			scores = Arrays.copyOf(scores, capacity);
+			phases = Arrays.copyOf(phases, capacity);
+			assigned = Arrays.copyOf(assigned, capacity);
+			heap = Arrays.copyOf(heap, capacity);
+			positions = Arrays.copyOf(positions, capacity);
+			ties = Arrays.copyOf(ties, capacity);
+		}
+		for (int v = varCount; v < n; v++) {
+			scores[v] = 0;
+			ties[v] = random == null ? 0 : random.nextDouble();
+			phases[v] = NONE;
+			assigned[v] = false;
+			positions[v] = -1;
+		}
+		int from = varCount;
+		varCount = n;
+		for (int v = from; v < n; v++) {
+			insert(v);
+		}
+	}
+
+	@Override
+	public void clauseAdded(int[] clause, boolean learned) {
+	}
+
+	@Override
+	public void conflictVariable(int var) {
+	}
+
+	@Override
+	public void conflictAnalyzed() {
+	}
+
+	@Override
+	public void restarted() {
+		if (random != null) {
+			drawTies();
+		}
+	}
+
+	@Override
+	public void assigned(int lit) {
+		assigned[lit >> 1] = true;
+	}
+
+	@Override
+	public void unassigned(int lit) {
+		int v = lit >> 1;
+		assigned[v] = false;
+		if (phaseSaving) {
+			phases[v] = SymbolTable.isPositive(lit) ? TRUE : FALSE;
+		}
+		if (positions[v] < 0) {
+			insert(v);
+		}
+	}
+
+	@Override
+	public int selectLiteral() {
+		while (heapSize > 0) {
+			int v = removeMax();
+			if (!assigned[v]) {
+				if (phases[v] != NONE) {
+					return SymbolTable.literal(v, phases[v] == TRUE);
+				}
+				return SymbolTable.literal(v, isPositiveFirst(v));
+			}
+		}
+		return -1;
+	}
+
+	//
+	// PROTECTED
+	//
+
+	/**
+	 * Returns whether to try the value true of a variable first, when it has
+	 * no saved phase. True, unless overridden.
+	 */
+	protected boolean isPositiveFirst(int var) {
+		return true;
+	}
+
+	/**
+	 * Adds to the score of a variable.
+	 */
+	protected void increaseScore(int var, double by) {
+		scores[var] += by;
+		if (positions[var] >= 0) {
+			siftUp(positions[var]);
+		}
+	}
+
+	/**
+	 * Sets the scores of all variables to 0.
+	 */
+	protected void clearScores() {
+		Arrays.fill(scores, 0, varCount, 0);
+		rebuildHeap();
+	}
+
+	/**
+	 * Multiplies the scores of all variables by the same positive factor,
+	 * which keeps their order.
+	 */
+	protected void scaleScores(double factor) {
+		for (int v = 0; v < varCount; v++) {
+			scores[v] *= factor;
+		}
+	}
+
+	//
+	// PRIVATE
+	//
+
+	private boolean before(int a, int b) {
+		if (scores[a] != scores[b]) {
+			return scores[a] > scores[b];
+		}
+		if (ties[a] != ties[b]) {
+			return ties[a] > ties[b];
+		}
+		return a < b;
+	}
+
+	private void drawTies() {
+		for (int v = 0; v < varCount; v++) {
+			ties[v] = random == null ? 0 : random.nextDouble();
+		}
+		rebuildHeap();
+	}
+
+	// Puts the unassigned variables into a new heap, for when the order of
+	// the variables has changed.
+	private void rebuildHeap() {
+		heapSize = 0;
+		for (int v = 0; v < varCount; v++) {
+			positions[v] = -1;
+		}
+		for (int v = 0; v < varCount; v++) {
+			if (!assigned[v]) {
+				insert(v);
+			}
+		}
+	}
+
+	private void insert(int v) {
+		heap[heapSize] = v;
+		positions[v] = heapSize;
+		heapSize++;
+		siftUp(heapSize - 1);
+	}
+
+	private int removeMax() {
+		int top = heap[0];
+		positions[top] = -1;
+		heapSize--;
+		if (heapSize > 0) {
+			heap[0] = heap[heapSize];
+			positions[heap[0]] = 0;
+			siftDown(0);
+		}
+		return top;
+	}
+
+	private void siftUp(int i) {
+		int v = heap[i];
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (!before(v, heap[parent])) {
+				break;
+			}
+			heap[i] = heap[parent];
+			positions[heap[i]] = i;
+			i = parent;
+		}
+		heap[i] = v;
+		positions[v] = i;
+	}
+
+	private void siftDown(int i) {
+		int v = heap[i];
+		while (2 * i + 1 < heapSize) {
+			int child = 2 * i + 1;
+			if (child + 1 < heapSize && before(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!before(heap[child], v)) {
+				break;
+			}
+			heap[i] = heap[child];
+			positions[heap[i]] = i;
+			i = child;
+		}
+		heap[i] = v;
+		positions[v] = i;
+	}
+}
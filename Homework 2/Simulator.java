@@ -1,5 +1,7 @@
 public class Simulator {
     public static void main(String[] args) {
-        HybridWumpusAgent w = new HybridWumpusAgent(4);
+        /* Optionally choose the DPLL implementation: optimized, watched, cdcl, incremental, components or portfolio */
+        DPLL dpll = WumpusKnowledgeBase.newDPLL(args.length > 0 ? args[0] : WumpusKnowledgeBase.DPLL_OPTIMIZED);
+        HybridWumpusAgent w = new HybridWumpusAgent(dpll, 4);
     }
 }
@@ -0,0 +1,94 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interns proposition symbols as dense int ids 0, 1, 2, ... in the order they
+ * are first seen, so that solvers can index arrays by symbol instead of
+ * hashing strings. Literals are encoded as ints too: 2*id for the positive
+ * literal of a symbol and 2*id+1 for the negative literal, so the two
+ * literals of a symbol are adjacent, a literal's negation is lit ^ 1 and
+ * literals can index arrays of size 2*size().
+ */
+public class SymbolTable {
+
+	private List<PropositionSymbol>         symbols = new ArrayList<PropositionSymbol>();
+	private Map<PropositionSymbol, Integer> ids     = new HashMap<PropositionSymbol, Integer>();
+
+	/**
+	 * Returns the id of a symbol, giving it the next id if it has none yet.
+	 */
+	public int intern(PropositionSymbol p) {
+		Integer id = ids.get(p);
+		if (id == null) {
+			id = symbols.size();
+			ids.put(p, id);
+			symbols.add(p);
+		}
+		return id;
+	}
+
+	/**
+	 * Returns the id of a new variable that stands for no symbol, such as a
+	 * variable a solver adds to switch clauses on and off.
+	 */
+	public int newVariable() {
+		symbols.add(null);
+		return symbols.size() - 1;
+	}
+
+	/**
+	 * Returns the id of a symbol, or -1 if it has none.
+	 */
+	public int getId(PropositionSymbol p) {
+		Integer id = ids.get(p);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Returns the symbol with the given id, or null for a variable from
+	 * newVariable().
+	 */
+	public PropositionSymbol getSymbol(int id) {
+		return symbols.get(id);
+	}
+
+	/**
+	 * Returns the number of symbols interned, i.e. one more than the highest
+	 * id.
+	 */
+	public int size() {
+		return symbols.size();
+	}
+
+	/**
+	 * Returns the int encoding of a literal, interning its symbol.
+	 */
+	public int encode(Literal l) {
+		return literal(intern(l.getAtomicSentence()), l.isPositiveLiteral());
+	}
+
+	/**
+	 * Returns the Literal an int encoded literal stands for.
+	 */
+	public Literal decode(int lit) {
+		return new Literal(getSymbol(var(lit)), isPositive(lit));
+	}
+
+	public static int literal(int var, boolean positive) {
+		return 2 * var + (positive ? 0 : 1);
+	}
+
+	public static int var(int lit) {
+		return lit >> 1;
+	}
+
+	public static boolean isPositive(int lit) {
+		return (lit & 1) == 0;
+	}
+
+	public static int negate(int lit) {
+		return lit ^ 1;
+	}
+}
@@ -0,0 +1,56 @@
+/**
+ * Variable state independent decaying sum (VSIDS), as in Chaff and MiniSat:
+ * every variable has an activity, which is raised whenever the variable takes
+ * part in a conflict, and all activities decay by a constant factor after
+ * every conflict, so that the search branches on the variables of the recent
+ * conflicts. Rather than multiplying all activities by the decay factor, the
+ * amount added is divided by it, which gives the same order; all activities
+ * are scaled down when they grow too large for a double.
+ */
+public class VSIDSHeuristic extends ScoredBranchingHeuristic {
+
+	public static final double DEFAULT_DECAY = 0.95;
+	//
+	private static final double MAX_ACTIVITY = 1e100;
+	//
+	private double decay;
+	private double increment = 1;
+
+	public VSIDSHeuristic() {
+		this(DEFAULT_DECAY, false);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param decay
+	 *            the factor activities decay by after every conflict, between
+	 *            0 and 1.
+	 * @param phaseSaving
+	 *            whether to give a variable the value it last had.
+	 */
+	public VSIDSHeuristic(double decay, boolean phaseSaving) {
+		super(phaseSaving);
+		this.decay = decay;
+	}
+
+	@Override
+	public void reset() {
+		super.reset();
+		increment = 1;
+	}
+
+	@Override
+	public void conflictVariable(int var) {
+		increaseScore(var, increment);
+		if (scores[var] > MAX_ACTIVITY) {
+			scaleScores(1 / MAX_ACTIVITY);
+			increment /= MAX_ACTIVITY;
+		}
+	}
+
+	@Override
+	public void conflictAnalyzed() {
+		increment /= decay;
+	}
+}
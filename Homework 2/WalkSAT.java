@@ -0,0 +1,273 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Artificial Intelligence A Modern Approach (3rd Edition): Figure 7.18, page
+ * 263.<br>
+ * <br>
+ * WALKSAT, a local search for a model of a set of clauses: starting from a
+ * random assignment, it repeatedly picks a clause that is false and flips the
+ * value of one of its symbols, until every clause is true or it runs out of
+ * flips. It can find models of satisfiable clauses much faster than a
+ * systematic search, but never shows clauses to be unsatisfiable.<br>
+ * <br>
+ * This implementation works on the int encoded clauses of a ClauseDatabase
+ * and picks the symbol to flip as Selman, Kautz and Cohen's WalkSAT does:
+ * a symbol whose flip makes no true clause false if there is one, otherwise
+ * with probability p (the noise) a random symbol of the clause, and otherwise
+ * the symbol whose flip makes the fewest true clauses false (its break
+ * count). The break counts of all symbols are kept up to date as symbols are
+ * flipped, rather than counted for every pick: every clause keeps its number
+ * of true literals and the sum of their variables, which is the variable of
+ * its only true literal when it has just one, and only the clauses of the
+ * flipped symbol change. The false clauses are kept in a list, to pick one
+ * at random in constant time.<br>
+ * <br>
+ * The search gives up, as if out of flips, when the thread running it is a
+ * canceled CancelableThread.
+ */
+public class WalkSAT {
+
+	public static final double DEFAULT_NOISE = 0.5;
+	//
+	private Random    random;
+	// the clauses of every literal: occurrences[occurrenceStart[l]] to
+	// occurrences[occurrenceStart[l+1]-1]
+	private int[]     occurrenceStart = null;
+	private int[]     occurrences     = null;
+	private boolean[] values          = null;
+	private int[]     trueCounts      = null;
+	private int[]     trueVarSums     = null;
+	private int[]     breakCounts     = null;
+	// the false clauses, and the index of every false clause in the list
+	private int[]     falseClauses    = null;
+	private int[]     falseIndex      = null;
+	private int       falseCount      = 0;
+	//
+	private int     flips   = 0;
+	private Metrics metrics = new Metrics();
+
+	public WalkSAT() {
+		this(new Random());
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param random
+	 *            the source of the random choices of the search.
+	 */
+	public WalkSAT(Random random) {
+		this.random = random;
+	}
+
+	/**
+	 * WALKSAT(clauses, p, max_flips)<br>
+	 *
+	 * @param clauses
+	 *            a set of clauses in propositional logic
+	 * @param p
+	 *            the probability of choosing to do a "random walk" move,
+	 *            typically around 0.5
+	 * @param maxFlips
+	 *            number of flips allowed before giving up
+	 *
+	 * @return a satisfying model or failure (null).
+	 */
+	public Model walkSAT(Set<Clause> clauses, double p, int maxFlips) {
+		ClauseDatabase db = new ClauseDatabase();
+		db.addAll(clauses);
+		if (!solve(db, p, maxFlips)) {
+			return null;
+		}
+		Model model = new Model();
+		for (int v = 0; v < db.getSymbolTable().size(); v++) {
+			model.unionInPlace(db.getSymbolTable().getSymbol(v), values[v]);
+		}
+		return model;
+	}
+
+	/**
+	 * Searches for a model of the clauses of a ClauseDatabase.
+	 *
+	 * @param clauses
+	 *            the clauses.
+	 * @param p
+	 *            the noise: the probability of flipping a random symbol of
+	 *            the false clause picked rather than the best one.
+	 * @param maxFlips
+	 *            number of flips allowed before giving up
+	 * @return true if a model was found, in which case getValue gives it.
+	 */
+	public boolean solve(ClauseDatabase clauses, double p, int maxFlips) {
+		long start = System.nanoTime();
+		flips = 0;
+		boolean result = init(clauses) && search(clauses, p, maxFlips);
+
+		metrics = new Metrics();
+		metrics.set("flips", flips);
+		metrics.set("falseClauses", falseCount);
+		metrics.set("variables", values.length);
+		metrics.set("clauses", clauses.size());
+		metrics.set("timeNanos", System.nanoTime() - start);
+		return result;
+	}
+
+	/**
+	 * Returns the value of a variable in the model found by the last call to
+	 * solve that returned true.
+	 */
+	public boolean getValue(int var) {
+		return values[var];
+	}
+
+	/**
+	 * Returns the metrics of the last call to solve (or walkSAT): the number
+	 * of flips, the number of clauses still false at the end, the size of the
+	 * problem and the time taken.
+	 */
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	//
+	// PRIVATE
+	//
+
+	// Sets up the occurrence lists, a random assignment and the counts for
+	// it. Returns false if there is an empty clause.
+	private boolean init(ClauseDatabase clauses) {
+		int varCount = clauses.getSymbolTable().size();
+		int clauseCount = clauses.size();
+		occurrenceStart = new int[2 * varCount + 1];
+		occurrences = new int[clauses.getLiteralCount()];
+		for (int c = 0; c < clauseCount; c++) {
+			for (int k = 0; k < clauses.length(c); k++) {
+				occurrenceStart[clauses.get(c, k) + 1]++;
+			}
+		}
+		for (int l = 0; l < 2 * varCount; l++) {
+			occurrenceStart[l + 1] += occurrenceStart[l];
+		}
+		int[] next = occurrenceStart.clone();
+		for (int c = 0; c < clauseCount; c++) {
+			for (int k = 0; k < clauses.length(c); k++) {
+				occurrences[next[clauses.get(c, k)]++] = c;
+			}
+		}
+
+		values = new boolean[varCount];
+		for (int v = 0; v < varCount; v++) {
+			values[v] = random.nextBoolean();
+		}
+		trueCounts = new int[clauseCount];
+		trueVarSums = new int[clauseCount];
+		breakCounts = new int[varCount];
+		falseClauses = new int[clauseCount];
+		falseIndex = new int[clauseCount];
+		falseCount = 0;
+		for (int c = 0; c < clauseCount; c++) {
+			if (clauses.length(c) == 0) {
+				return false;
+			}
+			for (int k = 0; k < clauses.length(c); k++) {
+				int lit = clauses.get(c, k);
+				if (isTrue(lit)) {
+					trueCounts[c]++;
+					trueVarSums[c] += lit >> 1;
+				}
+			}
+			if (trueCounts[c] == 0) {
+				addFalse(c);
+			} else if (trueCounts[c] == 1) {
+				breakCounts[trueVarSums[c]]++;
+			}
+		}
+		return true;
+	}
+
+	private boolean search(ClauseDatabase clauses, double p, int maxFlips) {
+		List<Integer> candidates = new ArrayList<Integer>();
+		while (falseCount > 0) {
+			if (flips >= maxFlips || CancelableThread.currIsCanceled()) {
+				return false;
+			}
+			// clause <- a randomly selected clause from clauses that is false
+			// in model
+			int c = falseClauses[random.nextInt(falseCount)];
+			int length = clauses.length(c);
+			// the symbols in clause that break the fewest clauses
+			candidates.clear();
+			int fewest = Integer.MAX_VALUE;
+			for (int k = 0; k < length; k++) {
+				int v = clauses.get(c, k) >> 1;
+				if (breakCounts[v] < fewest) {
+					fewest = breakCounts[v];
+					candidates.clear();
+				}
+				if (breakCounts[v] == fewest) {
+					candidates.add(v);
+				}
+			}
+			int flip;
+			if (fewest > 0 && random.nextDouble() < p) {
+				// flip the value in model of a randomly selected symbol from
+				// clause
+				flip = clauses.get(c, random.nextInt(length)) >> 1;
+			} else {
+				// flip whichever symbol in clause breaks the fewest clauses,
+				// at random among equals
+				flip = candidates.get(random.nextInt(candidates.size()));
+			}
+			flip(flip);
+			flips++;
+		}
+		return true;
+	}
+
+	private void flip(int v) {
+		values[v] = !values[v];
+		int nowTrue = SymbolTable.literal(v, values[v]);
+		int nowFalse = SymbolTable.negate(nowTrue);
+		for (int i = occurrenceStart[nowTrue]; i < occurrenceStart[nowTrue + 1]; i++) {
+			int c = occurrences[i];
+			if (trueCounts[c] == 0) {
+				removeFalse(c);
+				breakCounts[v]++;
+			} else if (trueCounts[c] == 1) {
+				// its only true literal is not the only one any more
+				breakCounts[trueVarSums[c]]--;
+			}
+			trueCounts[c]++;
+			trueVarSums[c] += v;
+		}
+		for (int i = occurrenceStart[nowFalse]; i < occurrenceStart[nowFalse + 1]; i++) {
+			int c = occurrences[i];
+			trueCounts[c]--;
+			trueVarSums[c] -= v;
+			if (trueCounts[c] == 0) {
+				addFalse(c);
+				breakCounts[v]--;
+			} else if (trueCounts[c] == 1) {
+				breakCounts[trueVarSums[c]]++;
+			}
+		}
+	}
+
+	private void addFalse(int c) {
+		falseIndex[c] = falseCount;
+		falseClauses[falseCount++] = c;
+	}
+
+	private void removeFalse(int c) {
+		int last = falseClauses[--falseCount];
+		falseClauses[falseIndex[c]] = last;
+		falseIndex[last] = falseIndex[c];
+	}
+
+	private boolean isTrue(int lit) {
+		return values[lit >> 1] == SymbolTable.isPositive(lit);
+	}
+}
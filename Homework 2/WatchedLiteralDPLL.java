@@ -0,0 +1,360 @@
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A DPLL implementation that does unit propagation with two watched literals
+ * (the "clever indexing" of AIMA3e p.g. 262). Every clause of two or more
+ * literals watches two of its literals that are not false under the current
+ * assignment. A clause can only become unit or false when one of its watched
+ * literals becomes false, so assigning a literal only visits the clauses that
+ * watch its negation; the other clauses are not looked at. Nothing has to be
+ * done to the watches on backtracking.<br>
+ * <br>
+ * The search itself is iterative rather than recursive: assignments are kept
+ * on a trail, decisions open a new level and a conflict undoes the trail back
+ * to the most recent decision that has not yet been tried both ways, which is
+ * the same chronological backtracking as OptimizedDPLL. The pure symbol
+ * heuristic is not used, as finding pure symbols needs a scan of every clause,
+ * which is what the watches are there to avoid.
+ */
+public class WatchedLiteralDPLL implements DPLL {
+
+	// Values of a variable
+	private static final byte UNASSIGNED = 0;
+	private static final byte TRUE       = 1;
+	private static final byte FALSE      = -1;
+	//
+	// Variables and literals are numbered as in SymbolTable.
+	private SymbolTable             vars        = null;
+	private int[][]                 clauses     = null;
+	private int[][]                 watches     = null;
+	private int[]                   watchCounts = null;
+	private byte[]                  values      = null;
+	private int[]                   trail       = null;
+	private int                     trailSize   = 0;
+	private int                     qhead       = 0;
+	// trail index of the decision of each level
+	private int[]                   levelStart  = null;
+	private boolean[]               flipped     = null;
+	private int                     level       = 0;
+	// variables are numbered, and branched on, in the order of the symbols
+	// list; all variables below this one are assigned
+	private int                     nextVar     = 0;
+	//
+	private int     decisions    = 0;
+	private int     propagations = 0;
+	private int     conflicts    = 0;
+	private Metrics metrics      = new Metrics();
+
+	//
+	// START-DPLL
+	@Override
+	public boolean dpllSatisfiable(Sentence s) {
+		// clauses <- the set of clauses in the CNF representation of s
+		Set<Clause> clauses = ConvertToConjunctionOfClauses.convert(s)
+				.getClauses();
+		// symbols <- a list of the proposition symbols in s
+		List<PropositionSymbol> symbols = new ArrayList<PropositionSymbol>(
+				SymbolCollector.getSymbolsFrom(s));
+
+		// return DPLL(clauses, symbols, {})
+		return dpll(clauses, symbols, new Model());
+	}
+
+	/**
+	 * DPLL(clauses, symbols, model)<br>
+	 *
+	 * @param clauses
+	 *            the set of clauses.
+	 * @param symbols
+	 *            a list of unassigned symbols, the order in which they are
+	 *            branched on.
+	 * @param model
+	 *            contains the values for assigned symbols. If the clauses are
+	 *            satisfiable it is extended with the values found for the
+	 *            other symbols.
+	 * @return true if the model is satisfiable under current assignments, false
+	 *         otherwise.
+	 */
+	@Override
+	public boolean dpll(Set<Clause> clauses, List<PropositionSymbol> symbols,
+			Model model) {
+		SymbolTable table = new SymbolTable();
+		for (PropositionSymbol p : symbols) {
+			table.intern(p);
+		}
+		ClauseDatabase db = new ClauseDatabase(table);
+		db.addAll(clauses);
+		return dpll(db, model);
+	}
+
+	/**
+	 * DPLL(clauses, symbols, model) over the clauses of a ClauseDatabase,
+	 * branching on the symbols of its SymbolTable in the order of their ids.
+	 *
+	 * @param clauses
+	 *            the clauses.
+	 * @param model
+	 *            contains the values for assigned symbols. If the clauses are
+	 *            satisfiable it is extended with the values found for the
+	 *            other symbols.
+	 * @return true if the model is satisfiable under current assignments, false
+	 *         otherwise.
+	 */
+	public boolean dpll(ClauseDatabase clauses, Model model) {
+		long start = System.nanoTime();
+		decisions = 0;
+		propagations = 0;
+		conflicts = 0;
+
+		boolean result = load(clauses, model) && search();
+		if (result) {
+			for (int v = 0; v < vars.size(); v++) {
+				if (values[v] != UNASSIGNED && vars.getSymbol(v) != null) {
+					model.unionInPlace(vars.getSymbol(v), values[v] == TRUE);
+				}
+			}
+		}
+		metrics = new Metrics();
+		metrics.set("decisions", decisions);
+		metrics.set("propagations", propagations);
+		metrics.set("conflicts", conflicts);
+		metrics.set("variables", vars.size());
+		metrics.set("clauses", this.clauses.length);
+		metrics.set("timeNanos", System.nanoTime() - start);
+		return result;
+	}
+
+	/**
+	 * Determine if KB |= &alpha;, i.e. alpha is entailed by KB.
+	 *
+	 * @param kb
+	 *            a Knowledge Base in propositional logic.
+	 * @param alpha
+	 *            a propositional sentence.
+	 * @return true, if &alpha; is entailed by KB, false otherwise.
+	 */
+	@Override
+	public boolean isEntailed(KnowledgeBase kb, Sentence alpha) {
+		// AIMA3e p.g. 260: kb |= alpha, can be done by testing
+		// unsatisfiability of kb & ~alpha.
+		Set<Clause>             kbAndNotAlpha = new LinkedHashSet<Clause>();
+		Sentence                notQuery      = new ComplexSentence(Connective.NOT, alpha);
+		Set<PropositionSymbol>  symbols       = new LinkedHashSet<PropositionSymbol>();
+		List<PropositionSymbol> querySymbols  = new ArrayList<PropositionSymbol>(SymbolCollector.getSymbolsFrom(notQuery));
+
+		kbAndNotAlpha.addAll(kb.asCNF());
+		kbAndNotAlpha.addAll(ConvertToConjunctionOfClauses.convert(notQuery).getClauses());
+		symbols.addAll(querySymbols);
+		symbols.addAll(kb.getSymbols());
+
+		return !dpll(kbAndNotAlpha, new ArrayList<PropositionSymbol>(symbols), new Model());
+	}
+	// END-DPLL
+	//
+
+	/**
+	 * Returns the metrics of the last call to dpll: the number of decisions,
+	 * propagations and conflicts, the size of the problem and the time taken.
+	 */
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	//
+	// PRIVATE
+	//
+
+	// Builds the clause and watch arrays and makes the assignments of the
+	// model and of the unit clauses at level 0. Returns false if these
+	// already conflict.
+	private boolean load(ClauseDatabase clauses, Model model) {
+		vars = clauses.getSymbolTable();
+		List<int[]> units = new ArrayList<int[]>();
+		List<int[]> watched = new ArrayList<int[]>();
+		boolean empty = false;
+		for (int c = 0; c < clauses.size(); c++) {
+			if (clauses.length(c) == 0) {
+				empty = true;
+				continue;
+			}
+			(clauses.length(c) == 1 ? units : watched).add(clauses.getLiterals(c));
+		}
+
+		int n = vars.size();
+		this.clauses = watched.toArray(new int[watched.size()][]);
+		watches = new int[2 * n][];
+		watchCounts = new int[2 * n];
+		for (int l = 0; l < 2 * n; l++) {
+			watches[l] = new int[4];
+		}
+		for (int c = 0; c < this.clauses.length; c++) {
+			watch(this.clauses[c][0], c);
+			watch(this.clauses[c][1], c);
+		}
+		values = new byte[n];
+		trail = new int[n];
+		trailSize = 0;
+		qhead = 0;
+		levelStart = new int[n + 1];
+		flipped = new boolean[n + 1];
+		level = 0;
+		nextVar = 0;
+
+		if (empty) {
+			return false;
+		}
+		for (int v = 0; v < n; v++) {
+			Boolean value = model.getValue(vars.getSymbol(v));
+			if (value != null) {
+				assign(SymbolTable.literal(v, value));
+			}
+		}
+		for (int[] unit : units) {
+			if (isFalse(unit[0])) {
+				return false;
+			}
+			if (!isTrue(unit[0])) {
+				assign(unit[0]);
+			}
+		}
+		return true;
+	}
+
+	private boolean search() {
+		while (true) {
+			if (!propagate()) {
+				conflicts++;
+				// backtrack to the most recent decision not yet tried both
+				// ways and try its other value
+				while (true) {
+					if (level == 0) {
+						return false;
+					}
+					int decision = trail[levelStart[level]];
+					boolean wasFlipped = flipped[level];
+					undo(levelStart[level]);
+					if (!wasFlipped) {
+						flipped[level] = true;
+						assign(decision ^ 1);
+						break;
+					}
+					level--;
+				}
+				continue;
+			}
+
+			int v = nextUnassigned();
+			if (v < 0) {
+				return true;
+			}
+			decisions++;
+			level++;
+			levelStart[level] = trailSize;
+			flipped[level] = false;
+			// as OptimizedDPLL, try true first
+			assign(SymbolTable.literal(v, true));
+		}
+	}
+
+	// Propagates the assignments on the trail not yet propagated, returning
+	// false on a conflict.
+	private boolean propagate() {
+		boolean ok = true;
+		while (ok && qhead < trailSize) {
+			int falseLit = trail[qhead++] ^ 1;
+			int[] ws = watches[falseLit];
+			int count = watchCounts[falseLit];
+			int kept = 0;
+			int i = 0;
+			while (i < count) {
+				int c = ws[i++];
+				int[] lits = clauses[c];
+				// keep the false watched literal in position 1
+				if (lits[0] == falseLit) {
+					lits[0] = lits[1];
+					lits[1] = falseLit;
+				}
+				if (isTrue(lits[0])) {
+					ws[kept++] = c;
+					continue;
+				}
+				// look for a literal not false to watch instead
+				boolean moved = false;
+				for (int k = 2; k < lits.length; k++) {
+					if (!isFalse(lits[k])) {
+						lits[1] = lits[k];
+						lits[k] = falseLit;
+						watch(lits[1], c);
+						moved = true;
+						break;
+					}
+				}
+				if (moved) {
+					continue;
+				}
+				ws[kept++] = c;
+				if (isFalse(lits[0])) {
+					// conflict, keep the remaining watches
+					while (i < count) {
+						ws[kept++] = ws[i++];
+					}
+					ok = false;
+				} else {
+					assign(lits[0]);
+					propagations++;
+				}
+			}
+			watchCounts[falseLit] = kept;
+		}
+		return ok;
+	}
+
+	private int nextUnassigned() {
+		while (nextVar < values.length) {
+			if (values[nextVar] == UNASSIGNED) {
+				return nextVar;
+			}
+			nextVar++;
+		}
+		return -1;
+	}
+
+	private void assign(int lit) {
+		values[lit >> 1] = (lit & 1) == 0 ? TRUE : FALSE;
+		trail[trailSize++] = lit;
+	}
+
+	// Unassigns the trail from the given index on.
+	private void undo(int from) {
+		while (trailSize > from) {
+			int v = trail[--trailSize] >> 1;
+			values[v] = UNASSIGNED;
+			if (v < nextVar) {
+				nextVar = v;
+			}
+		}
+		qhead = trailSize;
+	}
+
+	private void watch(int lit, int c) {
+		if (watchCounts[lit] == watches[lit].length) {
+			int[] grown = new int[2 * watches[lit].length];
+			System.arraycopy(watches[lit], 0, grown, 0, watchCounts[lit]);
+			watches[lit] = grown;
+		}
+		watches[lit][watchCounts[lit]++] = c;
+	}
+
+	private boolean isTrue(int lit) {
+		byte value = values[lit >> 1];
+		return (lit & 1) == 0 ? value == TRUE : value == FALSE;
+	}
+
+	private boolean isFalse(int lit) {
+		byte value = values[lit >> 1];
+		return (lit & 1) == 0 ? value == FALSE : value == TRUE;
+	}
+}
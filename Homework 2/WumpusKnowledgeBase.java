@@ -1,4 +1,5 @@
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
@@ -33,6 +34,14 @@ public class WumpusKnowledgeBase extends KnowledgeBase {
 	public static final String ACTION_TURN_RIGHT = TurnRight.TURN_RIGHT_ACTION_NAME;
 	public static final String OK_TO_MOVE_INTO   = "OK";
 	//
+	// Names of the DPLL implementations, see newDPLL(String)
+	public static final String DPLL_OPTIMIZED    = "optimized";
+	public static final String DPLL_WATCHED      = "watched";
+	public static final String DPLL_CDCL         = "cdcl";
+	public static final String DPLL_INCREMENTAL  = "incremental";
+	public static final String DPLL_COMPONENTS   = "components";
+	public static final String DPLL_PORTFOLIO    = "portfolio";
+	//
 	private int  caveXDimension;
 	private int  caveYDimension;
 	private DPLL dpll;
@@ -120,11 +129,59 @@ public class WumpusKnowledgeBase extends KnowledgeBase {
 		}
 	}
 	
+	/**
+	 * Returns a new instance of the DPLL implementation with the given name,
+	 * for choosing the implementation passed to
+	 * WumpusKnowledgeBase(DPLL, int), e.g. from the command line.
+	 * 
+	 * @param name
+	 *            one of DPLL_OPTIMIZED (OptimizedDPLL), DPLL_WATCHED
+	 *            (WatchedLiteralDPLL), DPLL_CDCL (ClauseLearningDPLL),
+	 *            DPLL_INCREMENTAL (IncrementalDPLL), DPLL_COMPONENTS
+	 *            (ComponentDPLL) or DPLL_PORTFOLIO (PortfolioDPLL).
+	 * @return a new instance of the DPLL implementation.
+	 */
+	public static DPLL newDPLL(String name) {
+		if (DPLL_OPTIMIZED.equals(name)) {
+			return new OptimizedDPLL();
+		}
+		if (DPLL_WATCHED.equals(name)) {
+			return new WatchedLiteralDPLL();
+		}
+		if (DPLL_CDCL.equals(name)) {
+			return new ClauseLearningDPLL();
+		}
+		if (DPLL_INCREMENTAL.equals(name)) {
+			return new IncrementalDPLL();
+		}
+		if (DPLL_COMPONENTS.equals(name)) {
+			return new ComponentDPLL();
+		}
+		if (DPLL_PORTFOLIO.equals(name)) {
+			return new PortfolioDPLL();
+		}
+		throw new IllegalArgumentException("Unknown DPLL implementation: " + name);
+	}
+	
+	// The room queries below ask about the symbols of all rooms at once with
+	// backbone(), which with an IncrementalDPLL takes far fewer calls to the
+	// solver than one query per room. The other implementations, OptimizedDPLL
+	// by default, still answer one query per room, though through the
+	// entailment cache. Each query needs only one polarity of the symbols, so
+	// they use backbone() rather than askValues().
+	
 	public AgentPosition askCurrentPosition(int t) {
+		List<Sentence> symbols = roomSymbols(LOCATION, t);
+		symbols.add(newSymbol(FACING_NORTH, t));
+		symbols.add(newSymbol(FACING_SOUTH, t));
+		symbols.add(newSymbol(FACING_EAST, t));
+		symbols.add(newSymbol(FACING_WEST, t));
+		Set<Sentence> backbone = backbone(symbols, dpll);
+		
 		int locX = -1, locY = -1;
 		for (int x = 1; x <= getCaveXDimension() && locX == -1; x++) {
 			for (int y = 1; y <= getCaveYDimension() && locY == -1; y++) {
-				if (ask(newSymbol(LOCATION, t, x, y))) {
+				if (backbone.contains(newSymbol(LOCATION, t, x, y))) {
 					locX = x;
 					locY = y;
 				}
@@ -134,16 +191,16 @@ public class WumpusKnowledgeBase extends KnowledgeBase {
 			throw new IllegalStateException("Inconsistent KB, unable to determine current room position.");
 		}
 		AgentPosition current = null;
-		if (ask(newSymbol(FACING_NORTH, t))) {
+		if (backbone.contains(newSymbol(FACING_NORTH, t))) {
 			current = new AgentPosition(locX, locY, AgentPosition.Orientation.FACING_NORTH);
 		}
-		else if (ask(newSymbol(FACING_SOUTH, t))) {
+		else if (backbone.contains(newSymbol(FACING_SOUTH, t))) {
 			current = new AgentPosition(locX, locY, AgentPosition.Orientation.FACING_SOUTH);
 		}
-		else if (ask(newSymbol(FACING_EAST, t))) {
+		else if (backbone.contains(newSymbol(FACING_EAST, t))) {
 			current = new AgentPosition(locX, locY, AgentPosition.Orientation.FACING_EAST);
 		}
-		else if (ask(newSymbol(FACING_WEST, t))) {
+		else if (backbone.contains(newSymbol(FACING_WEST, t))) {
 			current = new AgentPosition(locX, locY, AgentPosition.Orientation.FACING_WEST);
 		}
 		else {
@@ -156,9 +213,10 @@ public class WumpusKnowledgeBase extends KnowledgeBase {
 	// safe <- {[x, y] : ASK(KB, OK<sup>t</sup><sub>x,y</sub>) = true}
 	public Set<Room> askSafeRooms(int t) {
 		Set<Room> safe = new LinkedHashSet<Room>();
+		Set<Sentence> backbone = backbone(roomSymbols(OK_TO_MOVE_INTO, t), dpll);
 		for (int x = 1; x <= getCaveXDimension(); x++) {
 			for (int y = 1; y <= getCaveYDimension(); y++) {
-				if (ask(newSymbol(OK_TO_MOVE_INTO, t, x, y))) {
+				if (backbone.contains(newSymbol(OK_TO_MOVE_INTO, t, x, y))) {
 					safe.add(new Room(x, y));
 				}
 			}
@@ -173,16 +231,23 @@ public class WumpusKnowledgeBase extends KnowledgeBase {
 	// unvisited <- {[x, y] : ASK(KB, L<sup>t'</sup><sub>x,y</sub>) = false for all t' &le; t}
 	public Set<Room> askUnvisitedRooms(int t) {
 		Set<Room> unvisited = new LinkedHashSet<Room>();
-		
 		for (int x = 1; x <= getCaveXDimension(); x++) {
 			for (int y = 1; y <= getCaveYDimension(); y++) {
-				for (int tPrime = 0; tPrime <= t; tPrime++) {					
-					if (ask(newSymbol(LOCATION, tPrime, x, y))) {
-						break; // i.e. is not false for all t' <= t
-					}
-					if (tPrime == t) {
-						unvisited.add(new Room(x, y)); // i.e. is false for all t' <= t
-					}
+				unvisited.add(new Room(x, y));
+			}
+		}
+		
+		// the rooms not yet known to be visited, one time step at a time
+		for (int tPrime = 0; tPrime <= t && !unvisited.isEmpty(); tPrime++) {
+			List<Sentence> symbols = new ArrayList<Sentence>();
+			for (Room r : unvisited) {
+				symbols.add(newSymbol(LOCATION, tPrime, r.getX(), r.getY()));
+			}
+			Set<Sentence> backbone = backbone(symbols, dpll);
+			for (Iterator<Room> it = unvisited.iterator(); it.hasNext();) {
+				Room r = it.next();
+				if (backbone.contains(newSymbol(LOCATION, tPrime, r.getX(), r.getY()))) {
+					it.remove(); // i.e. is not false for all t' <= t
 				}
 			}
 		}
@@ -197,10 +262,11 @@ public class WumpusKnowledgeBase extends KnowledgeBase {
 	// possible_wumpus <- {[x, y] : ASK(KB, ~W<sub>x,y</sub>) = false}
 	public Set<Room> askPossibleWumpusRooms(int t) {
 		Set<Room> possible = new LinkedHashSet<Room>();
+		Set<Sentence> backbone = backbone(negations(roomSymbols(WUMPUS)), dpll);
 		
 		for (int x = 1; x <= getCaveXDimension(); x++) {
 			for (int y = 1; y <= getCaveYDimension(); y++) {
-				if (!ask(new ComplexSentence(Connective.NOT, newSymbol(WUMPUS, x, y)))) {
+				if (!backbone.contains(new ComplexSentence(Connective.NOT, newSymbol(WUMPUS, x, y)))) {
 					possible.add(new Room(x, y));
 				}
 			}
@@ -212,10 +278,11 @@ public class WumpusKnowledgeBase extends KnowledgeBase {
 	// not_unsafe <- {[x, y] : ASK(KB, ~OK<sup>t</sup><sub>x,y</sub>) = false}
 	public Set<Room> askNotUnsafeRooms(int t) {
 		Set<Room> notUnsafe = new LinkedHashSet<Room>();
+		Set<Sentence> backbone = backbone(negations(roomSymbols(OK_TO_MOVE_INTO, t)), dpll);
 		
 		for (int x = 1; x <= getCaveXDimension(); x++) {
 			for (int y = 1; y <= getCaveYDimension(); y++) {
-				if (!ask(new ComplexSentence(Connective.NOT, newSymbol(OK_TO_MOVE_INTO, t, x, y)))) {
+				if (!backbone.contains(new ComplexSentence(Connective.NOT, newSymbol(OK_TO_MOVE_INTO, t, x, y)))) {
 					notUnsafe.add(new Room(x, y));
 				}
 			}
@@ -229,7 +296,7 @@ public class WumpusKnowledgeBase extends KnowledgeBase {
 	}
 	
 	public boolean ask(Sentence query) {		
-		return dpll.isEntailed(this, query);
+		return ask(query, dpll);
 	}
 
 	public int getCaveXDimension() {
@@ -552,4 +619,29 @@ public class WumpusKnowledgeBase extends KnowledgeBase {
 	public PropositionSymbol newSymbol(String prefix, int timeStep, int x, int y) {
 		return newSymbol(newSymbol(prefix, timeStep).toString(), x, y);
 	}
+	
+	// The symbols prefix_x_y of all rooms.
+	private List<Sentence> roomSymbols(String prefix) {
+		List<Sentence> symbols = new ArrayList<Sentence>();
+		for (int x = 1; x <= getCaveXDimension(); x++) {
+			for (int y = 1; y <= getCaveYDimension(); y++) {
+				symbols.add(newSymbol(prefix, x, y));
+			}
+		}
+		return symbols;
+	}
+	
+	// The symbols prefix_t_x_y of all rooms.
+	private List<Sentence> roomSymbols(String prefix, int t) {
+		return roomSymbols(newSymbol(prefix, t).toString());
+	}
+	
+	// The negations of the given sentences.
+	private static List<Sentence> negations(List<Sentence> sentences) {
+		List<Sentence> negations = new ArrayList<Sentence>();
+		for (Sentence s : sentences) {
+			negations.add(new ComplexSentence(Connective.NOT, s));
+		}
+		return negations;
+	}
 }